@@ -0,0 +1,84 @@
+package org.example.stockfishanalyzer.benchmark;
+
+import org.example.stockfishanalyzer.chess.Position;
+import org.example.stockfishanalyzer.util.PgnStreamReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 基准测试棋谱语料
+ * 默认由固定种子的随机对局生成（每次构建完全一致，结果可对比）；
+ * 指定系统属性 benchmark.pgn 时改为读取该 PGN 文件（如 Lichess 导出）
+ */
+final class BenchmarkCorpus {
+
+    static final String PGN_FILE_PROPERTY = "benchmark.pgn";
+
+    private static final long SEED = 20251010L;
+    private static final int MAX_PLIES = 160;
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * 加载语料，返回单局 PGN 文本列表
+     */
+    static List<String> load(int games) {
+        String file = System.getProperty(PGN_FILE_PROPERTY);
+        return file != null ? readFile(Path.of(file), games) : generate(games);
+    }
+
+    private static List<String> readFile(Path file, int games) {
+        List<String> pgns = new ArrayList<>(games);
+        try (PgnStreamReader reader = new PgnStreamReader(Files.newBufferedReader(file, StandardCharsets.UTF_8), 1024 * 1024)) {
+            String pgn;
+            while (pgns.size() < games && (pgn = reader.nextGame()) != null) {
+                pgns.add(pgn);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return pgns;
+    }
+
+    private static List<String> generate(int games) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<String> pgns = new ArrayList<>(games);
+        int[] moves = new int[Position.MAX_MOVES];
+
+        for (int g = 0; g < games; g++) {
+            Position position = new Position();
+            StringBuilder sb = new StringBuilder(2048);
+            sb.append("[Event \"Benchmark\"]\n")
+              .append("[White \"white").append(g).append("\"]\n")
+              .append("[Black \"black").append(g).append("\"]\n")
+              .append("[Result \"*\"]\n")
+              .append("[Date \"2025.10.10\"]\n\n");
+
+            for (int ply = 0; ply < MAX_PLIES; ply++) {
+                int count = position.generateLegalMoves(moves);
+                if (count == 0) break;
+                int move = moves[random.nextInt(count)];
+
+                if ((ply & 1) == 0) {
+                    sb.append(ply / 2 + 1).append(". ");
+                }
+                sb.append(position.toSan(move)).append(' ');
+                if (ply % 10 == 9) {
+                    sb.append("{ [%clk 0:03:00] } ");
+                }
+                position.makeMove(move);
+            }
+            sb.append("*\n");
+            pgns.add(sb.toString());
+        }
+        return pgns;
+    }
+}
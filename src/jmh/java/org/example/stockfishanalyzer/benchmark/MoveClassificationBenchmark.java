@@ -0,0 +1,60 @@
+package org.example.stockfishanalyzer.benchmark;
+
+import org.example.stockfishanalyzer.service.MoveClassificationService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 走法分类基准：评分字符串解析 + 阈值分类（单位：次/微秒）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MoveClassificationBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    private MoveClassificationService service;
+    private String[] actualScores;
+    private String[] bestScores;
+    private String[] secondBestScores;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new MoveClassificationService();
+        ReflectionTestUtils.setField(service, "blunderThreshold", 300);
+        ReflectionTestUtils.setField(service, "mistakeThreshold", 150);
+        ReflectionTestUtils.setField(service, "inaccuracyThreshold", 50);
+        ReflectionTestUtils.setField(service, "brilliantThreshold", 100);
+
+        SplittableRandom random = new SplittableRandom(42);
+        actualScores = new String[SAMPLES];
+        bestScores = new String[SAMPLES];
+        secondBestScores = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            int best = random.nextInt(-800, 800);
+            actualScores[i] = i % 64 == 0 ? "M-3" : formatScore(best - random.nextInt(0, 400));
+            bestScores[i] = i % 97 == 0 ? "M5" : formatScore(best);
+            secondBestScores[i] = formatScore(best - random.nextInt(0, 200));
+        }
+    }
+
+    private static String formatScore(int centipawns) {
+        return centipawns >= 0 ? "+" + centipawns : String.valueOf(centipawns);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void classify(Blackhole blackhole) {
+        for (int i = 0; i < SAMPLES; i++) {
+            blackhole.consume(service.classifyMove(actualScores[i], bestScores[i], secondBestScores[i]));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.stockfishanalyzer.benchmark;
+
+import org.example.stockfishanalyzer.chess.Position;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 走法生成 perft 基准
+ * 节点数同时作为走法生成器的正确性校验，与参考值不符时基准直接失败
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PerftBenchmark {
+
+    @Param({"startpos", "kiwipete", "position3", "position4", "position5"})
+    private String position;
+
+    private String fen;
+    private int depth;
+    private long expectedNodes;
+    private long lastNodes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (position) {
+            case "startpos" -> init(Position.START_FEN, 5, 4865609L);
+            case "kiwipete" -> init("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 4, 4085603L);
+            case "position3" -> init("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 5, 674624L);
+            case "position4" -> init("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 4, 422333L);
+            case "position5" -> init("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 4, 2103487L);
+            default -> throw new IllegalArgumentException("未知局面: " + position);
+        }
+    }
+
+    private void init(String fen, int depth, long expectedNodes) {
+        this.fen = fen;
+        this.depth = depth;
+        this.expectedNodes = expectedNodes;
+    }
+
+    @Benchmark
+    public long perft() {
+        lastNodes = Position.fromFen(fen).perft(depth);
+        return lastNodes;
+    }
+
+    @TearDown(Level.Iteration)
+    public void verify() {
+        if (lastNodes != expectedNodes) {
+            throw new IllegalStateException(String.format("perft(%s, %d) = %d，期望 %d",
+                    position, depth, lastNodes, expectedNodes));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.stockfishanalyzer.benchmark;
+
+import org.example.stockfishanalyzer.util.PgnParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PgnParser.parse 吞吐基准（整份语料逐局解析，结果按棋局数归一）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PgnParserBenchmark {
+
+    @Param({"1000"})
+    private int games;
+
+    private List<String> pgns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pgns = BenchmarkCorpus.load(games);
+    }
+
+    @Benchmark
+    public void parseCorpus(Blackhole blackhole, GameCounter counter) {
+        for (String pgn : pgns) {
+            blackhole.consume(PgnParser.parse(pgn));
+        }
+        counter.games += pgns.size();
+    }
+
+    /**
+     * 辅助计数器：以实际解析的棋局数作为次要指标输出（games/s），语料大小由 games 参数决定
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class GameCounter {
+        public long games;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            games = 0;
+        }
+    }
+}
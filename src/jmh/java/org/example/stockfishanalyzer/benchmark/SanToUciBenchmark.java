@@ -0,0 +1,56 @@
+package org.example.stockfishanalyzer.benchmark;
+
+import org.example.stockfishanalyzer.util.PgnParser;
+import org.example.stockfishanalyzer.util.SimpleChessEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SAN → UCI 转换吞吐基准（整份语料逐局转换，结果按走法数归一）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SanToUciBenchmark {
+
+    @Param({"1000"})
+    private int games;
+
+    private List<List<String>> sanGames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sanGames = BenchmarkCorpus.load(games).stream()
+                .map(pgn -> PgnParser.parse(pgn).getMoves())
+                .toList();
+    }
+
+    @Benchmark
+    public void convertCorpus(Blackhole blackhole, MoveCounter counter) {
+        for (List<String> sanMoves : sanGames) {
+            List<String> uciMoves = SimpleChessEngine.toUciMoves(sanMoves);
+            counter.moves += uciMoves.size();
+            blackhole.consume(uciMoves);
+        }
+    }
+
+    /**
+     * 辅助计数器：以走法数作为次要指标输出（moves/s）
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class MoveCounter {
+        public long moves;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            moves = 0;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.stockfishanalyzer.chess;
+
+/**
+ * 位棋盘攻击表
+ * 职责：预计算马、王、兵的攻击格以及八个方向的射线，滑动棋子（车、象、后）的攻击
+ * 通过射线与占位位棋盘求交、截断到第一个阻挡子得到，查询过程不分配任何对象
+ *
+ * 格子编号：a1=0, b1=1, ..., h1=7, a2=8, ..., h8=63
+ */
+public final class Bitboards {
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+
+    /**
+     * [颜色][格子]：该颜色的兵站在该格时攻击的格子
+     */
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // 射线方向：前四个方向格子编号递增（N, NE, E, NW），后四个递减（S, SW, W, SE）
+    private static final int NORTH = 0;
+    private static final int NORTH_EAST = 1;
+    private static final int EAST = 2;
+    private static final int NORTH_WEST = 3;
+    private static final int SOUTH = 4;
+    private static final int SOUTH_WEST = 5;
+    private static final int WEST = 6;
+    private static final int SOUTH_EAST = 7;
+
+    private static final int[] DIRECTION_FILE = {0, 1, 1, -1, 0, -1, -1, 1};
+    private static final int[] DIRECTION_RANK = {1, 1, 0, 1, -1, -1, 0, -1};
+
+    /**
+     * [方向][格子]：从该格出发沿该方向直到棋盘边缘的所有格子（不含起点）
+     */
+    private static final long[][] RAYS = new long[8][64];
+
+    static {
+        int[][] knightOffsets = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+
+        for (int square = 0; square < 64; square++) {
+            int file = square & 7;
+            int rank = square >>> 3;
+
+            for (int[] offset : knightOffsets) {
+                KNIGHT_ATTACKS[square] |= bit(file + offset[0], rank + offset[1]);
+            }
+
+            for (int df = -1; df <= 1; df++) {
+                for (int dr = -1; dr <= 1; dr++) {
+                    if (df != 0 || dr != 0) {
+                        KING_ATTACKS[square] |= bit(file + df, rank + dr);
+                    }
+                }
+            }
+
+            PAWN_ATTACKS[Position.WHITE][square] = bit(file - 1, rank + 1) | bit(file + 1, rank + 1);
+            PAWN_ATTACKS[Position.BLACK][square] = bit(file - 1, rank - 1) | bit(file + 1, rank - 1);
+
+            for (int direction = 0; direction < 8; direction++) {
+                int f = file + DIRECTION_FILE[direction];
+                int r = rank + DIRECTION_RANK[direction];
+                while (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                    RAYS[direction][square] |= 1L << (r * 8 + f);
+                    f += DIRECTION_FILE[direction];
+                    r += DIRECTION_RANK[direction];
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    /**
+     * 车的攻击格
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return positiveRay(NORTH, square, occupied)
+                | positiveRay(EAST, square, occupied)
+                | negativeRay(SOUTH, square, occupied)
+                | negativeRay(WEST, square, occupied);
+    }
+
+    /**
+     * 象的攻击格
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return positiveRay(NORTH_EAST, square, occupied)
+                | positiveRay(NORTH_WEST, square, occupied)
+                | negativeRay(SOUTH_WEST, square, occupied)
+                | negativeRay(SOUTH_EAST, square, occupied);
+    }
+
+    /**
+     * 后的攻击格
+     */
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * 格子编号递增方向：第一个阻挡子是射线上编号最小的占位格
+     */
+    private static long positiveRay(int direction, int square, long occupied) {
+        long attacks = RAYS[direction][square];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            attacks ^= RAYS[direction][Long.numberOfTrailingZeros(blockers)];
+        }
+        return attacks;
+    }
+
+    /**
+     * 格子编号递减方向：第一个阻挡子是射线上编号最大的占位格
+     */
+    private static long negativeRay(int direction, int square, long occupied) {
+        long attacks = RAYS[direction][square];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            attacks ^= RAYS[direction][63 - Long.numberOfLeadingZeros(blockers)];
+        }
+        return attacks;
+    }
+
+    private static long bit(int file, int rank) {
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+            return 0L;
+        }
+        return 1L << (rank * 8 + file);
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.stockfishanalyzer.chess;
+
+/**
+ * 走法编码工具
+ * 一步走法编码为一个 int，避免在走法生成的热路径上创建对象：
+ * 位 0-5 起点格，位 6-11 终点格，位 12-14 升变棋子类型（0 表示不升变），位 15-16 特殊走法标记
+ */
+public final class Move {
+
+    /**
+     * 空走法（a1a1 不可能是合法走法）
+     */
+    public static final int NONE = 0;
+
+    public static final int FLAG_NORMAL = 0;
+    public static final int FLAG_DOUBLE_PUSH = 1;
+    public static final int FLAG_EN_PASSANT = 2;
+    public static final int FLAG_CASTLE = 3;
+
+    private static final String PROMOTION_CHARS = " nbrq";
+
+    private Move() {
+    }
+
+    public static int of(int from, int to, int promotion, int flag) {
+        return from | (to << 6) | (promotion << 12) | (flag << 15);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * 升变棋子类型（Position.KNIGHT ~ Position.QUEEN），0 表示不升变
+     */
+    public static int promotion(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    public static int flag(int move) {
+        return (move >>> 15) & 3;
+    }
+
+    /**
+     * 转换为 UCI 格式（如 e2e4、e7e8q）
+     */
+    public static String toUci(int move) {
+        int from = from(move);
+        int to = to(move);
+        int promotion = promotion(move);
+
+        StringBuilder sb = new StringBuilder(5);
+        sb.append(squareName(from)).append(squareName(to));
+        if (promotion != 0) {
+            sb.append(PROMOTION_CHARS.charAt(promotion));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 格子名称（如 e4）
+     */
+    public static String squareName(int square) {
+        return "" + (char) ('a' + (square & 7)) + (char) ('1' + (square >>> 3));
+    }
+
+    /**
+     * UCI 升变字符对应的棋子类型，非升变字符返回 0
+     */
+    public static int promotionFromChar(char c) {
+        int index = PROMOTION_CHARS.indexOf(Character.toLowerCase(c));
+        return index > 0 ? index : 0;
+    }
+}
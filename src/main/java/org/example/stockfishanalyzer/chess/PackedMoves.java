@@ -0,0 +1,103 @@
+package org.example.stockfishanalyzer.chess;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑的走法序列编码
+ * 每步走法占 2 字节（大端序）：Move 编码的低 15 位，即起点格、终点格和升变棋子类型。
+ * 特殊走法标记可由局面推出，不存储；解码为 UCI 走法时不需要重放棋盘。
+ */
+public final class PackedMoves {
+
+    private static final int MASK = 0x7FFF;
+
+    private PackedMoves() {
+    }
+
+    /**
+     * 从初始局面重放 SAN 走法并编码
+     *
+     * @throws IllegalArgumentException 某步走法不合法
+     */
+    public static byte[] fromSan(List<String> sanMoves) {
+        byte[] packed = new byte[sanMoves.size() * 2];
+        Position position = new Position();
+
+        for (int i = 0; i < sanMoves.size(); i++) {
+            int move = position.parseSan(sanMoves.get(i));
+            if (move == Move.NONE) {
+                throw new IllegalArgumentException("第 " + (i + 1) + " 步走法非法: " + sanMoves.get(i));
+            }
+            put(packed, i, move);
+            position.makeMove(move);
+        }
+        return packed;
+    }
+
+    /**
+     * 编码 UCI 走法（只做格式转换，不检查合法性）
+     *
+     * @throws IllegalArgumentException 走法格式错误
+     */
+    public static byte[] fromUci(List<String> uciMoves) {
+        byte[] packed = new byte[uciMoves.size() * 2];
+
+        for (int i = 0; i < uciMoves.size(); i++) {
+            String uci = uciMoves.get(i);
+            if (uci.length() < 4 || uci.length() > 5) {
+                throw new IllegalArgumentException("第 " + (i + 1) + " 步走法格式错误: " + uci);
+            }
+            int from = square(uci, 0);
+            int to = square(uci, 2);
+            if (from < 0 || to < 0) {
+                throw new IllegalArgumentException("第 " + (i + 1) + " 步走法格式错误: " + uci);
+            }
+            int promotion = uci.length() == 5 ? Move.promotionFromChar(uci.charAt(4)) : 0;
+            if (uci.length() == 5 && promotion == 0) {
+                throw new IllegalArgumentException("第 " + (i + 1) + " 步走法格式错误: " + uci);
+            }
+            put(packed, i, Move.of(from, to, promotion, Move.FLAG_NORMAL));
+        }
+        return packed;
+    }
+
+    /**
+     * 解码为 UCI 走法列表
+     */
+    public static List<String> toUci(byte[] packed) {
+        int count = count(packed);
+        List<String> uciMoves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            uciMoves.add(Move.toUci(get(packed, i)));
+        }
+        return uciMoves;
+    }
+
+    /**
+     * 走法步数
+     */
+    public static int count(byte[] packed) {
+        return packed.length / 2;
+    }
+
+    /**
+     * 第 index 步走法（不含特殊走法标记，可直接用于 Move.from / to / promotion / toUci）
+     */
+    public static int get(byte[] packed, int index) {
+        return ((packed[index * 2] & 0xFF) << 8) | (packed[index * 2 + 1] & 0xFF);
+    }
+
+    private static void put(byte[] packed, int index, int move) {
+        int bits = move & MASK;
+        packed[index * 2] = (byte) (bits >>> 8);
+        packed[index * 2 + 1] = (byte) bits;
+    }
+
+    private static int square(String uci, int offset) {
+        int file = uci.charAt(offset) - 'a';
+        int rank = uci.charAt(offset + 1) - '1';
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) return -1;
+        return file | (rank << 3);
+    }
+}
@@ -0,0 +1,828 @@
+package org.example.stockfishanalyzer.chess;
+
+import org.example.stockfishanalyzer.util.Zobrist;
+
+import java.util.Arrays;
+
+import static org.example.stockfishanalyzer.chess.Bitboards.*;
+
+/**
+ * 位棋盘局面
+ * 职责：以 12 张棋子位棋盘表示局面，提供完整合法走法生成、走子/悔棋、FEN 导入导出、
+ * SAN/UCI 走法解析以及增量维护的 Zobrist 哈希键
+ *
+ * 走法以 int 编码（见 {@link Move}），走法生成写入调用方提供的数组，
+ * 走子和悔棋使用预分配的撤销栈，热路径上不创建对象。
+ * 实例不是线程安全的，每局棋各自持有一个实例。
+ */
+public final class Position {
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // 棋子类型，棋子编号 = 颜色 * 6 + 类型，与 Zobrist.PIECES 顺序一致
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    public static final int NO_PIECE = -1;
+    public static final int NO_SQUARE = -1;
+
+    /**
+     * 单个局面合法走法数量上限
+     */
+    public static final int MAX_MOVES = 256;
+
+    // 易位权位：K=1, Q=2, k=4, q=8（与 Zobrist.CASTLING 下标一致）
+    private static final int WHITE_KING_SIDE = 1;
+    private static final int WHITE_QUEEN_SIDE = 2;
+    private static final int BLACK_KING_SIDE = 4;
+    private static final int BLACK_QUEEN_SIDE = 8;
+
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    /**
+     * 棋子离开或到达某格后保留的易位权（王、车原始格之外均为 15）
+     */
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[0] = 15 & ~WHITE_QUEEN_SIDE;
+        CASTLING_MASK[4] = 15 & ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_MASK[7] = 15 & ~WHITE_KING_SIDE;
+        CASTLING_MASK[56] = 15 & ~BLACK_QUEEN_SIDE;
+        CASTLING_MASK[60] = 15 & ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        CASTLING_MASK[63] = 15 & ~BLACK_KING_SIDE;
+    }
+
+    private final long[] pieces = new long[12];
+    private final long[] colors = new long[2];
+    private long occupied;
+    private final int[] board = new int[64];
+
+    private int sideToMove;
+    private int castlingRights;
+    private int epSquare;
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    private long key;
+
+    // 撤销栈
+    private int ply;
+    private int[] undoCaptured = new int[256];
+    private int[] undoCastling = new int[256];
+    private int[] undoEpSquare = new int[256];
+    private int[] undoHalfmove = new int[256];
+    private long[] undoKey = new long[256];
+
+    // SAN 解析/生成使用的走法缓冲区
+    private final int[] sanBuffer = new int[MAX_MOVES];
+    private final int[] replyBuffer = new int[MAX_MOVES];
+
+    /**
+     * 创建标准开局局面
+     */
+    public Position() {
+        setFen(START_FEN);
+    }
+
+    public static Position fromFen(String fen) {
+        Position position = new Position();
+        position.setFen(fen);
+        return position;
+    }
+
+    // ==================== 局面查询 ====================
+
+    public long getKey() {
+        return key;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * 可吃过路兵的目标格，没有则返回 NO_SQUARE
+     */
+    public int getEpSquare() {
+        return epSquare;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * 指定格子上的棋子编号，空格返回 NO_PIECE
+     */
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    public long getPieces(int color, int type) {
+        return pieces[color * 6 + type];
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * 棋盘上的棋子总数（含双方王）
+     */
+    public int pieceCount() {
+        return Long.bitCount(occupied);
+    }
+
+    public boolean inCheck() {
+        return isSquareAttacked(kingSquare(sideToMove), sideToMove ^ 1);
+    }
+
+    public boolean isCheckmate() {
+        return inCheck() && generateLegalMoves(replyBuffer) == 0;
+    }
+
+    public boolean isStalemate() {
+        return !inCheck() && generateLegalMoves(replyBuffer) == 0;
+    }
+
+    /**
+     * 判断指定格子是否被某一方攻击
+     */
+    public boolean isSquareAttacked(int square, int byColor) {
+        int base = byColor * 6;
+        if ((PAWN_ATTACKS[byColor ^ 1][square] & pieces[base + PAWN]) != 0) return true;
+        if ((KNIGHT_ATTACKS[square] & pieces[base + KNIGHT]) != 0) return true;
+        if ((KING_ATTACKS[square] & pieces[base + KING]) != 0) return true;
+
+        long diagonal = pieces[base + BISHOP] | pieces[base + QUEEN];
+        if (diagonal != 0 && (bishopAttacks(square, occupied) & diagonal) != 0) return true;
+
+        long straight = pieces[base + ROOK] | pieces[base + QUEEN];
+        return straight != 0 && (rookAttacks(square, occupied) & straight) != 0;
+    }
+
+    private int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieces[color * 6 + KING]);
+    }
+
+    // ==================== 走法生成 ====================
+
+    /**
+     * 生成全部合法走法
+     *
+     * @param moves 输出缓冲区，长度至少为 MAX_MOVES
+     * @return 合法走法数量
+     */
+    public int generateLegalMoves(int[] moves) {
+        int count = generatePseudoLegalMoves(moves);
+        int us = sideToMove;
+        int legal = 0;
+
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            makeMove(move);
+            if (!isSquareAttacked(kingSquare(us), us ^ 1)) {
+                moves[legal++] = move;
+            }
+            unmakeMove(move);
+        }
+        return legal;
+    }
+
+    /**
+     * 生成伪合法走法（不检查走后己方王是否被将军；易位已检查经过格不受攻击）
+     */
+    private int generatePseudoLegalMoves(int[] moves) {
+        int n = 0;
+        int us = sideToMove;
+        int them = us ^ 1;
+        long own = colors[us];
+        long enemy = colors[them];
+        long targets = ~own;
+
+        // 兵
+        int forward = us == WHITE ? 8 : -8;
+        int startRank = us == WHITE ? 1 : 6;
+        int promotionRank = us == WHITE ? 7 : 0;
+        long pawns = pieces[us * 6 + PAWN];
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+
+            int to = from + forward;
+            if (board[to] == NO_PIECE) {
+                if ((to >>> 3) == promotionRank) {
+                    n = addPromotions(moves, n, from, to);
+                } else {
+                    moves[n++] = Move.of(from, to, 0, Move.FLAG_NORMAL);
+                    int twoSteps = to + forward;
+                    if ((from >>> 3) == startRank && board[twoSteps] == NO_PIECE) {
+                        moves[n++] = Move.of(from, twoSteps, 0, Move.FLAG_DOUBLE_PUSH);
+                    }
+                }
+            }
+
+            long captures = PAWN_ATTACKS[us][from] & enemy;
+            while (captures != 0) {
+                int target = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                if ((target >>> 3) == promotionRank) {
+                    n = addPromotions(moves, n, from, target);
+                } else {
+                    moves[n++] = Move.of(from, target, 0, Move.FLAG_NORMAL);
+                }
+            }
+
+            if (epSquare != NO_SQUARE && (PAWN_ATTACKS[us][from] & (1L << epSquare)) != 0) {
+                moves[n++] = Move.of(from, epSquare, 0, Move.FLAG_EN_PASSANT);
+            }
+        }
+
+        // 马
+        long knights = pieces[us * 6 + KNIGHT];
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            n = addMoves(moves, n, from, KNIGHT_ATTACKS[from] & targets);
+        }
+
+        // 象、后（斜线）
+        long diagonal = pieces[us * 6 + BISHOP] | pieces[us * 6 + QUEEN];
+        while (diagonal != 0) {
+            int from = Long.numberOfTrailingZeros(diagonal);
+            diagonal &= diagonal - 1;
+            n = addMoves(moves, n, from, bishopAttacks(from, occupied) & targets);
+        }
+
+        // 车、后（直线）
+        long straight = pieces[us * 6 + ROOK] | pieces[us * 6 + QUEEN];
+        while (straight != 0) {
+            int from = Long.numberOfTrailingZeros(straight);
+            straight &= straight - 1;
+            n = addMoves(moves, n, from, rookAttacks(from, occupied) & targets);
+        }
+
+        // 王
+        int king = kingSquare(us);
+        n = addMoves(moves, n, king, KING_ATTACKS[king] & targets);
+
+        // 易位
+        if (us == WHITE) {
+            if ((castlingRights & WHITE_KING_SIDE) != 0 && board[7] == ROOK
+                    && (occupied & 0x60L) == 0
+                    && !isSquareAttacked(4, them) && !isSquareAttacked(5, them) && !isSquareAttacked(6, them)) {
+                moves[n++] = Move.of(4, 6, 0, Move.FLAG_CASTLE);
+            }
+            if ((castlingRights & WHITE_QUEEN_SIDE) != 0 && board[0] == ROOK
+                    && (occupied & 0x0EL) == 0
+                    && !isSquareAttacked(4, them) && !isSquareAttacked(3, them) && !isSquareAttacked(2, them)) {
+                moves[n++] = Move.of(4, 2, 0, Move.FLAG_CASTLE);
+            }
+        } else {
+            if ((castlingRights & BLACK_KING_SIDE) != 0 && board[63] == 6 + ROOK
+                    && (occupied & 0x6000000000000000L) == 0
+                    && !isSquareAttacked(60, them) && !isSquareAttacked(61, them) && !isSquareAttacked(62, them)) {
+                moves[n++] = Move.of(60, 62, 0, Move.FLAG_CASTLE);
+            }
+            if ((castlingRights & BLACK_QUEEN_SIDE) != 0 && board[56] == 6 + ROOK
+                    && (occupied & 0x0E00000000000000L) == 0
+                    && !isSquareAttacked(60, them) && !isSquareAttacked(59, them) && !isSquareAttacked(58, them)) {
+                moves[n++] = Move.of(60, 58, 0, Move.FLAG_CASTLE);
+            }
+        }
+
+        return n;
+    }
+
+    private static int addMoves(int[] moves, int n, int from, long targets) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves[n++] = Move.of(from, to, 0, Move.FLAG_NORMAL);
+        }
+        return n;
+    }
+
+    private static int addPromotions(int[] moves, int n, int from, int to) {
+        moves[n++] = Move.of(from, to, QUEEN, Move.FLAG_NORMAL);
+        moves[n++] = Move.of(from, to, ROOK, Move.FLAG_NORMAL);
+        moves[n++] = Move.of(from, to, BISHOP, Move.FLAG_NORMAL);
+        moves[n++] = Move.of(from, to, KNIGHT, Move.FLAG_NORMAL);
+        return n;
+    }
+
+    // ==================== 走子 / 悔棋 ====================
+
+    /**
+     * 执行走法（调用方保证走法合法）
+     */
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+        int promotion = Move.promotion(move);
+        int us = sideToMove;
+        int them = us ^ 1;
+        int piece = board[from];
+
+        if (ply == undoKey.length) {
+            growUndoStack();
+        }
+        undoCastling[ply] = castlingRights;
+        undoEpSquare[ply] = epSquare;
+        undoHalfmove[ply] = halfmoveClock;
+        undoKey[ply] = key;
+
+        if (epSquare != NO_SQUARE) {
+            key ^= Zobrist.EN_PASSANT_FILE[epSquare & 7];
+            epSquare = NO_SQUARE;
+        }
+
+        int captured = NO_PIECE;
+        if (flag == Move.FLAG_EN_PASSANT) {
+            int capturedSquare = to - (us == WHITE ? 8 : -8);
+            captured = board[capturedSquare];
+            removePiece(capturedSquare);
+        } else if (board[to] != NO_PIECE) {
+            captured = board[to];
+            removePiece(to);
+        }
+
+        movePiece(from, to);
+
+        if (promotion != 0) {
+            removePiece(to);
+            putPiece(us * 6 + promotion, to);
+        } else if (flag == Move.FLAG_CASTLE) {
+            moveCastlingRook(to, false);
+        } else if (flag == Move.FLAG_DOUBLE_PUSH) {
+            // 只有对方确实有兵能吃过路时才记录过路格，保证相同局面的哈希键一致
+            int passed = (from + to) >>> 1;
+            if ((PAWN_ATTACKS[us][passed] & pieces[them * 6 + PAWN]) != 0) {
+                epSquare = passed;
+                key ^= Zobrist.EN_PASSANT_FILE[passed & 7];
+            }
+        }
+
+        int rights = castlingRights & CASTLING_MASK[from] & CASTLING_MASK[to];
+        if (rights != castlingRights) {
+            key ^= Zobrist.CASTLING[castlingRights] ^ Zobrist.CASTLING[rights];
+            castlingRights = rights;
+        }
+
+        halfmoveClock = (piece % 6 == PAWN || captured != NO_PIECE) ? 0 : halfmoveClock + 1;
+        if (us == BLACK) {
+            fullmoveNumber++;
+        }
+
+        sideToMove = them;
+        key ^= Zobrist.BLACK_TO_MOVE;
+
+        undoCaptured[ply] = captured;
+        ply++;
+    }
+
+    /**
+     * 撤销最近一次 makeMove（走法必须与之对应）
+     */
+    public void unmakeMove(int move) {
+        ply--;
+        sideToMove ^= 1;
+        int us = sideToMove;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+
+        if (Move.promotion(move) != 0) {
+            removePiece(to);
+            putPiece(us * 6 + PAWN, to);
+        } else if (flag == Move.FLAG_CASTLE) {
+            moveCastlingRook(to, true);
+        }
+
+        movePiece(to, from);
+
+        int captured = undoCaptured[ply];
+        if (captured != NO_PIECE) {
+            int capturedSquare = flag == Move.FLAG_EN_PASSANT ? to - (us == WHITE ? 8 : -8) : to;
+            putPiece(captured, capturedSquare);
+        }
+
+        castlingRights = undoCastling[ply];
+        epSquare = undoEpSquare[ply];
+        halfmoveClock = undoHalfmove[ply];
+        key = undoKey[ply];
+        if (us == BLACK) {
+            fullmoveNumber--;
+        }
+    }
+
+    private void moveCastlingRook(int kingTo, boolean undo) {
+        int rookFrom;
+        int rookTo;
+        switch (kingTo) {
+            case 6 -> { rookFrom = 7; rookTo = 5; }
+            case 2 -> { rookFrom = 0; rookTo = 3; }
+            case 62 -> { rookFrom = 63; rookTo = 61; }
+            case 58 -> { rookFrom = 56; rookTo = 59; }
+            default -> throw new IllegalStateException("非法的易位目标格: " + kingTo);
+        }
+        if (undo) {
+            movePiece(rookTo, rookFrom);
+        } else {
+            movePiece(rookFrom, rookTo);
+        }
+    }
+
+    private void putPiece(int piece, int square) {
+        long bit = 1L << square;
+        pieces[piece] |= bit;
+        colors[piece / 6] |= bit;
+        occupied |= bit;
+        board[square] = piece;
+        key ^= Zobrist.PIECE_SQUARE[piece][square];
+    }
+
+    private void removePiece(int square) {
+        int piece = board[square];
+        long bit = 1L << square;
+        pieces[piece] &= ~bit;
+        colors[piece / 6] &= ~bit;
+        occupied &= ~bit;
+        board[square] = NO_PIECE;
+        key ^= Zobrist.PIECE_SQUARE[piece][square];
+    }
+
+    private void movePiece(int from, int to) {
+        int piece = board[from];
+        removePiece(from);
+        putPiece(piece, to);
+    }
+
+    private void growUndoStack() {
+        int size = undoKey.length * 2;
+        undoCaptured = Arrays.copyOf(undoCaptured, size);
+        undoCastling = Arrays.copyOf(undoCastling, size);
+        undoEpSquare = Arrays.copyOf(undoEpSquare, size);
+        undoHalfmove = Arrays.copyOf(undoHalfmove, size);
+        undoKey = Arrays.copyOf(undoKey, size);
+    }
+
+    // ==================== 走法解析 / 输出 ====================
+
+    /**
+     * 解析 UCI 走法（如 e2e4、e7e8q、e1g1）
+     *
+     * @return 对应的合法走法，不合法时返回 Move.NONE
+     */
+    public int parseUci(CharSequence uci) {
+        if (uci.length() < 4) return Move.NONE;
+
+        int from = parseSquare(uci.charAt(0), uci.charAt(1));
+        int to = parseSquare(uci.charAt(2), uci.charAt(3));
+        if (from == NO_SQUARE || to == NO_SQUARE) return Move.NONE;
+        int promotion = uci.length() > 4 ? Move.promotionFromChar(uci.charAt(4)) : 0;
+
+        int count = generateLegalMoves(sanBuffer);
+        for (int i = 0; i < count; i++) {
+            int move = sanBuffer[i];
+            if (Move.from(move) == from && Move.to(move) == to && Move.promotion(move) == promotion) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * 解析 SAN 走法（如 e4、Nxf3+、exd6、O-O-O、e8=Q#），忽略末尾的 +#!? 标注
+     *
+     * @return 对应的合法走法，无法解析、不合法或有歧义时返回 Move.NONE
+     */
+    public int parseSan(CharSequence san) {
+        return parseSan(san, 0, san.length());
+    }
+
+    /**
+     * 解析 san 中 [start, end) 区间的 SAN 走法，用于直接在整段棋谱文本上解析而不截取子串
+     */
+    public int parseSan(CharSequence san, int start, int end) {
+        while (start < end && Character.isWhitespace(san.charAt(start))) start++;
+        while (end > start && isAnnotation(san.charAt(end - 1))) end--;
+        if (end - start < 2) return Move.NONE;
+
+        if (isCastling(san, start, end)) {
+            boolean queenSide = end - start == 5;
+            int kingFrom = sideToMove == WHITE ? 4 : 60;
+            int kingTo = queenSide ? kingFrom - 2 : kingFrom + 2;
+            return findMove(kingFrom, kingTo, Move.FLAG_CASTLE);
+        }
+
+        int pieceType = PAWN;
+        int i = start;
+        int letter = PIECE_LETTERS.indexOf(san.charAt(i));
+        if (letter > 0) {
+            pieceType = letter;
+            i++;
+        }
+
+        int promotion = 0;
+        if (end - i >= 4 && san.charAt(end - 2) == '=') {
+            promotion = Move.promotionFromChar(san.charAt(end - 1));
+            if (promotion == 0) return Move.NONE;
+            end -= 2;
+        } else if (pieceType == PAWN && end - i >= 3 && PIECE_LETTERS.indexOf(san.charAt(end - 1)) > 0) {
+            promotion = Move.promotionFromChar(san.charAt(end - 1));
+            if (promotion == 0) return Move.NONE;
+            end--;
+        }
+
+        if (end - i < 2) return Move.NONE;
+        int to = parseSquare(san.charAt(end - 2), san.charAt(end - 1));
+        if (to == NO_SQUARE) return Move.NONE;
+
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int j = i; j < end - 2; j++) {
+            char c = san.charAt(j);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != ':' && c != '-') {
+                return Move.NONE;
+            }
+        }
+
+        int count = generateLegalMoves(sanBuffer);
+        int found = Move.NONE;
+        for (int k = 0; k < count; k++) {
+            int move = sanBuffer[k];
+            int from = Move.from(move);
+            if (Move.to(move) != to
+                    || board[from] % 6 != pieceType
+                    || Move.promotion(move) != promotion
+                    || Move.flag(move) == Move.FLAG_CASTLE
+                    || (fromFile >= 0 && (from & 7) != fromFile)
+                    || (fromRank >= 0 && (from >>> 3) != fromRank)) {
+                continue;
+            }
+            if (found != Move.NONE) {
+                return Move.NONE;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    /**
+     * 将合法走法输出为 SAN（含必要的消歧义和 +/# 后缀）
+     */
+    public String toSan(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+        int pieceType = board[from] % 6;
+        StringBuilder sb = new StringBuilder(8);
+
+        if (flag == Move.FLAG_CASTLE) {
+            sb.append(to > from ? "O-O" : "O-O-O");
+        } else if (pieceType == PAWN) {
+            boolean capture = board[to] != NO_PIECE || flag == Move.FLAG_EN_PASSANT;
+            if (capture) {
+                sb.append((char) ('a' + (from & 7))).append('x');
+            }
+            sb.append(Move.squareName(to));
+            if (Move.promotion(move) != 0) {
+                sb.append('=').append(PIECE_LETTERS.charAt(Move.promotion(move)));
+            }
+        } else {
+            sb.append(PIECE_LETTERS.charAt(pieceType));
+            appendDisambiguation(sb, move, pieceType);
+            if (board[to] != NO_PIECE) {
+                sb.append('x');
+            }
+            sb.append(Move.squareName(to));
+        }
+
+        makeMove(move);
+        if (inCheck()) {
+            sb.append(generateLegalMoves(replyBuffer) == 0 ? '#' : '+');
+        }
+        unmakeMove(move);
+
+        return sb.toString();
+    }
+
+    private void appendDisambiguation(StringBuilder sb, int move, int pieceType) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+
+        int count = generateLegalMoves(sanBuffer);
+        for (int i = 0; i < count; i++) {
+            int other = sanBuffer[i];
+            int otherFrom = Move.from(other);
+            if (Move.to(other) == to && otherFrom != from && board[otherFrom] % 6 == pieceType) {
+                ambiguous = true;
+                sameFile |= (otherFrom & 7) == (from & 7);
+                sameRank |= (otherFrom >>> 3) == (from >>> 3);
+            }
+        }
+
+        if (!ambiguous) return;
+        if (!sameFile) {
+            sb.append((char) ('a' + (from & 7)));
+        } else if (!sameRank) {
+            sb.append((char) ('1' + (from >>> 3)));
+        } else {
+            sb.append(Move.squareName(from));
+        }
+    }
+
+    private int findMove(int from, int to, int flag) {
+        int count = generateLegalMoves(sanBuffer);
+        for (int i = 0; i < count; i++) {
+            int move = sanBuffer[i];
+            if (Move.from(move) == from && Move.to(move) == to && Move.flag(move) == flag) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    private static boolean isAnnotation(char c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+
+    private static boolean isCastling(CharSequence san, int start, int end) {
+        int length = end - start;
+        if (length != 3 && length != 5) return false;
+        for (int i = start; i < end; i++) {
+            char c = san.charAt(i);
+            boolean expectDash = ((i - start) & 1) == 1;
+            if (expectDash ? c != '-' : (c != 'O' && c != '0')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseSquare(char file, char rank) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return NO_SQUARE;
+        }
+        return (rank - '1') * 8 + (file - 'a');
+    }
+
+    // ==================== FEN ====================
+
+    /**
+     * 从 FEN 设置局面（半回合计数和回合数可省略）
+     */
+    public void setFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 2) {
+            throw new IllegalArgumentException("非法的 FEN: " + fen);
+        }
+
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(colors, 0L);
+        Arrays.fill(board, NO_PIECE);
+        occupied = 0L;
+        key = 0L;
+        ply = 0;
+
+        int rank = 7;
+        int file = 0;
+        for (int i = 0; i < fields[0].length(); i++) {
+            char c = fields[0].charAt(i);
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                int piece = Zobrist.pieceIndex(c);
+                if (piece < 0 || rank < 0 || file > 7) {
+                    throw new IllegalArgumentException("非法的 FEN: " + fen);
+                }
+                putPiece(piece, rank * 8 + file);
+                file++;
+            }
+        }
+        if (Long.bitCount(pieces[KING]) != 1 || Long.bitCount(pieces[6 + KING]) != 1) {
+            throw new IllegalArgumentException("FEN 中双方必须各有一个王: " + fen);
+        }
+
+        sideToMove = "b".equals(fields[1]) ? BLACK : WHITE;
+        if (sideToMove == BLACK) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+
+        castlingRights = 0;
+        if (fields.length > 2) {
+            String castling = fields[2];
+            if (castling.indexOf('K') >= 0) castlingRights |= WHITE_KING_SIDE;
+            if (castling.indexOf('Q') >= 0) castlingRights |= WHITE_QUEEN_SIDE;
+            if (castling.indexOf('k') >= 0) castlingRights |= BLACK_KING_SIDE;
+            if (castling.indexOf('q') >= 0) castlingRights |= BLACK_QUEEN_SIDE;
+        }
+        key ^= Zobrist.CASTLING[castlingRights];
+
+        epSquare = NO_SQUARE;
+        if (fields.length > 3 && fields[3].length() == 2) {
+            int square = parseSquare(fields[3].charAt(0), fields[3].charAt(1));
+            // 与 makeMove 保持一致：只有能被吃过路时才记录
+            if (square != NO_SQUARE
+                    && (PAWN_ATTACKS[sideToMove ^ 1][square] & pieces[sideToMove * 6 + PAWN]) != 0) {
+                epSquare = square;
+                key ^= Zobrist.EN_PASSANT_FILE[square & 7];
+            }
+        }
+
+        halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+        fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+    }
+
+    /**
+     * 导出当前局面的 FEN
+     */
+    public String toFen() {
+        StringBuilder sb = new StringBuilder(90);
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = board[rank * 8 + file];
+                if (piece == NO_PIECE) {
+                    empty++;
+                } else {
+                    if (empty > 0) {
+                        sb.append(empty);
+                        empty = 0;
+                    }
+                    sb.append(Zobrist.PIECES.charAt(piece));
+                }
+            }
+            if (empty > 0) sb.append(empty);
+            if (rank > 0) sb.append('/');
+        }
+
+        sb.append(sideToMove == WHITE ? " w " : " b ");
+
+        if (castlingRights == 0) {
+            sb.append('-');
+        } else {
+            if ((castlingRights & WHITE_KING_SIDE) != 0) sb.append('K');
+            if ((castlingRights & WHITE_QUEEN_SIDE) != 0) sb.append('Q');
+            if ((castlingRights & BLACK_KING_SIDE) != 0) sb.append('k');
+            if ((castlingRights & BLACK_QUEEN_SIDE) != 0) sb.append('q');
+        }
+
+        sb.append(' ').append(epSquare == NO_SQUARE ? "-" : Move.squareName(epSquare));
+        sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return sb.toString();
+    }
+
+    // ==================== Perft ====================
+
+    /**
+     * 统计指定深度的叶子节点数（走法生成正确性校验）
+     */
+    public long perft(int depth) {
+        if (depth <= 0) return 1;
+        int[][] buffers = new int[depth + 1][MAX_MOVES];
+        return perft(depth, buffers);
+    }
+
+    private long perft(int depth, int[][] buffers) {
+        int[] moves = buffers[depth];
+        int count = generateLegalMoves(moves);
+        if (depth == 1) return count;
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            makeMove(moves[i]);
+            nodes += perft(depth - 1, buffers);
+            unmakeMove(moves[i]);
+        }
+        return nodes;
+    }
+}
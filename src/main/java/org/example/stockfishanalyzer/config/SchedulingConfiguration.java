@@ -0,0 +1,13 @@
+package org.example.stockfishanalyzer.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置
+ * 启用 Spring 的 @Scheduled 注解支持（分析任务队列的轮询）
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
@@ -1,6 +1,9 @@
 package org.example.stockfishanalyzer.config;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.stockfishanalyzer.enums.AnalysisProfile;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
@@ -22,25 +25,252 @@ public class StockfishProperties {
      */
     private Analysis analysis = new Analysis();
 
+    /**
+     * Syzygy 残局库配置
+     */
+    private Tablebase tablebase = new Tablebase();
+
+    /**
+     * 局面评估缓存配置
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * 分析任务队列配置
+     */
+    private Queue queue = new Queue();
+
     @Data
     public static class Engine {
         /**
          * Stockfish 引擎可执行文件路径
          */
         private String path = "/usr/local/bin/stockfish";
+
+        /**
+         * 引擎池大小（同时运行的 Stockfish 进程数）
+         */
+        private Integer poolSize = 2;
+
+        /**
+         * 每个引擎进程的搜索线程数
+         */
+        private Integer threads = 1;
+
+        /**
+         * 每个引擎进程的置换表大小（MB）
+         */
+        private Integer hash = 16;
+
+        /**
+         * 借用引擎的最长等待时间（毫秒）
+         */
+        private Long acquireTimeout = 60000L;
+
+        /**
+         * 引擎健康检查间隔（毫秒）：探测空闲引擎，并重新启动此前重启失败的引擎
+         */
+        private Long healthCheckInterval = 30000L;
+
+        /**
+         * 健康检查中 isready 的应答超时（毫秒），超时视为进程挂起
+         */
+        private Long pingTimeout = 5000L;
+
+        /**
+         * 引擎故障（进程退出或挂起）时，同一局面换引擎重试的次数
+         */
+        private Integer maxRetries = 1;
+
+        /**
+         * 用户设置中的引擎线程数上限
+         */
+        private Integer maxThreads = 1;
     }
 
     @Data
     public static class Analysis {
         /**
-         * 分析时间（毫秒）
+         * 每个局面的候选变化数量（MultiPV），至少为 2 时才能给出次佳走法评分用于判定妙手
          */
-        private Integer movetime = 1000;
+        private Integer multipv = 2;
 
         /**
-         * 分析深度
+         * 请求和用户设置都未指定时使用的搜索档位
          */
-        private Integer depth = 18;
+        private AnalysisProfile defaultProfile = AnalysisProfile.STANDARD;
+
+        /**
+         * 各搜索档位的配置
+         */
+        private Profiles profiles = new Profiles();
+
+        /**
+         * 开局库内的走法是否跳过引擎分析（标记为开局库走法）
+         */
+        private Boolean skipBookMoves = true;
+
+        /**
+         * 两阶段自适应分析配置
+         */
+        private Adaptive adaptive = new Adaptive();
+
+        public Profile getProfile(AnalysisProfile profile) {
+            return switch (profile) {
+                case QUICK -> profiles.getQuick();
+                case STANDARD -> profiles.getStandard();
+                case DEEP -> profiles.getDeep();
+            };
+        }
     }
-}
 
+    @Data
+    public static class Profiles {
+        /**
+         * 快速扫描：按节点数限制，单线程下结果可复现
+         */
+        private Profile quick = new Profile(0, 300000L, 1000, null, null);
+
+        /**
+         * 标准分析
+         */
+        private Profile standard = new Profile(18, 0L, 1000, null, null);
+
+        /**
+         * 深度分析
+         */
+        private Profile deep = new Profile(24, 0L, 3000, null, 64);
+    }
+
+    @Data
+    public static class Adaptive {
+        /**
+         * 是否启用两阶段分析：先用扫描档位快速分析全部局面，只对评估损失接近失误阈值的步用任务档位重新搜索
+         */
+        private Boolean enabled = true;
+
+        /**
+         * 快速扫描使用的档位（与任务档位相同时不分阶段）
+         */
+        private AnalysisProfile scanProfile = AnalysisProfile.QUICK;
+
+        /**
+         * 扫描评分的误差余量（厘兵）：评估损失达到"不精确"阈值减去余量即重新搜索
+         */
+        private Integer margin = 20;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Profile {
+        /**
+         * 搜索深度（0 表示不限）
+         */
+        private Integer depth;
+
+        /**
+         * 搜索节点数（0 表示不限）
+         */
+        private Long nodes;
+
+        /**
+         * 搜索时间（毫秒，0 表示不限），与深度、节点数同时设置时作为上限
+         */
+        private Integer movetime;
+
+        /**
+         * 搜索线程数，未设置时使用 stockfish.engine.threads
+         */
+        private Integer threads;
+
+        /**
+         * 置换表大小（MB），未设置时使用 stockfish.engine.hash
+         */
+        private Integer hash;
+    }
+
+    @Data
+    public static class Tablebase {
+        /**
+         * Syzygy 残局库（WDL / DTZ 文件）所在目录，多个目录按平台路径分隔符连接；为空时不启用
+         */
+        private String path;
+
+        /**
+         * 探测残局库的最大棋子数（含双方王）；实际上限取该值与引擎启动时报告的已加载残局库中的较小者
+         */
+        private Integer probeLimit = 7;
+
+        /**
+         * 残局库局面的搜索深度：根节点的胜负由残局库直接给出，只需浅层搜索确定走法
+         */
+        private Integer depth = 10;
+
+        /**
+         * 残局库局面的搜索时间上限（毫秒）
+         */
+        private Integer movetime = 200;
+    }
+
+    @Data
+    public static class Cache {
+        /**
+         * 是否启用局面评估缓存
+         */
+        private Boolean enabled = true;
+
+        /**
+         * 内存缓存最大条目数（超出后按最近最少使用淘汰）
+         */
+        private Integer maxEntries = 10000;
+    }
+
+    @Data
+    public static class Queue {
+        /**
+         * 同时分析的棋局数（工作线程数，通常不超过引擎池大小）
+         */
+        private Integer workers = 2;
+
+        /**
+         * 同时运行的单局上传任务上限（本节点）
+         */
+        private Integer maxInteractive = 2;
+
+        /**
+         * 同时运行的批量导入任务上限（本节点），小于 workers 时始终为单局上传保留空闲线程
+         */
+        private Integer maxBulk = 1;
+
+        /**
+         * 同时运行的重新分析任务上限（本节点）
+         */
+        private Integer maxReanalysis = 1;
+
+        /**
+         * 轮询任务表的间隔（毫秒）
+         */
+        private Long pollInterval = 1000L;
+
+        /**
+         * 任务租约时长（毫秒），每分析完一步续约一次；持有者崩溃后租约到期，任务被重新领取
+         */
+        private Long leaseDuration = 120000L;
+
+        /**
+         * 单个任务最多领取次数
+         */
+        private Integer maxAttempts = 3;
+
+        /**
+         * 失败重试的基础延迟（毫秒），按已尝试次数线性增加
+         */
+        private Long retryDelay = 30000L;
+
+        /**
+         * 从内存线程池升级后首次启动时，为停留在待分析、且从未建立过分析任务的棋局补建任务（旧版本丢失的任务）；旧版本中有意不分析的批量导入也会被加入，不需要时设为 false
+         */
+        private Boolean recoverPending = true;
+    }
+}
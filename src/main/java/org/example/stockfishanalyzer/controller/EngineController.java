@@ -0,0 +1,42 @@
+package org.example.stockfishanalyzer.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.example.stockfishanalyzer.dto.EngineStatusDto;
+import org.example.stockfishanalyzer.dto.PositionCacheStatsDto;
+import org.example.stockfishanalyzer.service.PositionCacheService;
+import org.example.stockfishanalyzer.service.StockfishService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 引擎控制器
+ * 提供 Stockfish 引擎池运行状态和局面评估缓存统计查询
+ */
+@RestController
+@RequestMapping("/api/engine")
+@RequiredArgsConstructor
+public class EngineController {
+
+    private final StockfishService stockfishService;
+    private final PositionCacheService positionCacheService;
+
+    /**
+     * 获取引擎池中每个引擎的状态
+     * GET /api/engine/status
+     */
+    @GetMapping("/status")
+    public ResponseEntity<List<EngineStatusDto>> getEngineStatus() {
+        return ResponseEntity.ok(stockfishService.getEngineStatus());
+    }
+
+    /**
+     * 获取局面评估缓存命中统计
+     * GET /api/engine/cache/stats
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<PositionCacheStatsDto> getCacheStats() {
+        return ResponseEntity.ok(positionCacheService.getStats());
+    }
+}
@@ -3,15 +3,24 @@ package org.example.stockfishanalyzer.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.stockfishanalyzer.dto.AnalysisResultDto;
+import org.example.stockfishanalyzer.dto.GamePageResponse;
+import org.example.stockfishanalyzer.dto.PgnImportProgress;
 import org.example.stockfishanalyzer.dto.PgnUploadResponse;
 import org.example.stockfishanalyzer.entity.AnalysisResult;
 import org.example.stockfishanalyzer.entity.GamePgn;
+import org.example.stockfishanalyzer.enums.AnalysisProfile;
+import org.example.stockfishanalyzer.enums.GameListField;
+import org.example.stockfishanalyzer.service.AnalysisStreamService;
 import org.example.stockfishanalyzer.service.GameAnalysisService;
 import org.example.stockfishanalyzer.service.PgnService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -26,36 +35,94 @@ public class PgnController {
 
     private final PgnService pgnService;
     private final GameAnalysisService analysisService;
+    private final AnalysisStreamService analysisStreamService;
 
     /**
      * 上传 PGN 文件
      *
-     * POST /api/pgn/upload
+     * POST /api/pgn/upload?userId=1&profile=DEEP
      * Content-Type: text/plain
      * Body: PGN 内容
+     * profile 为搜索档位（QUICK / STANDARD / DEEP），不传时按用户设置
      */
     @PostMapping("/upload")
     public ResponseEntity<PgnUploadResponse> uploadPgn(
             @RequestBody String pgnContent,
-            @RequestParam(defaultValue = "1") Long userId) {
+            @RequestParam(defaultValue = "1") Long userId,
+            @RequestParam(required = false) AnalysisProfile profile) {
 
         log.info("收到 PGN 上传请求，用户 ID: {}", userId);
 
-        PgnUploadResponse response = pgnService.uploadPgn(pgnContent, userId);
+        PgnUploadResponse response = pgnService.uploadPgn(pgnContent, userId, profile);
         return ResponseEntity.ok(response);
     }
 
     /**
-     * 获取用户的所有棋局
+     * 批量导入多局 PGN 文件（Lichess / Chess.com 导出文件）
      *
-     * GET /api/pgn/games?userId=1
+     * POST /api/pgn/import?userId=1&analyze=false&profile=QUICK
+     * Content-Type: multipart/form-data, 字段名 file
+     * 立即返回导入进度，后台流式读取并分批入库
      */
-    @GetMapping("/games")
-    public ResponseEntity<List<GamePgn>> getUserGames(
-            @RequestParam(defaultValue = "1") Long userId) {
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<PgnImportProgress> importPgnFile(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(defaultValue = "1") Long userId,
+            @RequestParam(defaultValue = "false") boolean analyze,
+            @RequestParam(required = false) AnalysisProfile profile) {
+
+        log.info("收到 PGN 批量导入请求，用户 ID: {}，文件: {}，大小: {} 字节",
+                 userId, file.getOriginalFilename(), file.getSize());
+
+        PgnImportProgress progress = pgnService.importUploadedFile(file, userId, analyze, profile);
+        return ResponseEntity.ok(progress);
+    }
+
+    /**
+     * 批量导入服务器本地的 PGN 文件
+     *
+     * POST /api/pgn/import/local?path=lichess_2025-10.pgn&userId=1
+     * path 为相对于 pgn.import.local-dir 的路径
+     */
+    @PostMapping("/import/local")
+    public ResponseEntity<PgnImportProgress> importLocalPgnFile(
+            @RequestParam String path,
+            @RequestParam(defaultValue = "1") Long userId,
+            @RequestParam(defaultValue = "false") boolean analyze,
+            @RequestParam(required = false) AnalysisProfile profile) {
+
+        log.info("收到本地 PGN 导入请求，用户 ID: {}，路径: {}", userId, path);
 
-        List<GamePgn> games = pgnService.getUserGames(userId);
-        return ResponseEntity.ok(games);
+        PgnImportProgress progress = pgnService.importLocalFile(path, userId, analyze, profile);
+        return ResponseEntity.ok(progress);
+    }
+
+    /**
+     * 查询批量导入进度
+     *
+     * GET /api/pgn/import/{importId}
+     */
+    @GetMapping("/import/{importId}")
+    public ResponseEntity<PgnImportProgress> getImportProgress(@PathVariable String importId) {
+        return ResponseEntity.ok(pgnService.getImportProgress(importId));
+    }
+
+    /**
+     * 分页获取用户的棋局列表（按上传时间倒序，不含 PGN 正文）
+     *
+     * GET /api/pgn/games?userId=1&size=20&cursor=...&fields=OPENING,STATS
+     * cursor 为上一页返回的 nextCursor，不传时返回第一页
+     * fields 为额外返回的字段组（OPENING / STATS / PGN），不传时只返回棋局摘要
+     */
+    @GetMapping("/games")
+    public ResponseEntity<GamePageResponse> getUserGames(
+            @RequestParam(defaultValue = "1") Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "") Set<GameListField> fields) {
+
+        GamePageResponse page = pgnService.listGames(userId, cursor, size, fields);
+        return ResponseEntity.ok(page);
     }
 
     /**
@@ -81,12 +148,24 @@ public class PgnController {
         List<AnalysisResult> results = analysisService.getGameAnalysis(gameId);
 
         List<AnalysisResultDto> dtos = results.stream()
-                .map(this::toDto)
+                .map(AnalysisResultDto::from)
                 .collect(Collectors.toList());
 
         return ResponseEntity.ok(dtos);
     }
 
+    /**
+     * 订阅棋局分析进度（Server-Sent Events）
+     * 先补发已保存的逐步结果，之后每分析完一步推送一条 ply 事件，状态变化推送 status 事件，
+     * 分析完成或失败后服务端关闭连接
+     *
+     * GET /api/pgn/analysis/{gameId}/stream
+     */
+    @GetMapping(value = "/analysis/{gameId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamGameAnalysis(@PathVariable Long gameId) {
+        return analysisStreamService.subscribe(gameId);
+    }
+
     /**
      * 获取特定步数的分析结果
      *
@@ -103,19 +182,6 @@ public class PgnController {
             return ResponseEntity.notFound().build();
         }
 
-        return ResponseEntity.ok(toDto(result));
-    }
-
-    /**
-     * 转换为 DTO
-     */
-    private AnalysisResultDto toDto(AnalysisResult result) {
-        return new AnalysisResultDto(
-                result.getMoveNumber(),
-                result.getMoveSan(),
-                result.getScore(),
-                result.getBestMove(),
-                result.getMoveClassification()
-        );
+        return ResponseEntity.ok(AnalysisResultDto.from(result));
     }
 }
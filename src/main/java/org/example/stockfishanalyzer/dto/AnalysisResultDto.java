@@ -3,6 +3,7 @@ package org.example.stockfishanalyzer.dto;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.example.stockfishanalyzer.entity.AnalysisResult;
 import org.example.stockfishanalyzer.enums.MoveClassification;
 
 /**
@@ -15,6 +16,28 @@ public class AnalysisResultDto {
     private Integer moveNumber;
     private String moveSan;
     private String score;
+    private Integer scoreCp;       // 厘兵评分（走子后走棋方视角），将死时为 null
+    private Integer mateIn;        // 将死步数（走子后走棋方视角）
+    private Integer evalCp;        // 白方视角评估，将死折算为 ±10000
+    private Integer depth;         // 搜索深度
     private String bestMove;
+    private String secondBestMove; // 次佳走法（UCI 格式）
+    private Integer secondBestCp;  // 次佳走法评分（走子方视角）
     private MoveClassification classification;
+
+    public static AnalysisResultDto from(AnalysisResult result) {
+        return new AnalysisResultDto(
+                result.getMoveNumber(),
+                result.getMoveSan(),
+                result.getScore(),
+                result.getScoreCp(),
+                result.getMateIn(),
+                result.getEvalCp(),
+                result.getDepth(),
+                result.getBestMove(),
+                result.getSecondBestMove(),
+                result.getSecondBestCp(),
+                result.getMoveClassification()
+        );
+    }
 }
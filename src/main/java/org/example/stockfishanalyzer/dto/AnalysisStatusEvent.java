@@ -0,0 +1,19 @@
+package org.example.stockfishanalyzer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.stockfishanalyzer.enums.AnalysisStatus;
+
+/**
+ * 分析进度流中的状态事件
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisStatusEvent {
+    private Long gameId;
+    private AnalysisStatus status;
+    private Integer analyzedMoves;  // 已保存结果的步数
+    private Integer totalMoves;     // 总步数（未知时为 null）
+}
@@ -0,0 +1,20 @@
+package org.example.stockfishanalyzer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.stockfishanalyzer.enums.EngineState;
+
+/**
+ * 引擎状态 DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EngineStatusDto {
+    private Integer engineId;
+    private EngineState state;
+    private Long searchCount;
+    private Long restartCount;
+    private String lastError;
+}
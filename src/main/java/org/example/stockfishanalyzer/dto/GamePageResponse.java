@@ -0,0 +1,24 @@
+package org.example.stockfishanalyzer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 棋局列表分页响应（键集分页）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GamePageResponse {
+
+    private List<GameSummaryDto> games;
+
+    // 下一页游标，原样传回 cursor 参数；没有更多棋局时为 null
+    private String nextCursor;
+    private Boolean hasMore;
+}
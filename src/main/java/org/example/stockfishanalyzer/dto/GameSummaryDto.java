@@ -0,0 +1,89 @@
+package org.example.stockfishanalyzer.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.stockfishanalyzer.enums.AnalysisStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 棋局列表的一行（JPQL 构造器表达式直接创建，不读取 PGN 正文）
+ * 开局、统计和 PGN 字段只在请求了对应字段组时返回，未请求的字段为 null 且不序列化
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GameSummaryDto {
+
+    private Long id;
+    private String whitePlayer;
+    private String blackPlayer;
+    private String gameResult;
+    private String gameDate;
+    private LocalDate playedOn;
+    private AnalysisStatus analysisStatus;
+    private LocalDateTime uploadedAt;
+
+    // OPENING
+    private String openingName;
+    private String ecoCode;
+    private Long openingId;
+
+    // STATS
+    private Integer analyzedMoves;
+    private Integer goodMoves;
+    private Integer blunderCount;
+    private Integer mistakeCount;
+    private Integer inaccuracyCount;
+    private Integer brilliantCount;
+
+    // PGN（单独按 ID 查询）
+    private String pgnContent;
+
+    public GameSummaryDto(Long id, String whitePlayer, String blackPlayer, String gameResult, String gameDate,
+                          LocalDate playedOn, AnalysisStatus analysisStatus, LocalDateTime uploadedAt,
+                          String openingName, String ecoCode, Long openingId,
+                          Integer analyzedMoves, Integer goodMoves, Integer blunderCount,
+                          Integer mistakeCount, Integer inaccuracyCount, Integer brilliantCount) {
+        this.id = id;
+        this.whitePlayer = whitePlayer;
+        this.blackPlayer = blackPlayer;
+        this.gameResult = gameResult;
+        this.gameDate = gameDate;
+        this.playedOn = playedOn;
+        this.analysisStatus = analysisStatus;
+        this.uploadedAt = uploadedAt;
+        this.openingName = openingName;
+        this.ecoCode = ecoCode;
+        this.openingId = openingId;
+        this.analyzedMoves = analyzedMoves;
+        this.goodMoves = goodMoves;
+        this.blunderCount = blunderCount;
+        this.mistakeCount = mistakeCount;
+        this.inaccuracyCount = inaccuracyCount;
+        this.brilliantCount = brilliantCount;
+    }
+
+    /**
+     * 清空未请求的开局字段
+     */
+    public void clearOpening() {
+        openingName = null;
+        ecoCode = null;
+        openingId = null;
+    }
+
+    /**
+     * 清空未请求的统计字段
+     */
+    public void clearStats() {
+        analyzedMoves = null;
+        goodMoves = null;
+        blunderCount = null;
+        mistakeCount = null;
+        inaccuracyCount = null;
+        brilliantCount = null;
+    }
+}
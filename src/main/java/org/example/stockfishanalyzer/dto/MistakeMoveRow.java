@@ -0,0 +1,31 @@
+package org.example.stockfishanalyzer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.stockfishanalyzer.enums.MoveClassification;
+
+import java.time.LocalDateTime;
+
+/**
+ * 失误查询的结果行（JPQL 构造器表达式直接创建）
+ * 一行包含失误走法、所属棋局信息和上一步的白方视角评估
+ */
+@Data
+@AllArgsConstructor
+public class MistakeMoveRow {
+
+    private Long gameId;
+    private String whitePlayer;
+    private String blackPlayer;
+    private String gameResult;
+    private LocalDateTime uploadedAt;
+    private String openingName;
+
+    private Integer moveNumber;
+    private MoveClassification classification;
+    private String moveSan;
+    private String bestMove;
+
+    private Integer evalCp;             // 走子后的白方视角评估
+    private Integer previousEvalCp;     // 上一步走完后的白方视角评估（第 1 步为 null）
+}
@@ -0,0 +1,45 @@
+package org.example.stockfishanalyzer.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.stockfishanalyzer.enums.ImportStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * PGN 批量导入进度 DTO
+ * 计数字段由导入线程更新、查询接口读取，因此声明为 volatile
+ */
+@Data
+@NoArgsConstructor
+public class PgnImportProgress {
+
+    private String importId;
+    private Long userId;
+    private String source;                  // 文件名或服务器本地路径
+
+    private volatile ImportStatus status = ImportStatus.RUNNING;
+
+    private volatile long totalBytes;       // 文件总字节数
+    private volatile long bytesRead;        // 已读取字节数
+
+    private volatile int gamesRead;         // 已读取棋局数
+    private volatile int gamesImported;     // 成功入库棋局数
+    private volatile int gamesFailed;       // 解析或入库失败的棋局数
+    private volatile int gamesSkipped;      // 超过单局长度上限被跳过的棋局数
+    private volatile int gamesDuplicate;    // 已导入过（指纹相同）而跳过的棋局数
+
+    private volatile String message;
+
+    private LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    /**
+     * 按已读取字节数估算的完成百分比
+     */
+    public double getPercent() {
+        if (status == ImportStatus.COMPLETED) return 100.0;
+        if (totalBytes <= 0) return 0.0;
+        return Math.min(100.0, Math.round(bytesRead * 10000.0 / totalBytes) / 100.0);
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.stockfishanalyzer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 局面评估缓存统计 DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PositionCacheStatsDto {
+
+    private Integer memoryEntries;    // 内存缓存当前条目数
+    private Integer maxMemoryEntries; // 内存缓存容量上限
+
+    private Long memoryHits;          // 内存命中次数
+    private Long databaseHits;        // 数据库命中次数
+    private Long misses;              // 未命中（需要调用引擎）次数
+    private Long evictions;           // 内存淘汰次数
+
+    private Double hitRate;           // 总命中率 %
+}
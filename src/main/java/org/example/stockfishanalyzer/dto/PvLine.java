@@ -0,0 +1,48 @@
+package org.example.stockfishanalyzer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 引擎 MultiPV 搜索中的一条候选变化
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PvLine {
+
+    /**
+     * 候选序号（1 为最佳）
+     */
+    private int multipv;
+
+    /**
+     * 厘兵评分（走棋方视角），将死时为 null
+     */
+    private Integer scoreCp;
+
+    /**
+     * 将死步数（走棋方视角），非将死时为 null
+     */
+    private Integer mateIn;
+
+    /**
+     * 该变化达到的搜索深度
+     */
+    private Integer depth;
+
+    /**
+     * 主变（UCI 格式，空格分隔）
+     */
+    private String pv;
+
+    /**
+     * 变化的第一步，即该候选走法
+     */
+    public String getMove() {
+        if (pv == null || pv.isEmpty()) return null;
+        int space = pv.indexOf(' ');
+        return space < 0 ? pv : pv.substring(0, space);
+    }
+}
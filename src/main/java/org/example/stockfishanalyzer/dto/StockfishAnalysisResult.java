@@ -4,6 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Stockfish 分析结果 DTO
  */
@@ -13,10 +16,15 @@ import lombok.NoArgsConstructor;
 public class StockfishAnalysisResult {
 
     /**
-     * 评分（如 "+120" 表示白方优势 1.2 子，"-50" 表示黑方优势 0.5 子，"M5" 表示 5 步将死）
+     * 评分显示字符串（走棋方视角，如 "+120"、"-50"、"M5"、"M-3"）
      */
     private String score;
 
+    /**
+     * 厘兵评分（走棋方视角），将死时为 null
+     */
+    private Integer scoreCp;
+
     /**
      * AI 推荐的最佳走法（UCI 格式，如 e2e4）
      */
@@ -31,4 +39,21 @@ public class StockfishAnalysisResult {
      * 将死步数（如果是将死局面）
      */
     private Integer mateIn;
+
+    /**
+     * 引擎实际达到的搜索深度
+     */
+    private Integer depth;
+
+    /**
+     * MultiPV 候选变化（按序号排列，第一条即上面的最佳评分）；单主变搜索时只有一条
+     */
+    private List<PvLine> lines = new ArrayList<>();
+
+    /**
+     * 次佳候选变化，没有时为 null
+     */
+    public PvLine getSecondLine() {
+        return lines != null && lines.size() > 1 ? lines.get(1) : null;
+    }
 }
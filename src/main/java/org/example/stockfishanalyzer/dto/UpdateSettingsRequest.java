@@ -3,6 +3,7 @@ package org.example.stockfishanalyzer.dto;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.example.stockfishanalyzer.enums.AnalysisProfile;
 
 @Data
 @NoArgsConstructor
@@ -14,6 +15,7 @@ public class UpdateSettingsRequest {
     private String pieceSet;
     private Integer analysisDepth;
     private Integer engineThreads;
+    private AnalysisProfile analysisProfile;
     private Boolean notificationsEnabled;
     private Boolean autoAnalyze;
 }
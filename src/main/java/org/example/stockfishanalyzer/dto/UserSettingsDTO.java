@@ -3,6 +3,7 @@ package org.example.stockfishanalyzer.dto;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.example.stockfishanalyzer.enums.AnalysisProfile;
 
 @Data
 @NoArgsConstructor
@@ -16,6 +17,7 @@ public class UserSettingsDTO {
     private String pieceSet;        // default, alpha, merida
     private Integer analysisDepth;  // 10-30
     private Integer engineThreads;  // 1-8
+    private AnalysisProfile analysisProfile;  // QUICK, STANDARD, DEEP；null 表示按分析深度和引擎线程数
     private Boolean notificationsEnabled;
     private Boolean autoAnalyze;
 }
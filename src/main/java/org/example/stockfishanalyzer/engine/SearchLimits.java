@@ -0,0 +1,37 @@
+package org.example.stockfishanalyzer.engine;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * 一次引擎搜索的限制条件
+ * depth / nodes / movetime 为 0 表示不限，多个限制同时存在时引擎在先达到的一个处停止
+ */
+@Value
+@AllArgsConstructor
+public class SearchLimits {
+    int depth;
+    long nodes;
+    int movetime;  // 毫秒
+    int multipv;
+    int threads;
+    int hash;      // MB
+
+    /**
+     * 决定搜索结果的限制组合，如 "d18 n0 t1000 pv2"（线程数和置换表大小不计入）
+     */
+    public String toKey() {
+        return "d" + depth + " n" + nodes + " t" + movetime + " pv" + multipv;
+    }
+
+    /**
+     * UCI go 命令；没有任何限制时退回 1 秒
+     */
+    public String toGoCommand() {
+        StringBuilder command = new StringBuilder("go");
+        if (depth > 0) command.append(" depth ").append(depth);
+        if (nodes > 0) command.append(" nodes ").append(nodes);
+        if (movetime > 0) command.append(" movetime ").append(movetime);
+        return command.length() == 2 ? "go movetime 1000" : command.toString();
+    }
+}
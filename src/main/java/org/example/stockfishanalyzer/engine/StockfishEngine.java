@@ -0,0 +1,517 @@
+package org.example.stockfishanalyzer.engine;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.dto.PvLine;
+import org.example.stockfishanalyzer.dto.StockfishAnalysisResult;
+import org.example.stockfishanalyzer.enums.EngineState;
+import org.example.stockfishanalyzer.util.ScoreUtil;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+
+/**
+ * 单个 Stockfish 引擎进程
+ * 职责：封装一个 Stockfish 进程及其 UCI 输入输出流，同一时刻只能被一个线程使用（由引擎池保证）
+ *
+ * 每个进程有一个专用读取线程，持续把输出解析为 info / bestmove / 握手应答事件，
+ * 搜索以 CompletableFuture 形式返回，调用方不会阻塞在引擎输出流上。
+ * 搜索超过时间限制仍未结束时发送 stop，再超过宽限时间仍无 bestmove 则判定进程故障。
+ */
+@Slf4j
+public class StockfishEngine {
+
+    // 握手应答（uciok / readyok）超时（毫秒）
+    private static final long HANDSHAKE_TIMEOUT = 5000;
+
+    // movetime 到期后多久仍未返回 bestmove 就发送 stop（毫秒）
+    private static final long STOP_MARGIN = 1000;
+
+    // 发送 stop 后等待 bestmove 的时间（毫秒），超时判定进程挂起
+    private static final long BESTMOVE_GRACE = 5000;
+
+    // 不限时间的搜索（只限深度或节点数）在多久后发送 stop（毫秒）
+    private static final long UNBOUNDED_SEARCH_DEADLINE = 60000;
+
+    // 旧版引擎只报告找到的 WDL 文件数：3~7 子残局库完整时的累计文件数，下标为棋子数
+    private static final int[] TABLEBASE_FILES = {0, 0, 0, 5, 35, 145, 510, 1511};
+
+    private final int id;
+    private final String enginePath;
+    private final int threads;
+    private final int hash;
+    private final String syzygyPath;
+    private final int syzygyProbeLimit;
+
+    private Process process;
+    private volatile BufferedReader reader;
+    private BufferedWriter writer;
+    private Thread readerThread;
+
+    // 进程当前的 MultiPV / 线程数 / 置换表设置，只在变化时才发送 setoption
+    private int multipv = 1;
+    private int currentThreads;
+    private int currentHash;
+
+    // 正在等待的握手应答及其关键字（由读取线程完成）
+    private volatile CompletableFuture<Void> pendingResponse;
+    private volatile String expectedResponse;
+
+    // 正在进行的搜索（由读取线程完成）
+    private volatile Search currentSearch;
+
+    // 主动关闭进程时置位，读取线程据此区分正常退出和进程崩溃
+    private volatile boolean closing;
+
+    // 设置 SyzygyPath 后引擎报告的已加载残局库最大棋子数，0 表示未加载
+    private volatile int tablebasePieces;
+
+    private volatile EngineState state = EngineState.STOPPED;
+    private volatile long searchCount;
+    private volatile long restartCount;
+    private volatile String lastError;
+
+    /**
+     * @param syzygyPath Syzygy 残局库目录（多个目录按平台分隔符连接），为空时不启用残局库
+     * @param syzygyProbeLimit 探测残局库的最大棋子数
+     */
+    public StockfishEngine(int id, String enginePath, int threads, int hash, String syzygyPath, int syzygyProbeLimit) {
+        this.id = id;
+        this.enginePath = enginePath;
+        this.threads = threads;
+        this.hash = hash;
+        this.syzygyPath = syzygyPath;
+        this.syzygyProbeLimit = syzygyProbeLimit;
+    }
+
+    /**
+     * 启动引擎进程并完成 UCI 握手
+     */
+    public void start() throws IOException, TimeoutException {
+        state = EngineState.STARTING;
+        closing = false;
+        tablebasePieces = 0;
+        try {
+            ProcessBuilder pb = new ProcessBuilder(enginePath);
+            process = pb.start();
+
+            reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+
+            // 专用读取线程：引擎的全部输出都由它解析和分发
+            readerThread = new Thread(this::readLoop, "stockfish-" + id + "-reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+
+            awaitResponse("uci", "uciok", HANDSHAKE_TIMEOUT);
+
+            sendCommand("setoption name Threads value " + threads);
+            sendCommand("setoption name Hash value " + hash);
+            if (syzygyPath != null && !syzygyPath.isBlank()) {
+                // 残局库文件由引擎以内存映射方式读取，同一进程内的后续探测直接命中；
+                // 引擎以 info string Found ... 报告找到的残局库，在 readyok 之前由读取线程记录
+                sendCommand("setoption name SyzygyPath value " + syzygyPath);
+                sendCommand("setoption name SyzygyProbeLimit value " + syzygyProbeLimit);
+            }
+            multipv = 1;
+            currentThreads = threads;
+            currentHash = hash;
+
+            awaitResponse("isready", "readyok", HANDSHAKE_TIMEOUT);
+
+            state = EngineState.IDLE;
+            log.info("Stockfish 引擎 #{} 启动成功", id);
+        } catch (IOException | TimeoutException e) {
+            markFailed(e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 重启引擎进程（用于异常恢复）
+     */
+    public void restart() throws IOException, TimeoutException {
+        log.warn("重启 Stockfish 引擎 #{}，上次错误: {}", id, lastError);
+        stop();
+        restartCount++;
+        start();
+    }
+
+    /**
+     * 开始分析棋局位置，结果在引擎返回 bestmove 时完成
+     * 超过 movetime 未结束时自动发送 stop；发送 stop 后仍无 bestmove 时以 TimeoutException 失败并标记引擎故障
+     *
+     * @param fen FEN 字符串（可选）
+     * @param moves 走法序列（UCI 格式）
+     * @param limits 搜索限制（深度、节点数、时间、候选变化数量、线程数和置换表大小）
+     */
+    public CompletableFuture<StockfishAnalysisResult> search(String fen, String moves, SearchLimits limits) {
+        if (!isAlive()) {
+            markFailed("进程已退出");
+            return CompletableFuture.failedFuture(new IOException("Stockfish 引擎 #" + id + " 进程已退出"));
+        }
+        if (currentSearch != null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Stockfish 引擎 #" + id + " 正在分析"));
+        }
+
+        Search search = new Search();
+        currentSearch = search;
+        state = EngineState.BUSY;
+
+        try {
+            if (limits.getThreads() > 0 && limits.getThreads() != currentThreads) {
+                sendCommand("setoption name Threads value " + limits.getThreads());
+                currentThreads = limits.getThreads();
+            }
+            if (limits.getHash() > 0 && limits.getHash() != currentHash) {
+                sendCommand("setoption name Hash value " + limits.getHash());
+                currentHash = limits.getHash();
+            }
+            if (limits.getMultipv() != multipv) {
+                sendCommand("setoption name MultiPV value " + limits.getMultipv());
+                multipv = limits.getMultipv();
+            }
+
+            // 设置棋局位置
+            if (fen != null && !fen.isEmpty()) {
+                sendCommand("position fen " + fen);
+            } else if (moves != null && !moves.isEmpty()) {
+                sendCommand("position startpos moves " + moves);
+            } else {
+                sendCommand("position startpos");
+            }
+
+            // 开始分析（深度、节点数、时间先达到哪个就在哪里停止）
+            sendCommand(limits.toGoCommand());
+        } catch (IOException e) {
+            finishSearch(search, null, e);
+            return search.future;
+        }
+
+        // 截止时间：先请求引擎停止，仍无响应则判定挂起
+        long deadline = limits.getMovetime() > 0 ? limits.getMovetime() : UNBOUNDED_SEARCH_DEADLINE;
+        CompletableFuture.delayedExecutor(deadline + STOP_MARGIN, TimeUnit.MILLISECONDS)
+                .execute(() -> {
+                    if (!search.future.isDone()) {
+                        log.warn("Stockfish 引擎 #{} 超过 {}ms 未返回结果，发送 stop", id, deadline);
+                        stopSearch();
+                    }
+                });
+        CompletableFuture.delayedExecutor(deadline + STOP_MARGIN + BESTMOVE_GRACE, TimeUnit.MILLISECONDS)
+                .execute(() -> finishSearch(search, null,
+                        new TimeoutException("Stockfish 引擎 #" + id + " 发送 stop 后仍未返回 bestmove")));
+
+        return search.future;
+    }
+
+    /**
+     * 存活探测：发送 isready 并在超时内等待 readyok（只能在引擎空闲时调用）
+     *
+     * @return 进程存活且按时应答
+     */
+    public boolean ping(long timeoutMs) {
+        if (!isAlive()) {
+            markFailed("进程已退出");
+            return false;
+        }
+        try {
+            awaitResponse("isready", "readyok", timeoutMs);
+            return true;
+        } catch (IOException | TimeoutException e) {
+            markFailed("健康检查失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 请求引擎立即结束当前搜索（UCI stop），引擎随后返回 bestmove 完成搜索
+     */
+    public void stopSearch() {
+        if (currentSearch == null) return;
+        try {
+            sendCommand("stop");
+        } catch (IOException e) {
+            log.debug("引擎 #{} 发送 stop 失败: {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取线程主循环：逐行解析引擎输出并分发，输出流关闭时让所有等待者失败
+     */
+    private void readLoop() {
+        BufferedReader in = reader;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                dispatch(line);
+            }
+            onOutputClosed(in, new IOException("引擎输出流已关闭"));
+        } catch (IOException e) {
+            onOutputClosed(in, e);
+        } catch (RuntimeException e) {
+            log.error("引擎 #{} 读取线程异常退出", id, e);
+            onOutputClosed(in, new IOException("引擎读取线程异常: " + e.getMessage(), e));
+        }
+    }
+
+    private void dispatch(String line) {
+        Search search = currentSearch;
+
+        if (line.startsWith("info")) {
+            if (line.startsWith("info string Found ")) {
+                tablebasePieces = parseTablebasePieces(line);
+                log.info("Stockfish 引擎 #{} {}，残局库最大棋子数: {}", id, line.substring("info string ".length()), tablebasePieces);
+                return;
+            }
+            // 只有带评分的 info 行需要解析（currmove、string 等行直接跳过）
+            if (search != null && line.contains(" score ")) {
+                PvLine pvLine = UciInfoParser.parse(line);
+                if (pvLine != null) {
+                    search.lines.put(pvLine.getMultipv(), pvLine);
+                }
+            }
+            return;
+        }
+
+        log.debug("引擎 #{} 收到: {}", id, line);
+
+        if (line.startsWith("bestmove")) {
+            if (search != null) {
+                int start = "bestmove".length() + 1;
+                int end = line.indexOf(' ', start);
+                String bestMove = start < line.length() ? line.substring(start, end < 0 ? line.length() : end) : null;
+                finishSearch(search, toResult(search.lines, bestMove), null);
+            }
+            return;
+        }
+
+        CompletableFuture<Void> pending = pendingResponse;
+        String expected = expectedResponse;
+        if (pending != null && expected != null && line.startsWith(expected)) {
+            pending.complete(null);
+        }
+    }
+
+    /**
+     * 从引擎的残局库加载报告中得出已加载残局库的最大棋子数
+     * 新版引擎报告 "Found 510 WDL and 510 DTZ tablebase files (up to 6-man)."，旧版只报告 "Found 510 tablebases"，
+     * 后者按完整残局库的累计文件数推算
+     */
+    static int parseTablebasePieces(String line) {
+        int upTo = line.indexOf("(up to ");
+        if (upTo >= 0) {
+            int start = upTo + "(up to ".length();
+            int end = line.indexOf("-man", start);
+            if (end > start) {
+                try {
+                    return Integer.parseInt(line.substring(start, end));
+                } catch (NumberFormatException ignored) {
+                    // 按文件数推算
+                }
+            }
+        }
+
+        int start = line.indexOf("Found ") + "Found ".length();
+        int end = line.indexOf(' ', start);
+        int files;
+        try {
+            files = Integer.parseInt(line.substring(start, end < 0 ? line.length() : end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        for (int pieces = TABLEBASE_FILES.length - 1; pieces >= 3; pieces--) {
+            if (files >= TABLEBASE_FILES[pieces]) return pieces;
+        }
+        return 0;
+    }
+
+    private void onOutputClosed(BufferedReader in, IOException cause) {
+        // 重启后旧进程的读取线程才退出时，不能影响新进程
+        if (in != reader) return;
+
+        if (!closing) {
+            log.warn("Stockfish 引擎 #{} 输出流关闭: {}", id, cause.getMessage());
+            markFailed(cause.getMessage());
+        }
+        CompletableFuture<Void> pending = pendingResponse;
+        if (pending != null) {
+            pending.completeExceptionally(cause);
+        }
+        Search search = currentSearch;
+        if (search != null) {
+            finishSearch(search, null, cause);
+        }
+    }
+
+    /**
+     * 结束一次搜索；同一次搜索只会结束一次（bestmove、截止时间和流关闭可能同时发生）
+     */
+    private void finishSearch(Search search, StockfishAnalysisResult result, Throwable error) {
+        synchronized (search) {
+            if (search.future.isDone()) return;
+            if (currentSearch == search) {
+                currentSearch = null;
+            }
+            if (error == null) {
+                searchCount++;
+                if (state == EngineState.BUSY) {
+                    state = EngineState.IDLE;
+                }
+                search.future.complete(result);
+            } else {
+                markFailed(error.getMessage());
+                search.future.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * 汇总搜索结果：每条候选变化保留其最后一条 info 行（即达到的最大深度），序号 1 的变化作为最佳评分
+     */
+    private StockfishAnalysisResult toResult(Map<Integer, PvLine> lines, String bestMove) {
+        StockfishAnalysisResult result = new StockfishAnalysisResult();
+
+        PvLine best = lines.get(1);
+        if (best != null) {
+            result.setScoreCp(best.getScoreCp());
+            result.setMateIn(best.getMateIn());
+            result.setMate(best.getMateIn() != null);
+            result.setDepth(best.getDepth());
+            result.setScore(ScoreUtil.format(best.getScoreCp(), best.getMateIn()));
+        }
+
+        result.setLines(new ArrayList<>(lines.values()));
+        result.setBestMove(bestMove);
+        return result;
+    }
+
+    /**
+     * 发送命令并等待应答（带超时），用于握手和存活探测
+     */
+    private void awaitResponse(String command, String response, long timeoutMs) throws IOException, TimeoutException {
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        expectedResponse = response;
+        pendingResponse = pending;
+        try {
+            sendCommand(command);
+            pending.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException("等待响应失败: " + response, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待响应时被中断: " + response, e);
+        } catch (TimeoutException e) {
+            throw new TimeoutException("等待响应超时: " + response);
+        } finally {
+            pendingResponse = null;
+            expectedResponse = null;
+        }
+    }
+
+    /**
+     * 发送命令到 Stockfish（调用方线程与截止时间回调可能同时发送 stop，写入需要互斥）
+     */
+    private synchronized void sendCommand(String command) throws IOException {
+        log.debug("引擎 #{} 发送命令: {}", id, command);
+        writer.write(command + "\n");
+        writer.flush();
+    }
+
+    /**
+     * 标记引擎为故障状态
+     */
+    public void markFailed(String reason) {
+        lastError = reason;
+        state = EngineState.FAILED;
+    }
+
+    public boolean isAlive() {
+        return process != null && process.isAlive();
+    }
+
+    public boolean isHealthy() {
+        return state != EngineState.FAILED && state != EngineState.STOPPED && isAlive();
+    }
+
+    /**
+     * 关闭引擎进程
+     */
+    public void stop() {
+        closing = true;
+        try {
+            if (writer != null && isAlive()) {
+                sendCommand("quit");
+            }
+        } catch (IOException e) {
+            log.debug("引擎 #{} 发送 quit 失败: {}", id, e.getMessage());
+        }
+
+        closeQuietly(writer);
+
+        try {
+            if (process != null && process.isAlive()) {
+                process.destroy();
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly().waitFor(5, TimeUnit.SECONDS);
+                }
+            }
+            // 进程退出后输出流结束，读取线程随之退出；先等它退出再关闭流，避免与 readLine 争用锁
+            if (readerThread != null) {
+                readerThread.join(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (readerThread == null || !readerThread.isAlive()) {
+            closeQuietly(reader);
+        }
+
+        if (state != EngineState.FAILED) {
+            state = EngineState.STOPPED;
+        }
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // 进程可能已退出
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public EngineState getState() {
+        return state;
+    }
+
+    public long getSearchCount() {
+        return searchCount;
+    }
+
+    public long getRestartCount() {
+        return restartCount;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public int getTablebasePieces() {
+        return tablebasePieces;
+    }
+
+    /**
+     * 一次搜索的状态：读取线程累积各候选变化的最新 info 行，bestmove 到达时完成 future
+     */
+    private static class Search {
+        final CompletableFuture<StockfishAnalysisResult> future = new CompletableFuture<>();
+        final Map<Integer, PvLine> lines = new TreeMap<>();
+    }
+}
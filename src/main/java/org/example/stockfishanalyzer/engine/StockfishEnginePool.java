@@ -0,0 +1,190 @@
+package org.example.stockfishanalyzer.engine;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.config.StockfishProperties;
+import org.example.stockfishanalyzer.dto.EngineStatusDto;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stockfish 引擎池
+ * 职责：管理多个 Stockfish 进程，提供借出/归还语义，使分析吞吐量随 CPU 核数扩展
+ *
+ * 等待队列使用公平模式的 ArrayBlockingQueue，先等待的线程先拿到空闲引擎；
+ * 归还时发现引擎故障则就地重启，重启失败的引擎暂时移出空闲队列，由定时健康检查继续尝试重启。
+ * 健康检查还会逐个借出空闲引擎发送 isready 探测，挂起的进程在被分析任务借到之前就会被重启。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockfishEnginePool {
+
+    private final StockfishProperties properties;
+
+    private final List<StockfishEngine> engines = new CopyOnWriteArrayList<>();
+    private BlockingQueue<StockfishEngine> idleEngines;
+
+    // 启动或重启失败、暂时移出空闲队列的引擎，由健康检查继续尝试重启
+    private final Set<StockfishEngine> detachedEngines = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        StockfishProperties.Engine config = properties.getEngine();
+        StockfishProperties.Tablebase tablebase = properties.getTablebase();
+        int poolSize = Math.max(1, config.getPoolSize());
+        idleEngines = new ArrayBlockingQueue<>(poolSize, true);
+
+        log.info("初始化 Stockfish 引擎池，路径: {}，大小: {}", config.getPath(), poolSize);
+
+        // 检查 Stockfish 引擎是否存在
+        if (!new File(config.getPath()).exists()) {
+            log.warn("Stockfish 引擎文件不存在: {}，跳过初始化（可能是测试环境）", config.getPath());
+            return;
+        }
+
+        for (int i = 0; i < poolSize; i++) {
+            StockfishEngine engine = new StockfishEngine(i + 1, config.getPath(), config.getThreads(), config.getHash(),
+                    tablebase.getPath(), tablebase.getProbeLimit());
+            engines.add(engine);
+            try {
+                engine.start();
+                idleEngines.offer(engine);
+            } catch (Exception e) {
+                log.warn("Stockfish 引擎 #{} 启动失败，稍后由健康检查重试: {}", engine.getId(), e.getMessage());
+                detachedEngines.add(engine);
+            }
+        }
+
+        log.info("Stockfish 引擎池初始化完成，可用引擎: {}/{}", idleEngines.size(), poolSize);
+    }
+
+    /**
+     * 借出一个空闲引擎（按等待顺序公平分配）
+     */
+    public StockfishEngine acquire() {
+        if (engines.isEmpty()) {
+            throw new IllegalStateException("Stockfish 引擎未初始化");
+        }
+
+        try {
+            StockfishEngine engine = idleEngines.poll(properties.getEngine().getAcquireTimeout(), TimeUnit.MILLISECONDS);
+            if (engine == null) {
+                throw new IllegalStateException("等待空闲 Stockfish 引擎超时");
+            }
+            return engine;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待 Stockfish 引擎时被中断", e);
+        }
+    }
+
+    /**
+     * 归还引擎；故障引擎先重启再放回空闲队列
+     */
+    public void release(StockfishEngine engine) {
+        if (engine == null) return;
+
+        if (!engine.isHealthy()) {
+            try {
+                engine.restart();
+            } catch (Exception e) {
+                log.error("Stockfish 引擎 #{} 重启失败，暂时移出引擎池", engine.getId(), e);
+                detachedEngines.add(engine);
+                return;
+            }
+        }
+
+        idleEngines.offer(engine);
+    }
+
+    /**
+     * 定时健康检查：重启此前移出的引擎；逐个借出当前空闲的引擎做 isready 探测，
+     * 无应答的引擎标记故障并在归还时重启。正在分析的引擎由搜索截止时间负责检测
+     */
+    @Scheduled(fixedDelayString = "${stockfish.engine.health-check-interval:30000}")
+    public void checkHealth() {
+        if (engines.isEmpty()) return;
+
+        for (StockfishEngine engine : detachedEngines) {
+            try {
+                engine.restart();
+                detachedEngines.remove(engine);
+                idleEngines.offer(engine);
+                log.info("Stockfish 引擎 #{} 已恢复", engine.getId());
+            } catch (Exception e) {
+                log.warn("Stockfish 引擎 #{} 重启仍然失败: {}", engine.getId(), e.getMessage());
+            }
+        }
+
+        long pingTimeout = properties.getEngine().getPingTimeout();
+        int idle = idleEngines.size();
+        for (int i = 0; i < idle; i++) {
+            StockfishEngine engine = idleEngines.poll();
+            if (engine == null) break;
+
+            if (!engine.ping(pingTimeout)) {
+                log.warn("Stockfish 引擎 #{} 健康检查无应答，准备重启", engine.getId());
+            }
+            release(engine);
+        }
+    }
+
+    /**
+     * 引擎池状态快照
+     */
+    public List<EngineStatusDto> getStatus() {
+        List<EngineStatusDto> status = new ArrayList<>();
+        for (StockfishEngine engine : engines) {
+            status.add(new EngineStatusDto(
+                    engine.getId(),
+                    engine.getState(),
+                    engine.getSearchCount(),
+                    engine.getRestartCount(),
+                    engine.getLastError()
+            ));
+        }
+        return status;
+    }
+
+    /**
+     * 残局库实际可探测的最大棋子数：配置的探测上限与引擎报告的已加载残局库取较小者
+     * 各引擎使用同一目录，取已启动引擎中报告的最大值；没有引擎加载到残局库时为 0
+     */
+    public int getTablebaseProbeLimit() {
+        int loaded = 0;
+        for (StockfishEngine engine : engines) {
+            loaded = Math.max(loaded, engine.getTablebasePieces());
+        }
+        return Math.min(loaded, properties.getTablebase().getProbeLimit());
+    }
+
+    public int getIdleCount() {
+        return idleEngines == null ? 0 : idleEngines.size();
+    }
+
+    public int getSize() {
+        return engines.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("关闭 Stockfish 引擎池");
+        for (StockfishEngine engine : engines) {
+            engine.stop();
+        }
+        log.info("Stockfish 引擎池已关闭");
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.stockfishanalyzer.engine;
+
+import org.example.stockfishanalyzer.dto.PvLine;
+
+/**
+ * UCI info 行解析器
+ * 职责：在原字符串上按下标扫描字段，不拆分成 token 数组，只为主变分配一次子串
+ *
+ * 格式示例: info depth 20 seldepth 28 multipv 2 score cp 120 nodes 123456 pv e2e4 e7e5
+ *          info depth 15 score mate 5 pv d1h5
+ */
+final class UciInfoParser {
+
+    private UciInfoParser() {
+    }
+
+    /**
+     * 解析一条 info 行；没有评分（如 currmove 行）或数值无法解析时返回 null。
+     * 没有 multipv 字段时视为第 1 条变化
+     */
+    static PvLine parse(String line) {
+        int length = line.length();
+        Integer depth = null;
+        Integer scoreCp = null;
+        Integer mateIn = null;
+        int multipv = 1;
+        String pv = null;
+        boolean scored = false;
+
+        try {
+            int pos = skipSpaces(line, 0);
+            while (pos < length) {
+                int end = tokenEnd(line, pos);
+
+                if (matches(line, pos, end, "depth")) {
+                    pos = skipSpaces(line, end);
+                    end = tokenEnd(line, pos);
+                    depth = Integer.parseInt(line, pos, end, 10);
+                } else if (matches(line, pos, end, "multipv")) {
+                    pos = skipSpaces(line, end);
+                    end = tokenEnd(line, pos);
+                    multipv = Integer.parseInt(line, pos, end, 10);
+                } else if (matches(line, pos, end, "score")) {
+                    int typeStart = skipSpaces(line, end);
+                    int typeEnd = tokenEnd(line, typeStart);
+                    pos = skipSpaces(line, typeEnd);
+                    end = tokenEnd(line, pos);
+                    if (matches(line, typeStart, typeEnd, "cp")) {
+                        // 厘兵 (centipawn) 评分
+                        scoreCp = Integer.parseInt(line, pos, end, 10);
+                        scored = true;
+                    } else if (matches(line, typeStart, typeEnd, "mate")) {
+                        // 将死评分（保留符号，负数表示走棋方被将死）
+                        mateIn = Integer.parseInt(line, pos, end, 10);
+                        scored = true;
+                    }
+                } else if (matches(line, pos, end, "pv")) {
+                    // pv 是 info 行的最后一个字段
+                    int pvStart = skipSpaces(line, end);
+                    if (pvStart < length) {
+                        pv = line.substring(pvStart).trim();
+                    }
+                    break;
+                } else if (matches(line, pos, end, "string")) {
+                    // info string 之后是自由文本
+                    break;
+                }
+
+                pos = skipSpaces(line, end);
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return null;
+        }
+
+        return scored ? new PvLine(multipv, scoreCp, mateIn, depth, pv) : null;
+    }
+
+    private static boolean matches(String line, int start, int end, String keyword) {
+        return end - start == keyword.length() && line.regionMatches(start, keyword, 0, keyword.length());
+    }
+
+    private static int skipSpaces(String line, int pos) {
+        while (pos < line.length() && line.charAt(pos) == ' ') pos++;
+        return pos;
+    }
+
+    private static int tokenEnd(String line, int pos) {
+        while (pos < line.length() && line.charAt(pos) != ' ') pos++;
+        return pos;
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.stockfishanalyzer.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.stockfishanalyzer.enums.AnalysisProfile;
+import org.example.stockfishanalyzer.enums.JobPriority;
+import org.example.stockfishanalyzer.enums.JobStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * 棋局分析任务实体类
+ * 数据库持久化的任务队列：工作线程以租约方式领取任务，逐步分析结果随分析进度写入，
+ * 进程崩溃或重启后租约过期，任务被重新领取并从最后一步已保存的结果处继续；
+ * 领取时按优先级类别和用户轮转，批量任务不会挤占单局上传
+ */
+@Entity
+@Table(name = "tbl_analysis_job", indexes = {
+    @Index(name = "idx_job_game", columnList = "game_id"),
+    @Index(name = "idx_job_status_run", columnList = "status, next_run_at"),
+    @Index(name = "idx_job_status_priority_user", columnList = "status, priority, user_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "game_id", nullable = false)
+    private Long gameId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * 优先级类别，决定领取顺序和并发上限
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "priority", nullable = false, length = 20,
+            columnDefinition = "varchar(20) default 'INTERACTIVE'")
+    private JobPriority priority = JobPriority.INTERACTIVE;
+
+    /**
+     * 请求指定的搜索档位；为 null 时按用户设置解析
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "profile", length = 20)
+    private AnalysisProfile profile;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private JobStatus status = JobStatus.QUEUED;
+
+    /**
+     * 已领取次数（每次领取加 1，达到上限后不再重试）
+     */
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    /**
+     * 最早可被领取的时间（失败重试时向后推迟）
+     */
+    @Column(name = "next_run_at", nullable = false)
+    private LocalDateTime nextRunAt;
+
+    /**
+     * 持有租约的工作节点标识
+     */
+    @Column(name = "lease_owner", length = 100)
+    private String leaseOwner;
+
+    /**
+     * 租约到期时间，到期未续约的 RUNNING 任务可被重新领取
+     */
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    /**
+     * 已保存分析结果的最后一步（半回合序号，断点续跑的检查点）
+     */
+    @Column(name = "last_ply", nullable = false)
+    private Integer lastPly = 0;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextRunAt == null) {
+            nextRunAt = createdAt;
+        }
+    }
+}
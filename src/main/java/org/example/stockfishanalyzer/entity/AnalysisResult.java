@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.example.stockfishanalyzer.enums.MoveClassification;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 /**
  * 分析结果实体类
@@ -34,13 +36,54 @@ public class AnalysisResult {
     @Column(name = "move_san", nullable = false, length = 20)
     private String moveSan;
 
+    /**
+     * 评分显示字符串（走棋方视角，如 "+35"、"M-3"）
+     */
     @Column(name = "score", nullable = false, length = 20)
     private String score;
 
+    /**
+     * 厘兵评分（走子后走棋方视角），将死时为 null
+     */
+    @Column(name = "score_cp")
+    private Integer scoreCp;
+
+    /**
+     * 将死步数（走子后走棋方视角，负数表示走棋方被将死），非将死时为 null
+     */
+    @Column(name = "mate_in")
+    private Integer mateIn;
+
+    /**
+     * 白方视角评估（厘兵，将死折算为 ±10000），供曲线和聚合查询直接使用
+     */
+    @Column(name = "eval_cp")
+    private Integer evalCp;
+
+    /**
+     * 引擎实际达到的搜索深度
+     */
+    @Column(name = "depth")
+    private Integer depth;
+
     @Column(name = "best_move", nullable = false, length = 20)
     private String bestMove;
 
+    /**
+     * 走子前局面的次佳走法（UCI 格式），单主变分析时为 null
+     */
+    @Column(name = "second_best_move", length = 20)
+    private String secondBestMove;
+
+    /**
+     * 次佳走法评分（走子方视角，厘兵，将死折算为 ±10000），单主变分析时为 null
+     */
+    @Column(name = "second_best_cp")
+    private Integer secondBestCp;
+
+    // 按 VARCHAR 存储而不是 MySQL 原生 ENUM：新增分类时不需要修改列定义
     @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
     @Column(name = "move_classification", length = 20)
     private MoveClassification moveClassification;
 }
@@ -1,11 +1,13 @@
 package org.example.stockfishanalyzer.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.example.stockfishanalyzer.enums.AnalysisStatus;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 /**
@@ -16,8 +18,11 @@ import java.time.LocalDateTime;
     @Index(name = "idx_user_id", columnList = "user_id"),
     @Index(name = "idx_uploaded_at", columnList = "uploaded_at"),
     @Index(name = "idx_user_uploaded", columnList = "user_id, uploaded_at"),
-    @Index(name = "idx_analysis_status", columnList = "analysis_status")
-})
+    @Index(name = "idx_analysis_status", columnList = "analysis_status"),
+    @Index(name = "idx_user_played", columnList = "user_id, played_on"),
+    @Index(name = "idx_user_opening", columnList = "user_id, opening_id"),
+    @Index(name = "idx_moves_hash", columnList = "moves_hash")
+}, uniqueConstraints = @UniqueConstraint(name = "uk_user_fingerprint", columnNames = {"user_id", "fingerprint"}))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,9 +35,21 @@ public class GamePgn {
     @Column(name = "user_id", nullable = false)
     private Long userId;
 
-    @Column(name = "pgn_content", nullable = false, columnDefinition = "TEXT")
+    /**
+     * PGN 正文（压缩后存放在 tbl_game_pgn_body，不映射到本表）
+     * 入库时由调用方设置并随棋局一起保存；查询单局详情时按需加载，列表和统计查询不读取
+     */
+    @Transient
     private String pgnContent;
 
+    /**
+     * 主线走法的紧凑编码（每步 2 字节，见 PackedMoves），分析等需要走法的地方直接解码，不再解析 PGN 正文；
+     * PGN 走法非法时为空
+     */
+    @JsonIgnore
+    @Column(name = "moves", length = 4096)
+    private byte[] moves;
+
     @Column(name = "white_player", length = 100)
     private String whitePlayer = "Unknown";
 
@@ -45,6 +62,67 @@ public class GamePgn {
     @Column(name = "game_date", length = 50)
     private String gameDate = "????.??.??";
 
+    /**
+     * 对局日期（由 Date 标签解析，日期未知时取上传日期），用于按日期聚合统计
+     */
+    @Column(name = "played_on")
+    private LocalDate playedOn;
+
+    /**
+     * 开局名称（Opening 标签）
+     */
+    @Column(name = "opening_name")
+    private String openingName;
+
+    /**
+     * ECO 开局编码（ECO 标签）
+     */
+    @Column(name = "eco_code", length = 10)
+    private String ecoCode;
+
+    /**
+     * 开局库中识别出的开局（tbl_opening_book.id），未进入开局库时为空
+     */
+    @Column(name = "opening_id")
+    private Long openingId;
+
+    /**
+     * 棋局指纹（七项必备标签 + 主线走法的 SHA-256），同一用户内唯一，用于识别重复上传
+     */
+    @Column(name = "fingerprint", length = 64)
+    private String fingerprint;
+
+    /**
+     * 主线走法的 SHA-256，走法相同的棋局（不论用户）复用分析结果
+     */
+    @Column(name = "moves_hash", length = 64)
+    private String movesHash;
+
+    /**
+     * 分析结果对应的搜索限制（见 SearchLimits.toKey），只在搜索限制相同的棋局之间复用分析结果
+     */
+    @Column(name = "analysis_key", length = 40)
+    private String analysisKey;
+
+    // 分析完成时写入的走法分类计数（未分析时为空），趋势统计直接按棋局聚合
+    @Column(name = "analyzed_moves")
+    private Integer analyzedMoves;
+
+    @Column(name = "good_moves")
+    private Integer goodMoves;
+
+    @Column(name = "blunder_count")
+    private Integer blunderCount;
+
+    @Column(name = "mistake_count")
+    private Integer mistakeCount;
+
+    @Column(name = "inaccuracy_count")
+    private Integer inaccuracyCount;
+
+    @Column(name = "brilliant_count")
+    private Integer brilliantCount;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "analysis_status", nullable = false)
     private AnalysisStatus analysisStatus = AnalysisStatus.PENDING;
@@ -55,5 +133,8 @@ public class GamePgn {
     @PrePersist
     protected void onCreate() {
         uploadedAt = LocalDateTime.now();
+        if (playedOn == null) {
+            playedOn = uploadedAt.toLocalDate();
+        }
     }
 }
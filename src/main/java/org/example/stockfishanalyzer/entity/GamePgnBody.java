@@ -0,0 +1,67 @@
+package org.example.stockfishanalyzer.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * 棋局 PGN 正文实体类
+ * PGN 正文压缩后单独存放，棋局主表只保留列表和统计查询需要的元数据，
+ * 正文只在打开单局、分析或导出时按棋局 ID 读取
+ */
+@Entity
+@Table(name = "tbl_game_pgn_body")
+@Data
+@NoArgsConstructor
+public class GamePgnBody implements Persistable<Long> {
+
+    /**
+     * 棋局 ID（tbl_game_pgn.id）
+     */
+    @Id
+    @Column(name = "game_id")
+    private Long gameId;
+
+    /**
+     * 压缩编码（见 PgnCompressor.CODEC）
+     */
+    @Column(name = "codec", nullable = false, length = 16)
+    private String codec;
+
+    /**
+     * 原文的 UTF-8 字节数
+     */
+    @Column(name = "raw_length", nullable = false)
+    private Integer rawLength;
+
+    @Column(name = "content", nullable = false, length = 16777215)
+    private byte[] content;
+
+    // 主键由棋局 ID 指定，新建的实体直接 INSERT，不先按主键查询
+    @Transient
+    private boolean isNew = true;
+
+    public GamePgnBody(Long gameId, String codec, Integer rawLength, byte[] content) {
+        this.gameId = gameId;
+        this.codec = codec;
+        this.rawLength = rawLength;
+        this.content = content;
+    }
+
+    @Override
+    public Long getId() {
+        return gameId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        isNew = false;
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.stockfishanalyzer.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 局面评估缓存实体类
+ * 以 Zobrist 局面哈希 + 搜索参数为键，在所有用户和棋局之间共享引擎评估结果
+ */
+@Entity
+@Table(name = "tbl_position_eval",
+       uniqueConstraints = @UniqueConstraint(name = "uk_position_search_limits",
+               columnNames = {"position_hash", "depth", "nodes", "movetime", "multipv"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PositionEvaluation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 局面的 64 位 Zobrist 哈希
+     */
+    @Column(name = "position_hash", nullable = false)
+    private Long positionHash;
+
+    /**
+     * 搜索深度（0 表示不限深度）
+     */
+    @Column(name = "depth", nullable = false)
+    private Integer depth;
+
+    /**
+     * 搜索节点数（0 表示不限节点数）
+     */
+    @Column(name = "nodes", nullable = false, columnDefinition = "bigint default 0")
+    private Long nodes = 0L;
+
+    /**
+     * 搜索时间（毫秒，0 表示不限时间）
+     */
+    @Column(name = "movetime", nullable = false)
+    private Integer movetime;
+
+    /**
+     * 候选走法数量
+     */
+    @Column(name = "multipv", nullable = false)
+    private Integer multipv;
+
+    @Column(name = "score", length = 20)
+    private String score;
+
+    /**
+     * 厘兵评分（走棋方视角），将死时为 null
+     */
+    @Column(name = "score_cp")
+    private Integer scoreCp;
+
+    /**
+     * 引擎实际达到的搜索深度
+     */
+    @Column(name = "reached_depth")
+    private Integer reachedDepth;
+
+    @Column(name = "best_move", length = 20)
+    private String bestMove;
+
+    @Column(name = "is_mate", nullable = false)
+    private Boolean mate = false;
+
+    @Column(name = "mate_in")
+    private Integer mateIn;
+
+    /**
+     * MultiPV 候选变化，每条一行："序号 深度 cp|mate 评分 主变"
+     */
+    @Column(name = "pv_lines", length = 2000)
+    private String pvLines;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
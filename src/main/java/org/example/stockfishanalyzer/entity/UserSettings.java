@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.example.stockfishanalyzer.enums.AnalysisProfile;
 
 import java.time.LocalDateTime;
 
@@ -38,6 +39,11 @@ public class UserSettings {
     
     @Column(name = "engine_threads")
     private Integer engineThreads = 4;  // 1-8
+
+    // 分析默认使用的搜索档位；为 null 时使用服务端默认档位，并以上面的分析深度和引擎线程数为准
+    @Enumerated(EnumType.STRING)
+    @Column(name = "analysis_profile", length = 20)
+    private AnalysisProfile analysisProfile;
     
     @Column(name = "notifications_enabled")
     private Boolean notificationsEnabled = true;
@@ -0,0 +1,10 @@
+package org.example.stockfishanalyzer.enums;
+
+/**
+ * 搜索档位（各档的深度、节点数、时间和线程/置换表配置见 stockfish.analysis.profiles）
+ */
+public enum AnalysisProfile {
+    QUICK,     // 快速扫描，按节点数限制，结果可复现、缓存命中率高
+    STANDARD,  // 标准分析
+    DEEP       // 深度分析
+}
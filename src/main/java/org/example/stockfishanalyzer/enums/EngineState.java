@@ -0,0 +1,12 @@
+package org.example.stockfishanalyzer.enums;
+
+/**
+ * Stockfish 引擎进程健康状态
+ */
+public enum EngineState {
+    STARTING,     // 启动中（UCI 握手）
+    IDLE,         // 空闲，可被借出
+    BUSY,         // 分析中
+    FAILED,       // 进程异常，等待重启
+    STOPPED       // 已关闭
+}
@@ -0,0 +1,11 @@
+package org.example.stockfishanalyzer.enums;
+
+/**
+ * 棋局列表的可选字段组
+ * 列表默认只返回棋局摘要（对局双方、结果、日期、分析状态），其余字段按需请求
+ */
+public enum GameListField {
+    OPENING,    // 开局名称、ECO 编码和开局库 ID
+    STATS,      // 分析完成后的走法分类计数
+    PGN         // PGN 正文（体积最大，仅在需要离线展示时请求）
+}
@@ -0,0 +1,10 @@
+package org.example.stockfishanalyzer.enums;
+
+/**
+ * 批量导入任务状态
+ */
+public enum ImportStatus {
+    RUNNING,      // 导入中
+    COMPLETED,    // 已完成
+    FAILED        // 导入失败
+}
@@ -0,0 +1,10 @@
+package org.example.stockfishanalyzer.enums;
+
+/**
+ * 分析任务优先级类别（按声明顺序领取，前面的类别优先）
+ */
+public enum JobPriority {
+    INTERACTIVE,  // 单局上传，用户在页面上等待结果
+    BULK,         // 批量导入
+    REANALYSIS    // 重新分析（如启动恢复的中断棋局）
+}
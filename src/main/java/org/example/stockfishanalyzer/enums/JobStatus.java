@@ -0,0 +1,11 @@
+package org.example.stockfishanalyzer.enums;
+
+/**
+ * 分析任务状态
+ */
+public enum JobStatus {
+    QUEUED,       // 排队中（含等待重试）
+    RUNNING,      // 已被工作线程领取（租约有效期内）
+    COMPLETED,    // 已完成
+    FAILED        // 重试次数用尽
+}
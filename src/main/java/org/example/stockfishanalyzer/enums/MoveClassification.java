@@ -4,6 +4,7 @@ package org.example.stockfishanalyzer.enums;
  * 走法分类枚举 - 启发式算法的输出结果
  */
 public enum MoveClassification {
+    BOOK,         // 开局库走法 - 不送引擎分析
     BRILLIANT,    // 妙手 - 最佳走法且远优于次佳
     BEST,         // 最佳走法
     GOOD,         // 好棋
@@ -0,0 +1,105 @@
+package org.example.stockfishanalyzer.repository;
+
+import org.example.stockfishanalyzer.entity.AnalysisJob;
+import org.example.stockfishanalyzer.enums.JobPriority;
+import org.example.stockfishanalyzer.enums.JobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 棋局分析任务数据访问接口
+ * 领取、续约和结束任务均为带条件的 UPDATE，多个工作线程（或多个实例）并发领取时只有一方成功
+ */
+@Repository
+public interface AnalysisJobRepository extends JpaRepository<AnalysisJob, Long> {
+
+    /**
+     * 某一优先级类别中每个用户最早的可领取任务（到期的排队任务，以及租约已过期的运行中任务）
+     */
+    @Query("SELECT j.userId AS userId, MIN(j.id) AS jobId FROM AnalysisJob j " +
+           "WHERE j.priority = :priority AND (" +
+           "(j.status = org.example.stockfishanalyzer.enums.JobStatus.QUEUED AND j.nextRunAt <= :now) " +
+           "OR (j.status = org.example.stockfishanalyzer.enums.JobStatus.RUNNING AND j.leaseExpiresAt < :now)) " +
+           "GROUP BY j.userId")
+    List<UserHead> findClaimableHeads(@Param("priority") JobPriority priority, @Param("now") LocalDateTime now);
+
+    /**
+     * 各用户正在运行（租约有效）的任务数，所有节点合计
+     */
+    @Query("SELECT j.userId AS userId, COUNT(j) AS running FROM AnalysisJob j " +
+           "WHERE j.status = org.example.stockfishanalyzer.enums.JobStatus.RUNNING AND j.leaseExpiresAt >= :now " +
+           "GROUP BY j.userId")
+    List<UserRunning> countRunningByUser(@Param("now") LocalDateTime now);
+
+    /**
+     * 领取任务并加租约，返回 1 表示领取成功
+     */
+    @Modifying
+    @Query("UPDATE AnalysisJob j SET j.status = org.example.stockfishanalyzer.enums.JobStatus.RUNNING, " +
+           "j.leaseOwner = :owner, j.leaseExpiresAt = :leaseExpiresAt, j.attempts = j.attempts + 1 " +
+           "WHERE j.id = :id AND (" +
+           "(j.status = org.example.stockfishanalyzer.enums.JobStatus.QUEUED AND j.nextRunAt <= :now) " +
+           "OR (j.status = org.example.stockfishanalyzer.enums.JobStatus.RUNNING AND j.leaseExpiresAt < :now))")
+    int claim(@Param("id") Long id,
+              @Param("owner") String owner,
+              @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt,
+              @Param("now") LocalDateTime now);
+
+    /**
+     * 续约并记录检查点，返回 0 表示租约已被其他节点接管
+     */
+    @Modifying
+    @Query("UPDATE AnalysisJob j SET j.leaseExpiresAt = :leaseExpiresAt, j.lastPly = :lastPly " +
+           "WHERE j.id = :id AND j.leaseOwner = :owner " +
+           "AND j.status = org.example.stockfishanalyzer.enums.JobStatus.RUNNING")
+    int renewLease(@Param("id") Long id,
+                   @Param("owner") String owner,
+                   @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt,
+                   @Param("lastPly") Integer lastPly);
+
+    /**
+     * 结束任务（完成、失败或重新排队），仅租约持有者可以结束
+     */
+    @Modifying
+    @Query("UPDATE AnalysisJob j SET j.status = :status, j.nextRunAt = :nextRunAt, j.lastError = :lastError, " +
+           "j.finishedAt = :finishedAt, j.leaseOwner = NULL, j.leaseExpiresAt = NULL " +
+           "WHERE j.id = :id AND j.leaseOwner = :owner " +
+           "AND j.status = org.example.stockfishanalyzer.enums.JobStatus.RUNNING")
+    int finish(@Param("id") Long id,
+               @Param("owner") String owner,
+               @Param("status") JobStatus status,
+               @Param("nextRunAt") LocalDateTime nextRunAt,
+               @Param("lastError") String lastError,
+               @Param("finishedAt") LocalDateTime finishedAt);
+
+    /**
+     * 停机时交还本节点持有的租约，不计入重试次数
+     */
+    @Modifying
+    @Query("UPDATE AnalysisJob j SET j.status = org.example.stockfishanalyzer.enums.JobStatus.QUEUED, " +
+           "j.attempts = j.attempts - 1, j.leaseOwner = NULL, j.leaseExpiresAt = NULL " +
+           "WHERE j.leaseOwner = :owner AND j.status = org.example.stockfishanalyzer.enums.JobStatus.RUNNING")
+    int releaseLeases(@Param("owner") String owner);
+
+    boolean existsByGameIdAndStatusIn(Long gameId, Collection<JobStatus> statuses);
+
+    // 启动恢复：任务表是否为空（为空说明是从内存线程池升级后的首次启动）
+    boolean existsByIdIsNotNull();
+
+    interface UserHead {
+        Long getUserId();
+        Long getJobId();
+    }
+
+    interface UserRunning {
+        Long getUserId();
+        Long getRunning();
+    }
+}
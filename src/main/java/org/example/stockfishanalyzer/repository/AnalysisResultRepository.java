@@ -1,8 +1,13 @@
 package org.example.stockfishanalyzer.repository;
 
+import org.example.stockfishanalyzer.dto.MistakeMoveRow;
 import org.example.stockfishanalyzer.entity.AnalysisResult;
+import org.example.stockfishanalyzer.entity.GamePgn;
 import org.example.stockfishanalyzer.enums.MoveClassification;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,8 +22,75 @@ public interface AnalysisResultRepository extends JpaRepository<AnalysisResult,
 
     boolean existsByGameId(Long gameId);
 
-    // 统计相关方法
-    Integer countByGameIdInAndMoveClassification(List<Long> gameIds, MoveClassification classification);
+    long countByGameId(Long gameId);
 
-    List<AnalysisResult> findByGameIdInAndMoveClassification(List<Long> gameIds, MoveClassification classification);
+    // 数值评分列回填：按主键分批扫描尚未回填的旧数据
+    // 开局库走法有意不评估（评估值留空），不属于待回填的旧数据
+    @Query("SELECT r FROM AnalysisResult r WHERE r.evalCp IS NULL AND r.id > :id " +
+           "AND (r.moveClassification IS NULL " +
+           "OR r.moveClassification <> org.example.stockfishanalyzer.enums.MoveClassification.BOOK) " +
+           "ORDER BY r.id")
+    List<AnalysisResult> findUnparsedScores(@Param("id") Long id, Limit limit);
+
+    // 用户统计重建：该用户已分析完成的棋局的走法分类计数（每种分类一行）
+    // 分析中的棋局只有部分结果，完成时由增量更新累加整局，重建时计入会重复
+    @Query("SELECT r.moveClassification AS classification, COUNT(r) AS moves " +
+           "FROM AnalysisResult r JOIN GamePgn g ON g.id = r.gameId " +
+           "WHERE g.userId = :userId " +
+           "AND g.analysisStatus = org.example.stockfishanalyzer.enums.AnalysisStatus.COMPLETED " +
+           "GROUP BY r.moveClassification")
+    List<ClassificationCount> countClassificationsByUserId(@Param("userId") Long userId);
+
+    // 失误列表：一条查询带出棋局信息和上一步评估（用于计算评分损失）
+    @Query("SELECT new org.example.stockfishanalyzer.dto.MistakeMoveRow(" +
+           "r.gameId, g.whitePlayer, g.blackPlayer, g.gameResult, g.uploadedAt, g.openingName, " +
+           "r.moveNumber, r.moveClassification, r.moveSan, r.bestMove, r.evalCp, p.evalCp) " +
+           "FROM AnalysisResult r JOIN GamePgn g ON g.id = r.gameId " +
+           "LEFT JOIN AnalysisResult p ON p.gameId = r.gameId AND p.moveNumber = r.moveNumber - 1 " +
+           "WHERE g.userId = :userId AND r.moveClassification IN :classifications")
+    List<MistakeMoveRow> findMistakesByUserId(@Param("userId") Long userId,
+                                              @Param("classifications") List<MoveClassification> classifications);
+
+    // 每局棋的走法分类计数（每局一行）
+    @Query("SELECT r.gameId AS gameId, COUNT(r) AS moves, " +
+           "SUM(CASE WHEN r.moveClassification IN (" +
+           "org.example.stockfishanalyzer.enums.MoveClassification.BEST, " +
+           "org.example.stockfishanalyzer.enums.MoveClassification.BRILLIANT, " +
+           "org.example.stockfishanalyzer.enums.MoveClassification.GOOD, " +
+           "org.example.stockfishanalyzer.enums.MoveClassification.BOOK) THEN 1 ELSE 0 END) AS goodMoves, " +
+           "SUM(CASE WHEN r.moveClassification = org.example.stockfishanalyzer.enums.MoveClassification.GOOD THEN 1 ELSE 0 END) AS goods, " +
+           "SUM(CASE WHEN r.moveClassification = org.example.stockfishanalyzer.enums.MoveClassification.BLUNDER THEN 1 ELSE 0 END) AS blunders, " +
+           "SUM(CASE WHEN r.moveClassification = org.example.stockfishanalyzer.enums.MoveClassification.MISTAKE THEN 1 ELSE 0 END) AS mistakes, " +
+           "SUM(CASE WHEN r.moveClassification = org.example.stockfishanalyzer.enums.MoveClassification.INACCURACY THEN 1 ELSE 0 END) AS inaccuracies, " +
+           "SUM(CASE WHEN r.moveClassification = org.example.stockfishanalyzer.enums.MoveClassification.BRILLIANT THEN 1 ELSE 0 END) AS brilliant " +
+           "FROM AnalysisResult r WHERE r.gameId IN :gameIds GROUP BY r.gameId")
+    List<GameMoveStats> summarizeByGameIds(@Param("gameIds") List<Long> gameIds);
+
+    interface ClassificationCount {
+        MoveClassification getClassification();
+        Long getMoves();
+    }
+
+    interface GameMoveStats {
+        Long getGameId();
+        Long getMoves();
+        Long getGoodMoves();
+        Long getGoods();
+        Long getBlunders();
+        Long getMistakes();
+        Long getInaccuracies();
+        Long getBrilliant();
+
+        /**
+         * 写入棋局的走法分类计数
+         */
+        default void applyTo(GamePgn game) {
+            game.setAnalyzedMoves(getMoves().intValue());
+            game.setGoodMoves(getGoodMoves().intValue());
+            game.setBlunderCount(getBlunders().intValue());
+            game.setMistakeCount(getMistakes().intValue());
+            game.setInaccuracyCount(getInaccuracies().intValue());
+            game.setBrilliantCount(getBrilliant().intValue());
+        }
+    }
 }
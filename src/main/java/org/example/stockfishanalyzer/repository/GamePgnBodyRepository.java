@@ -0,0 +1,9 @@
+package org.example.stockfishanalyzer.repository;
+
+import org.example.stockfishanalyzer.entity.GamePgnBody;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface GamePgnBodyRepository extends JpaRepository<GamePgnBody, Long> {
+}
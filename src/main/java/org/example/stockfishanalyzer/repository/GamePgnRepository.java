@@ -1,13 +1,19 @@
 package org.example.stockfishanalyzer.repository;
 
+import org.example.stockfishanalyzer.dto.GameSummaryDto;
 import org.example.stockfishanalyzer.entity.GamePgn;
 import org.example.stockfishanalyzer.enums.AnalysisStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface GamePgnRepository extends JpaRepository<GamePgn, Long> {
@@ -16,13 +22,150 @@ public interface GamePgnRepository extends JpaRepository<GamePgn, Long> {
 
     List<GamePgn> findByAnalysisStatus(AnalysisStatus status);
 
-    List<GamePgn> findByUserIdOrderByUploadedAtDesc(Long userId);
+    String GAME_SUMMARY_SELECT = "SELECT new org.example.stockfishanalyzer.dto.GameSummaryDto(" +
+           "g.id, g.whitePlayer, g.blackPlayer, g.gameResult, g.gameDate, g.playedOn, g.analysisStatus, g.uploadedAt, " +
+           "g.openingName, g.ecoCode, g.openingId, " +
+           "g.analyzedMoves, g.goodMoves, g.blunderCount, g.mistakeCount, g.inaccuracyCount, g.brilliantCount) " +
+           "FROM GamePgn g ";
 
-    // 统计相关方法
-    Long countByUserId(Long userId);
+    // 棋局列表首页：按 (uploaded_at, id) 倒序，沿 idx_user_uploaded 索引读取，不读取 PGN 正文
+    @Query(GAME_SUMMARY_SELECT +
+           "WHERE g.userId = :userId " +
+           "ORDER BY g.uploadedAt DESC, g.id DESC")
+    List<GameSummaryDto> findGameSummaries(@Param("userId") Long userId, Limit limit);
 
-    Integer countByUserIdAndGameResultContaining(Long userId, String gameResult);
+    // 棋局列表后续页（键集分页）：游标之后的棋局，耗时与已翻过的页数无关
+    // InnoDB 二级索引隐含主键，(user_id, uploaded_at) 索引即覆盖 (user_id, uploaded_at, id) 的排序
+    @Query(GAME_SUMMARY_SELECT +
+           "WHERE g.userId = :userId " +
+           "AND (g.uploadedAt < :uploadedAt OR (g.uploadedAt = :uploadedAt AND g.id < :id)) " +
+           "ORDER BY g.uploadedAt DESC, g.id DESC")
+    List<GameSummaryDto> findGameSummariesBefore(@Param("userId") Long userId,
+                                                 @Param("uploadedAt") LocalDateTime uploadedAt,
+                                                 @Param("id") Long id,
+                                                 Limit limit);
 
-    @Query("SELECT g.id FROM GamePgn g WHERE g.userId = :userId")
-    List<Long> findIdsByUserId(@Param("userId") Long userId);
+    // 用户统计重建：总对局数和胜负平局数
+    @Query("SELECT COUNT(g) AS games, " +
+           "COALESCE(SUM(CASE WHEN g.gameResult = '1-0' THEN 1 ELSE 0 END), 0) AS wins, " +
+           "COALESCE(SUM(CASE WHEN g.gameResult = '0-1' THEN 1 ELSE 0 END), 0) AS losses, " +
+           "COALESCE(SUM(CASE WHEN g.gameResult = '1/2-1/2' THEN 1 ELSE 0 END), 0) AS draws " +
+           "FROM GamePgn g WHERE g.userId = :userId")
+    UserGameTotals sumResultsByUserId(@Param("userId") Long userId);
+
+    // 趋势统计：按对局日期分组的棋局数、胜负局数和走法分类计数
+    // 精准度按局计算（好棋数 / 已分析步数），accuracySum 为当天各已分析棋局精准度之和
+    @Query("SELECT g.playedOn AS day, COUNT(g) AS games, " +
+           "SUM(CASE WHEN g.gameResult IN ('1-0', '0-1') THEN 1 ELSE 0 END) AS decisive, " +
+           "SUM(CASE WHEN g.analyzedMoves > 0 THEN g.goodMoves * 100.0 / g.analyzedMoves ELSE 0 END) AS accuracySum, " +
+           "SUM(CASE WHEN g.analyzedMoves > 0 THEN 1 ELSE 0 END) AS analyzedGames, " +
+           "COALESCE(SUM(g.blunderCount), 0) AS blunders, " +
+           "COALESCE(SUM(g.mistakeCount), 0) AS mistakes, " +
+           "COALESCE(SUM(g.inaccuracyCount), 0) AS inaccuracies, " +
+           "COALESCE(SUM(g.brilliantCount), 0) AS brilliant " +
+           "FROM GamePgn g " +
+           "WHERE g.userId = :userId AND g.playedOn BETWEEN :startDate AND :endDate " +
+           "GROUP BY g.playedOn")
+    List<DailyGameStats> aggregateByDay(@Param("userId") Long userId,
+                                        @Param("startDate") LocalDate startDate,
+                                        @Param("endDate") LocalDate endDate);
+
+    // 趋势统计：按开局分组的棋局数（按数量降序）
+    @Query("SELECT g.openingName AS opening, COUNT(g) AS games, " +
+           "SUM(CASE WHEN g.gameResult IN ('1-0', '0-1') THEN 1 ELSE 0 END) AS decisive " +
+           "FROM GamePgn g " +
+           "WHERE g.userId = :userId AND g.playedOn BETWEEN :startDate AND :endDate " +
+           "GROUP BY g.openingName " +
+           "ORDER BY COUNT(g) DESC")
+    List<OpeningGameCount> countGamesByOpening(@Param("userId") Long userId,
+                                               @Param("startDate") LocalDate startDate,
+                                               @Param("endDate") LocalDate endDate);
+
+    // 开局统计：按开局库中识别出的开局分组的胜负局数和走法分类计数
+    @Query("SELECT g.openingId AS openingId, COUNT(g) AS games, " +
+           "SUM(CASE WHEN g.gameResult = '1-0' THEN 1 ELSE 0 END) AS wins, " +
+           "SUM(CASE WHEN g.gameResult = '0-1' THEN 1 ELSE 0 END) AS losses, " +
+           "SUM(CASE WHEN g.gameResult = '1/2-1/2' THEN 1 ELSE 0 END) AS draws, " +
+           "SUM(CASE WHEN g.analyzedMoves > 0 THEN g.goodMoves * 100.0 / g.analyzedMoves ELSE 0 END) AS accuracySum, " +
+           "SUM(CASE WHEN g.analyzedMoves > 0 THEN 1 ELSE 0 END) AS analyzedGames, " +
+           "COALESCE(SUM(g.brilliantCount), 0) AS brilliant, " +
+           "COALESCE(SUM(g.mistakeCount), 0) AS mistakes, " +
+           "COALESCE(SUM(g.blunderCount), 0) AS blunders " +
+           "FROM GamePgn g " +
+           "WHERE g.userId = :userId AND g.openingId IS NOT NULL " +
+           "GROUP BY g.openingId")
+    List<OpeningGameStats> summarizeByOpening(@Param("userId") Long userId);
+
+    // 分析队列启动恢复：停留在分析中、却没有排队或运行中任务的棋局（旧版本内存队列丢失的任务）
+    @Query("SELECT g FROM GamePgn g " +
+           "WHERE g.analysisStatus = org.example.stockfishanalyzer.enums.AnalysisStatus.PROCESSING " +
+           "AND NOT EXISTS (SELECT j.id FROM AnalysisJob j WHERE j.gameId = g.id " +
+           "AND j.status IN (org.example.stockfishanalyzer.enums.JobStatus.QUEUED, " +
+           "org.example.stockfishanalyzer.enums.JobStatus.RUNNING))")
+    List<GamePgn> findProcessingWithoutActiveJob();
+
+    // 分析队列启动恢复：停留在待分析、从未建立过任务的棋局（旧版本内存队列溢出或重启时丢弃的任务）
+    @Query("SELECT g FROM GamePgn g " +
+           "WHERE g.analysisStatus = org.example.stockfishanalyzer.enums.AnalysisStatus.PENDING " +
+           "AND NOT EXISTS (SELECT j.id FROM AnalysisJob j WHERE j.gameId = g.id)")
+    List<GamePgn> findPendingWithoutJob();
+
+    // 重复上传检测
+    Optional<GamePgn> findByUserIdAndFingerprint(Long userId, String fingerprint);
+
+    // 批量导入去重：本批棋局中已入库的指纹
+    @Query("SELECT g.fingerprint FROM GamePgn g WHERE g.userId = :userId AND g.fingerprint IN :fingerprints")
+    List<String> findExistingFingerprints(@Param("userId") Long userId,
+                                          @Param("fingerprints") Collection<String> fingerprints);
+
+    // 分析结果复用：走法相同、以相同搜索限制分析完成的其他棋局
+    Optional<GamePgn> findFirstByMovesHashAndAnalysisKeyAndAnalysisStatusAndIdNot(String movesHash, String analysisKey,
+                                                                                AnalysisStatus analysisStatus, Long id);
+
+    // 元数据回填：按主键分批扫描尚未填写对局日期的旧数据
+    List<GamePgn> findTop200ByPlayedOnIsNullAndIdGreaterThanOrderByIdAsc(Long id);
+
+    // 走法编码回填：按主键分批扫描尚未编码走法的旧数据
+    List<GamePgn> findTop200ByMovesIsNullAndIdGreaterThanOrderByIdAsc(Long id);
+
+    // 指纹回填：按主键分批扫描尚未计算走法哈希的旧数据
+    List<GamePgn> findTop200ByMovesHashIsNullAndIdGreaterThanOrderByIdAsc(Long id);
+
+    interface UserGameTotals {
+        Long getGames();
+        Long getWins();
+        Long getLosses();
+        Long getDraws();
+    }
+
+    interface DailyGameStats {
+        LocalDate getDay();
+        Long getGames();
+        Long getDecisive();
+        Double getAccuracySum();
+        Long getAnalyzedGames();
+        Long getBlunders();
+        Long getMistakes();
+        Long getInaccuracies();
+        Long getBrilliant();
+    }
+
+    interface OpeningGameStats {
+        Long getOpeningId();
+        Long getGames();
+        Long getWins();
+        Long getLosses();
+        Long getDraws();
+        Double getAccuracySum();
+        Long getAnalyzedGames();
+        Long getBrilliant();
+        Long getMistakes();
+        Long getBlunders();
+    }
+
+    interface OpeningGameCount {
+        String getOpening();
+        Long getGames();
+        Long getDecisive();
+    }
 }
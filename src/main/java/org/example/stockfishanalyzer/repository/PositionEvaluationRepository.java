@@ -0,0 +1,20 @@
+package org.example.stockfishanalyzer.repository;
+
+import org.example.stockfishanalyzer.entity.PositionEvaluation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * 局面评估缓存数据访问接口
+ */
+@Repository
+public interface PositionEvaluationRepository extends JpaRepository<PositionEvaluation, Long> {
+
+    /**
+     * 按局面哈希和搜索参数查找缓存的评估
+     */
+    Optional<PositionEvaluation> findByPositionHashAndDepthAndNodesAndMovetimeAndMultipv(
+            Long positionHash, Integer depth, Long nodes, Integer movetime, Integer multipv);
+}
@@ -1,7 +1,11 @@
 package org.example.stockfishanalyzer.repository;
 
+import jakarta.persistence.LockModeType;
 import org.example.stockfishanalyzer.entity.UserStatistics;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -17,6 +21,13 @@ public interface UserStatisticsRepository extends JpaRepository<UserStatistics,
      */
     Optional<UserStatistics> findByUserId(Long userId);
 
+    /**
+     * 根据用户 ID 查找统计信息并加行锁，增量更新和重建在同一用户上串行执行
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UserStatistics s WHERE s.userId = :userId")
+    Optional<UserStatistics> findByUserIdForUpdate(@Param("userId") Long userId);
+
     /**
      * 检查用户是否已有统计记录
      */
@@ -0,0 +1,255 @@
+package org.example.stockfishanalyzer.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.config.StockfishProperties;
+import org.example.stockfishanalyzer.entity.AnalysisJob;
+import org.example.stockfishanalyzer.entity.GamePgn;
+import org.example.stockfishanalyzer.enums.AnalysisProfile;
+import org.example.stockfishanalyzer.enums.AnalysisStatus;
+import org.example.stockfishanalyzer.enums.JobPriority;
+import org.example.stockfishanalyzer.enums.JobStatus;
+import org.example.stockfishanalyzer.repository.AnalysisJobRepository;
+import org.example.stockfishanalyzer.repository.GamePgnRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 棋局分析任务队列服务
+ * 职责：任务入队、按优先级和用户公平领取、租约续约、完成与失败重试，以及启动时恢复旧版本遗留的分析中棋局
+ *
+ * 任务保存在 tbl_analysis_job 中，入队与棋局入库在同一事务内完成，重启或过载都不会丢失任务。
+ */
+@Slf4j
+@Service
+public class AnalysisJobService {
+
+    private static final List<JobStatus> ACTIVE_STATUSES = List.of(JobStatus.QUEUED, JobStatus.RUNNING);
+
+    private final AnalysisJobRepository analysisJobRepository;
+    private final GamePgnRepository gamePgnRepository;
+    private final StockfishProperties properties;
+    private final AnalysisStreamService analysisStreamService;
+
+    /**
+     * 各用户最近一次被领取任务的序号（本节点），用于在运行数相同的用户之间轮转；
+     * 按访问顺序保留最近的用户，超出容量时淘汰最久未被服务的用户
+     */
+    private final Map<Long, Long> lastServed = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > 10000;
+        }
+    };
+    private long serveSequence;
+
+    /**
+     * 本节点的租约持有者标识（主机名 + 随机后缀，每次启动不同）
+     */
+    private final String owner;
+
+    public AnalysisJobService(AnalysisJobRepository analysisJobRepository,
+                              GamePgnRepository gamePgnRepository,
+                              StockfishProperties properties,
+                              AnalysisStreamService analysisStreamService) {
+        this.analysisJobRepository = analysisJobRepository;
+        this.gamePgnRepository = gamePgnRepository;
+        this.properties = properties;
+        this.analysisStreamService = analysisStreamService;
+        this.owner = hostName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * 棋局入队（加入调用方事务）
+     *
+     * @param profile 搜索档位，为 null 时在分析时按用户设置解析
+     */
+    @Transactional
+    public void enqueue(GamePgn game, JobPriority priority, AnalysisProfile profile) {
+        enqueueAll(List.of(game), priority, profile);
+    }
+
+    /**
+     * 一批棋局入队，已有排队或运行中任务的棋局跳过
+     */
+    @Transactional
+    public void enqueueAll(List<GamePgn> games, JobPriority priority, AnalysisProfile profile) {
+        List<AnalysisJob> jobs = new ArrayList<>();
+        for (GamePgn game : games) {
+            if (analysisJobRepository.existsByGameIdAndStatusIn(game.getId(), ACTIVE_STATUSES)) {
+                continue;
+            }
+            AnalysisJob job = new AnalysisJob();
+            job.setGameId(game.getId());
+            job.setUserId(game.getUserId());
+            job.setPriority(priority);
+            job.setProfile(profile);
+            jobs.add(job);
+        }
+        analysisJobRepository.saveAll(jobs);
+    }
+
+    /**
+     * 从一个优先级类别中领取最多 limit 个任务，按用户公平轮转：
+     * 每一轮每个用户最多领取一个（取其最早的任务），正在运行任务少的用户先领取，
+     * 运行数相同时最久未被服务的用户先领取，一个用户积压的大批任务不会让其他用户排在它们后面。
+     * 并发领取时以条件更新的结果为准，没抢到的跳过
+     */
+    @Transactional
+    public synchronized List<AnalysisJob> claim(JobPriority priority, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime leaseExpiresAt = leaseExpiry(now);
+
+        Map<Long, Long> runningByUser = new HashMap<>();
+        for (AnalysisJobRepository.UserRunning running : analysisJobRepository.countRunningByUser(now)) {
+            runningByUser.put(running.getUserId(), running.getRunning());
+        }
+
+        List<AnalysisJob> claimed = new ArrayList<>();
+        while (claimed.size() < limit) {
+            List<AnalysisJobRepository.UserHead> heads =
+                    new ArrayList<>(analysisJobRepository.findClaimableHeads(priority, now));
+            heads.sort(Comparator
+                    .comparingLong((AnalysisJobRepository.UserHead head) -> runningByUser.getOrDefault(head.getUserId(), 0L))
+                    .thenComparingLong(head -> lastServed.getOrDefault(head.getUserId(), 0L))
+                    .thenComparingLong(AnalysisJobRepository.UserHead::getJobId));
+
+            int claimedBefore = claimed.size();
+            for (AnalysisJobRepository.UserHead head : heads) {
+                if (claimed.size() >= limit) break;
+                if (analysisJobRepository.claim(head.getJobId(), owner, leaseExpiresAt, now) == 1) {
+                    analysisJobRepository.findById(head.getJobId()).ifPresent(claimed::add);
+                    runningByUser.merge(head.getUserId(), 1L, Long::sum);
+                    lastServed.put(head.getUserId(), ++serveSequence);
+                }
+            }
+            if (claimed.size() == claimedBefore) break;
+        }
+        return claimed;
+    }
+
+    /**
+     * 记录检查点并续约；租约已被其他节点接管时抛出异常，当前分析随即中止
+     *
+     * @param lastPly 已保存分析结果的最后一步
+     */
+    @Transactional
+    public void checkpoint(AnalysisJob job, int lastPly) {
+        if (analysisJobRepository.renewLease(job.getId(), owner, leaseExpiry(LocalDateTime.now()), lastPly) == 0) {
+            throw new IllegalStateException("分析任务 " + job.getId() + " 的租约已失效");
+        }
+        job.setLastPly(lastPly);
+    }
+
+    /**
+     * 任务完成
+     */
+    @Transactional
+    public void complete(AnalysisJob job) {
+        analysisJobRepository.finish(job.getId(), owner, JobStatus.COMPLETED,
+                job.getNextRunAt(), null, LocalDateTime.now());
+    }
+
+    /**
+     * 任务失败：未达到重试上限时延迟重新排队（棋局回到待分析），否则标记失败
+     *
+     * @param retryable 是否值得重试（走法非法等确定性错误不重试）
+     */
+    @Transactional
+    public void fail(AnalysisJob job, Exception error, boolean retryable) {
+        String message = truncate(error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName());
+        StockfishProperties.Queue config = properties.getQueue();
+
+        if (retryable && job.getAttempts() < config.getMaxAttempts()) {
+            LocalDateTime nextRunAt = LocalDateTime.now()
+                    .plus(Duration.ofMillis(config.getRetryDelay() * job.getAttempts()));
+            if (analysisJobRepository.finish(job.getId(), owner, JobStatus.QUEUED, nextRunAt, message, null) == 1) {
+                updateGameStatus(job.getGameId(), AnalysisStatus.PENDING);
+                analysisStreamService.publishStatus(job.getGameId(), AnalysisStatus.PENDING, job.getLastPly(), null);
+                log.warn("分析任务 {}（棋局 {}）第 {} 次失败，{} 后重试: {}",
+                        job.getId(), job.getGameId(), job.getAttempts(), nextRunAt, message);
+            }
+            return;
+        }
+
+        if (analysisJobRepository.finish(job.getId(), owner, JobStatus.FAILED,
+                job.getNextRunAt(), message, LocalDateTime.now()) == 1) {
+            updateGameStatus(job.getGameId(), AnalysisStatus.FAILED);
+            analysisStreamService.publishStatus(job.getGameId(), AnalysisStatus.FAILED, job.getLastPly(), null);
+            log.error("分析任务 {}（棋局 {}）失败，不再重试: {}", job.getId(), job.getGameId(), message);
+        }
+    }
+
+    /**
+     * 交还本节点持有的全部租约（停机时调用），任务可被立即重新领取
+     */
+    @Transactional
+    public int releaseLeases() {
+        return analysisJobRepository.releaseLeases(owner);
+    }
+
+    /**
+     * 启动恢复：旧版本通过内存线程池分析，重启时丢失的任务会让棋局停留在"分析中"，
+     * 为这些棋局补建任务，分析从已保存的最后一步继续。
+     * 排队溢出或重启时尚未开始的任务则让棋局停留在"待分析"，这些棋局只在升级后首次启动（任务表为空）时补建一次：
+     * 此后没有任务的待分析棋局都是有意不分析的批量导入
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void recoverStuckGames() {
+        boolean firstStart = !analysisJobRepository.existsByIdIsNotNull();
+
+        List<GamePgn> stuck = gamePgnRepository.findProcessingWithoutActiveJob();
+        if (!stuck.isEmpty()) {
+            enqueueAll(stuck, JobPriority.REANALYSIS, null);
+            log.info("已为 {} 局停留在分析中的棋局重新建立分析任务", stuck.size());
+        }
+
+        if (firstStart && Boolean.TRUE.equals(properties.getQueue().getRecoverPending())) {
+            List<GamePgn> pending = gamePgnRepository.findPendingWithoutJob();
+            if (!pending.isEmpty()) {
+                enqueueAll(pending, JobPriority.BULK, null);
+                log.info("已为 {} 局停留在待分析、没有分析任务的棋局建立分析任务", pending.size());
+            }
+        }
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    private LocalDateTime leaseExpiry(LocalDateTime now) {
+        return now.plus(Duration.ofMillis(properties.getQueue().getLeaseDuration()));
+    }
+
+    private void updateGameStatus(Long gameId, AnalysisStatus status) {
+        gamePgnRepository.findById(gameId).ifPresent(game -> {
+            game.setAnalysisStatus(status);
+            gamePgnRepository.save(game);
+        });
+    }
+
+    private static String truncate(String message) {
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
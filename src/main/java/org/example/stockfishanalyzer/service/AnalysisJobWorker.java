@@ -0,0 +1,163 @@
+package org.example.stockfishanalyzer.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.chess.PackedMoves;
+import org.example.stockfishanalyzer.config.StockfishProperties;
+import org.example.stockfishanalyzer.engine.SearchLimits;
+import org.example.stockfishanalyzer.engine.StockfishEnginePool;
+import org.example.stockfishanalyzer.entity.AnalysisJob;
+import org.example.stockfishanalyzer.entity.GamePgn;
+import org.example.stockfishanalyzer.enums.JobPriority;
+import org.example.stockfishanalyzer.repository.GamePgnRepository;
+import org.example.stockfishanalyzer.util.PgnParser;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分析任务工作线程
+ * 职责：定时轮询任务表，按空闲工作线程数领取任务并执行；停机时中断分析并交还租约
+ *
+ * 工作线程池大小固定为 stockfish.queue.workers，任务只在有空闲线程时才领取，
+ * 积压的任务留在数据库中而不是内存队列里。单局上传优先领取，批量导入和重新分析各有并发上限，
+ * 批量任务再多也会为单局上传留出线程。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnalysisJobWorker {
+
+    private final AnalysisJobService analysisJobService;
+    private final GameAnalysisService analysisService;
+    private final SearchProfileService searchProfileService;
+    private final GamePgnRepository gamePgnRepository;
+    private final PgnStorageService pgnStorageService;
+    private final StockfishEnginePool enginePool;
+    private final StockfishProperties properties;
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final Map<JobPriority, AtomicInteger> runningByPriority = new EnumMap<>(JobPriority.class);
+    private ExecutorService executor;
+    private volatile boolean shuttingDown;
+
+    @PostConstruct
+    public void init() {
+        int workers = Math.max(1, properties.getQueue().getWorkers());
+        for (JobPriority priority : JobPriority.values()) {
+            runningByPriority.put(priority, new AtomicInteger());
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "analysis-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("分析任务工作线程已启动，线程数: {}，节点: {}", workers, analysisJobService.getOwner());
+    }
+
+    /**
+     * 轮询任务表；引擎不可用时不领取任务，任务保持排队而不是消耗重试次数
+     * 空闲线程按优先级类别依次分配，每个类别不超过其并发上限
+     */
+    @Scheduled(fixedDelayString = "${stockfish.queue.poll-interval:1000}")
+    public void poll() {
+        if (shuttingDown || enginePool.getSize() == 0) return;
+
+        int free = Math.max(1, properties.getQueue().getWorkers()) - running.get();
+
+        try {
+            for (JobPriority priority : JobPriority.values()) {
+                if (free <= 0) break;
+
+                AtomicInteger classRunning = runningByPriority.get(priority);
+                int available = Math.min(free, limitOf(priority) - classRunning.get());
+                if (available <= 0) continue;
+
+                for (AnalysisJob job : analysisJobService.claim(priority, available)) {
+                    free--;
+                    running.incrementAndGet();
+                    classRunning.incrementAndGet();
+                    executor.execute(() -> {
+                        try {
+                            run(job);
+                        } finally {
+                            classRunning.decrementAndGet();
+                            running.decrementAndGet();
+                        }
+                    });
+                }
+            }
+        } catch (Exception e) {
+            log.error("领取分析任务失败", e);
+        }
+    }
+
+    private int limitOf(JobPriority priority) {
+        StockfishProperties.Queue config = properties.getQueue();
+        return switch (priority) {
+            case INTERACTIVE -> config.getMaxInteractive();
+            case BULK -> config.getMaxBulk();
+            case REANALYSIS -> config.getMaxReanalysis();
+        };
+    }
+
+    private void run(AnalysisJob job) {
+        if (job.getAttempts() > properties.getQueue().getMaxAttempts()) {
+            // 反复在分析中途崩溃（租约过期后被重新领取）的任务
+            analysisJobService.fail(job, new IllegalStateException("超过最大尝试次数"), false);
+            return;
+        }
+
+        try {
+            GamePgn game = gamePgnRepository.findById(job.getGameId())
+                    .orElseThrow(() -> new IllegalArgumentException("棋局不存在: " + job.getGameId()));
+            // 走法编码为空（PGN 走法非法）时解析正文，由解析器报告出错的步数
+            List<String> moves = game.getMoves() != null
+                    ? PackedMoves.toUci(game.getMoves())
+                    : PgnParser.parseUciMoves(pgnStorageService.load(job.getGameId()));
+
+            SearchLimits limits = searchProfileService.resolve(job.getProfile(), job.getUserId());
+
+            analysisService.analyzeGame(job.getGameId(), moves, limits, ply -> analysisJobService.checkpoint(job, ply));
+            analysisJobService.complete(job);
+        } catch (Exception e) {
+            if (shuttingDown) {
+                log.info("停机中断分析任务 {}（棋局 {}），已分析至第 {} 步", job.getId(), job.getGameId(), job.getLastPly());
+                return;
+            }
+            log.error("分析任务 {}（棋局 {}）执行失败", job.getId(), job.getGameId(), e);
+            // 走法非法、棋局不存在等确定性错误重试也不会成功
+            analysisJobService.fail(job, e, !(e instanceof IllegalArgumentException));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            int released = analysisJobService.releaseLeases();
+            if (released > 0) {
+                log.info("已交还 {} 个分析任务的租约，重启后从断点继续", released);
+            }
+        } catch (Exception e) {
+            log.warn("交还分析任务租约失败，任务将在租约到期后被重新领取: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package org.example.stockfishanalyzer.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.chess.PackedMoves;
+import org.example.stockfishanalyzer.dto.AnalysisResultDto;
+import org.example.stockfishanalyzer.dto.AnalysisStatusEvent;
+import org.example.stockfishanalyzer.entity.AnalysisResult;
+import org.example.stockfishanalyzer.entity.GamePgn;
+import org.example.stockfishanalyzer.enums.AnalysisStatus;
+import org.example.stockfishanalyzer.repository.AnalysisResultRepository;
+import org.example.stockfishanalyzer.repository.GamePgnRepository;
+import org.example.stockfishanalyzer.util.PgnParser;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分析进度推送服务
+ * 职责：管理棋局分析进度的 SSE 订阅，把逐步分析结果和状态变化推送给订阅者
+ *
+ * 订阅时先补发已保存的逐步结果，之后只推送新增的步数，客户端断线重连不会漏步也不会重复。
+ * 订阅只保存在本节点内存中，只能收到本节点工作线程分析产生的事件。
+ *
+ * 推送只把事件放入订阅各自的有界队列，由专用发送线程写出，分析线程不会阻塞在客户端的网络写入上。
+ * 队列已满说明客户端读取跟不上，直接关闭该订阅；客户端重连后通过补发取回漏掉的步数。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnalysisStreamService {
+
+    // SSE 连接超时（毫秒），长棋局在慢引擎上也能分析完
+    private static final long EMITTER_TIMEOUT = 30 * 60 * 1000L;
+
+    // 每个订阅最多积压的未发送事件数
+    private static final int QUEUE_CAPACITY = 256;
+
+    // 发送线程数
+    private static final int SENDER_THREADS = 4;
+
+    private final GamePgnRepository gamePgnRepository;
+    private final AnalysisResultRepository analysisResultRepository;
+    private final PgnStorageService pgnStorageService;
+
+    private final Map<Long, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private ExecutorService sender;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        sender = Executors.newFixedThreadPool(SENDER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "analysis-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * 订阅棋局分析进度
+     * 先登记订阅再读取数据库，登记之前保存的结果由补发覆盖，之后保存的结果由推送覆盖；
+     * 补发在请求线程上直接发送，期间推送的事件在队列中等待，补发完成后再由发送线程写出
+     */
+    public SseEmitter subscribe(Long gameId) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT);
+        Subscription subscription = new Subscription(gameId, emitter);
+
+        List<Subscription> list = subscriptions.computeIfAbsent(gameId, id -> new CopyOnWriteArrayList<>());
+        list.add(subscription);
+        emitter.onCompletion(() -> remove(gameId, subscription));
+        emitter.onTimeout(() -> remove(gameId, subscription));
+        emitter.onError(e -> remove(gameId, subscription));
+
+        try {
+            synchronized (subscription) {
+                // 先读状态再读结果：状态为已完成时，读到的结果一定是完整的
+                GamePgn game = gamePgnRepository.findById(gameId)
+                        .orElseThrow(() -> new RuntimeException("棋局不存在: " + gameId));
+                AnalysisStatus status = game.getAnalysisStatus();
+
+                List<AnalysisResult> results = analysisResultRepository.findByGameIdOrderByMoveNumberAsc(gameId);
+                for (AnalysisResult result : results) {
+                    subscription.sendPly(result);
+                }
+
+                subscription.sendStatus(new AnalysisStatusEvent(gameId, status, results.size(), countMoves(game)));
+                if (isTerminal(status)) {
+                    remove(gameId, subscription);
+                    emitter.complete();
+                    return emitter;
+                }
+                subscription.ready = true;
+            }
+            subscription.schedule();
+        } catch (IOException e) {
+            remove(gameId, subscription);
+        } catch (RuntimeException e) {
+            remove(gameId, subscription);
+            throw e;
+        }
+
+        return emitter;
+    }
+
+    /**
+     * 推送一步分析结果（结果保存之后调用，不等待发送完成）
+     */
+    public void publishPly(Long gameId, AnalysisResult result) {
+        publish(gameId, result);
+    }
+
+    /**
+     * 推送状态变化（状态保存之后调用，不等待发送完成）；已完成或失败时发送后关闭连接
+     *
+     * @param totalMoves 总步数，未知时为 null
+     */
+    public void publishStatus(Long gameId, AnalysisStatus status, Integer analyzedMoves, Integer totalMoves) {
+        publish(gameId, new AnalysisStatusEvent(gameId, status, analyzedMoves, totalMoves));
+    }
+
+    private void publish(Long gameId, Object event) {
+        List<Subscription> list = subscriptions.get(gameId);
+        if (list == null) return;
+
+        for (Subscription subscription : list) {
+            if (subscription.queue.offer(event)) {
+                subscription.schedule();
+            } else {
+                log.warn("棋局 {} 的进度订阅积压超过 {} 条事件，关闭连接", gameId, QUEUE_CAPACITY);
+                subscription.close();
+            }
+        }
+    }
+
+    private void remove(Long gameId, Subscription subscription) {
+        subscriptions.computeIfPresent(gameId, (id, list) -> {
+            list.remove(subscription);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private static boolean isTerminal(AnalysisStatus status) {
+        return status == AnalysisStatus.COMPLETED || status == AnalysisStatus.FAILED;
+    }
+
+    private Integer countMoves(GamePgn game) {
+        if (game.getMoves() != null) {
+            return PackedMoves.count(game.getMoves());
+        }
+        try {
+            int[] moves = {0};
+            PgnParser.parse(pgnStorageService.load(game.getId()), (pgn, start, end) -> moves[0]++);
+            return moves[0];
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 单个订阅：推送的事件先进入队列，补发完成（ready 为 true）后由发送线程按顺序写出；
+     * 同一订阅同时最多只有一个发送任务，已发送过的步数不再重复发送
+     */
+    private class Subscription {
+
+        private final Long gameId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean ready;
+        private volatile boolean closed;
+        private int lastSentPly;
+
+        Subscription(Long gameId, SseEmitter emitter) {
+            this.gameId = gameId;
+            this.emitter = emitter;
+        }
+
+        /**
+         * 队列中有事件且没有正在运行的发送任务时提交一个
+         */
+        void schedule() {
+            if (!ready || closed || queue.isEmpty() || !scheduled.compareAndSet(false, true)) return;
+            try {
+                sender.execute(this::drain);
+            } catch (RuntimeException e) {
+                // 发送线程池已关闭
+                scheduled.set(false);
+            }
+        }
+
+        private void drain() {
+            try {
+                synchronized (this) {
+                    Object event;
+                    while (!closed && (event = queue.poll()) != null) {
+                        if (event instanceof AnalysisResult result) {
+                            sendPly(result);
+                        } else {
+                            AnalysisStatusEvent status = (AnalysisStatusEvent) event;
+                            sendStatus(status);
+                            if (isTerminal(status.getStatus())) {
+                                closed = true;
+                                emitter.complete();
+                                remove(gameId, this);
+                            }
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                closed = true;
+                remove(gameId, this);
+            } finally {
+                scheduled.set(false);
+            }
+            // 发送任务结束前入队的事件
+            schedule();
+        }
+
+        /**
+         * 关闭积压过多的订阅：关闭连接与正在进行的发送争用同一把写锁，交给发送线程执行
+         */
+        void close() {
+            if (closed) return;
+            closed = true;
+            queue.clear();
+            remove(gameId, this);
+            try {
+                sender.execute(() -> {
+                    try {
+                        emitter.complete();
+                    } catch (RuntimeException e) {
+                        log.debug("关闭棋局 {} 的进度订阅失败: {}", gameId, e.getMessage());
+                    }
+                });
+            } catch (RuntimeException e) {
+                // 发送线程池已关闭
+            }
+        }
+
+        void sendPly(AnalysisResult result) throws IOException {
+            if (result.getMoveNumber() <= lastSentPly) return;
+            emitter.send(SseEmitter.event()
+                    .name("ply")
+                    .id(String.valueOf(result.getMoveNumber()))
+                    .data(AnalysisResultDto.from(result)));
+            lastSentPly = result.getMoveNumber();
+        }
+
+        void sendStatus(AnalysisStatusEvent event) throws IOException {
+            emitter.send(SseEmitter.event().name("status").data(event));
+        }
+    }
+}
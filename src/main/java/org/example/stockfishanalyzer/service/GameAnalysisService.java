@@ -2,23 +2,30 @@ package org.example.stockfishanalyzer.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.config.StockfishProperties;
+import org.example.stockfishanalyzer.dto.PvLine;
 import org.example.stockfishanalyzer.dto.StockfishAnalysisResult;
+import org.example.stockfishanalyzer.engine.SearchLimits;
 import org.example.stockfishanalyzer.entity.AnalysisResult;
 import org.example.stockfishanalyzer.entity.GamePgn;
 import org.example.stockfishanalyzer.enums.AnalysisStatus;
 import org.example.stockfishanalyzer.enums.MoveClassification;
 import org.example.stockfishanalyzer.repository.AnalysisResultRepository;
 import org.example.stockfishanalyzer.repository.GamePgnRepository;
-import org.springframework.scheduling.annotation.Async;
+import org.example.stockfishanalyzer.util.ScoreUtil;
+import org.example.stockfishanalyzer.util.SimpleChessEngine;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.IntConsumer;
 
 /**
  * 游戏分析服务
- * 核心职责：协调异步分析流程，整合 Stockfish 引擎和走法分类算法
+ * 核心职责：逐步分析棋局并保存结果，整合 Stockfish 引擎和走法分类算法；
+ * 调度、重试和断点续跑由分析任务队列（AnalysisJobService / AnalysisJobWorker）负责，
+ * 逐步进度通过 AnalysisStreamService 推送给订阅者
  */
 @Slf4j
 @Service
@@ -29,108 +36,247 @@ public class GameAnalysisService {
     private final MoveClassificationService classificationService;
     private final GamePgnRepository gamePgnRepository;
     private final AnalysisResultRepository analysisResultRepository;
+    private final PositionCacheService positionCacheService;
+    private final UserStatisticsService userStatisticsService;
+    private final AnalysisStreamService analysisStreamService;
+    private final SearchProfileService searchProfileService;
+    private final StockfishProperties properties;
+    private final OpeningBookService openingBookService;
 
     /**
-     * 异步分析棋局
-     * 注意：@Async 使得此方法在独立线程池中执行，用户无需等待分析完成
+     * 分析棋局（由分析任务队列的工作线程调用）
+     * 每分析完一步立即保存结果并回调检查点；棋局已有部分结果时，从最后一步已保存的结果处继续。
+     * 方法本身不开启事务，避免在整个引擎分析期间占用数据库连接；失败时异常交由任务队列处理重试
+     *
+     * 启用两阶段分析时，先用扫描档位快速分析全部局面，再只对评估损失接近失误阈值的步用任务档位重新搜索；
+     * 其余步沿用扫描结果分类，大部分局面只需一次低成本搜索。
+     * 开局库内的走法标记为开局库走法，不送引擎分析；配置了残局库时，棋子数不超过探测上限的局面
+     * 由残局库给出胜负，只做浅层搜索
      *
      * @param gameId 棋局 ID
      * @param moves 走法列表（UCI 格式）
+     * @param limits 搜索限制（按任务的搜索档位解析）
+     * @param checkpoint 每保存一步后回调（参数为已保存的最后一步），租约失效时应抛出异常中止分析
      */
-    @Async
-    @Transactional
-    public void analyzeGameAsync(Long gameId, List<String> moves) {
-        log.info("开始异步分析棋局 ID: {}, 总步数: {}", gameId, moves.size());
-
-        try {
-            log.info("正在查询棋局 ID: {}", gameId);
-            // 更新状态为"分析中"
-            GamePgn game = gamePgnRepository.findById(gameId)
-                    .orElseThrow(() -> new RuntimeException("棋局不存在: " + gameId));
-
-            log.info("查询到棋局，当前状态: {}", game.getAnalysisStatus());
-            game.setAnalysisStatus(AnalysisStatus.PROCESSING);
-            gamePgnRepository.save(game);
-            log.info("已更新状态为 PROCESSING");
-
-            // 检查是否已有分析结果（缓存机制）
-            if (analysisResultRepository.existsByGameId(gameId)) {
-                log.info("棋局 {} 已有分析结果，跳过重复分析", gameId);
-                game.setAnalysisStatus(AnalysisStatus.COMPLETED);
-                gamePgnRepository.save(game);
-                return;
-            }
+    public void analyzeGame(Long gameId, List<String> moves, SearchLimits limits, IntConsumer checkpoint) {
+        GamePgn game = gamePgnRepository.findById(gameId)
+                .orElseThrow(() -> new RuntimeException("棋局不存在: " + gameId));
 
-            log.info("开始逐步分析 {} 步棋", moves.size());
-            // 逐步分析每一步棋
-            List<AnalysisResult> results = new ArrayList<>();
-            StringBuilder currentMoves = new StringBuilder();
+        // 开局库内的步不送引擎分析；导入时尚未识别开局的旧棋局顺带补上
+        OpeningBookService.OpeningMatch opening = openingBookService.matchUci(moves);
+        if (game.getOpeningId() == null) {
+            opening.applyTo(game);
+        }
+        int bookPlies = Boolean.TRUE.equals(properties.getAnalysis().getSkipBookMoves()) ? opening.getBookPlies() : 0;
 
-            for (int i = 0; i < moves.size(); i++) {
-                String move = moves.get(i);
-                int moveNumber = i + 1;
+        // 更新状态为"分析中"
+        game.setAnalysisStatus(AnalysisStatus.PROCESSING);
+        gamePgnRepository.save(game);
 
-                log.debug("分析第 {} 步: {}", moveNumber, move);
+        // 逐步结果按顺序逐条保存，已保存的条数即为断点
+        int resumeFrom = (int) Math.min(analysisResultRepository.countByGameId(gameId), moves.size());
+        if (resumeFrom > 0) {
+            log.info("棋局 {} 已保存 {} / {} 步分析结果，从第 {} 步继续", gameId, resumeFrom, moves.size(), resumeFrom + 1);
+        } else {
+            log.info("开始分析棋局 ID: {}, 总步数: {}", gameId, moves.size());
+        }
+        analysisStreamService.publishStatus(gameId, AnalysisStatus.PROCESSING, resumeFrom, moves.size());
 
-                // 分析当前位置（在走子之前）
-                String positionMoves = currentMoves.toString().trim();
-                StockfishAnalysisResult bestAnalysis = stockfishService.analyzePosition(null, positionMoves);
+        // 其他棋局（可能属于其他用户）走法相同且已按相同搜索限制分析完成时，直接复制其结果
+        if (resumeFrom == 0 && copyFromIdenticalGame(game, moves.size(), limits, checkpoint)) {
+            return;
+        }
+
+        // N 步棋共 N+1 个局面，每个局面只送引擎分析一次。
+        // 第 i 步走子后的局面就是第 i+1 步走子前的局面，其评估结果直接复用。
+        GamePositions positions = new GamePositions(moves, resumeFrom, Math.max(0, bookPlies - resumeFrom), limits,
+                searchProfileService.resolveTablebase(limits).orElse(null), searchProfileService.tablebaseProbeLimit());
+        int plies = moves.size() - resumeFrom;
 
-                // 分析实际走法后的位置
-                currentMoves.append(move).append(" ");
-                StockfishAnalysisResult actualAnalysis = stockfishService.analyzePosition(null, currentMoves.toString().trim());
+        // 第一阶段：快速扫描全部局面，找出需要加深搜索的步（扫描结果同样写入局面评估缓存，续跑时直接命中）
+        Optional<SearchLimits> scanLimits = plies > 0 && bookPlies < moves.size()
+                ? searchProfileService.resolveScan(limits) : Optional.empty();
+        if (scanLimits.isPresent()) {
+            int critical = positions.scan(scanLimits.get(), () -> checkpoint.accept(resumeFrom));
+            log.info("棋局 {} 快速扫描完成，{} / {} 步需要加深搜索", gameId, critical, plies);
+        }
 
-                // 走法分类（简化版：比较实际走法与最佳走法）
-                MoveClassification classification = classifyMove(actualAnalysis, bestAnalysis);
+        // 第二阶段：逐步分类并保存
+        for (int k = 0; k < plies; k++) {
+            int moveNumber = resumeFrom + k + 1;
 
-                // 保存分析结果
-                AnalysisResult result = new AnalysisResult();
-                result.setGameId(gameId);
-                result.setMoveNumber(moveNumber);
-                result.setMoveSan(move); // 注意：这里是 UCI 格式，实际应转换为 SAN
+            log.debug("分析第 {} 步: {}", moveNumber, moves.get(moveNumber - 1));
 
-                // 处理可能为 null 的值，提供默认值
-                String scoreValue = actualAnalysis.getScore();
-                result.setScore(scoreValue != null ? scoreValue : "0");
+            AnalysisResult result;
+            if (moveNumber <= bookPlies) {
+                // 开局库走法：只有最后一步开局库走法需要走子后局面的评估（即下一步的走子前局面）
+                result = newResult(gameId, moveNumber, positions.moveSan(k),
+                        moveNumber == bookPlies ? positions.evaluate(k + 1) : null);
+                result.setBestMove("none");
+                result.setMoveClassification(MoveClassification.BOOK);
+            } else {
+                // 走子前局面的评估给出最佳走法，走子后局面的评估即实际走法的评分
+                StockfishAnalysisResult bestAnalysis = positions.evaluate(k);
+                StockfishAnalysisResult actualAnalysis = positions.evaluate(k + 1);
+                result = newResult(gameId, moveNumber, positions.moveSan(k), actualAnalysis);
 
                 String bestMoveValue = bestAnalysis.getBestMove();
                 result.setBestMove(bestMoveValue != null ? bestMoveValue : "none");
 
-                result.setMoveClassification(classification);
+                // 走子前局面的次佳候选（MultiPV 搜索同时得出，不额外调用引擎）
+                PvLine secondLine = bestAnalysis.getSecondLine();
+                if (secondLine != null) {
+                    result.setSecondBestMove(secondLine.getMove());
+                    result.setSecondBestCp(ScoreUtil.toCentipawns(secondLine.getScoreCp(), secondLine.getMateIn()));
+                }
 
-                results.add(result);
+                // 走法分类（简化版：比较实际走法与最佳走法）；未加深搜索的步用同一档位的扫描结果比较，避免混用不同深度的评分
+                result.setMoveClassification(positions.isCritical(k)
+                        ? classifyMove(actualAnalysis, bestAnalysis)
+                        : classifyMove(positions.scanned(k + 1), positions.scanned(k)));
             }
 
-            // 批量保存结果
-            analysisResultRepository.saveAll(results);
+            // 逐步保存并记录检查点，崩溃后最多重算一步
+            analysisResultRepository.save(result);
+            checkpoint.accept(moveNumber);
+            analysisStreamService.publishPly(gameId, result);
+        }
+
+        // 更新状态为"已完成"，同时写入走法分类计数
+        completeAnalysis(game, limits);
+
+        log.info("棋局 {} 分析完成，共 {} 步", gameId, moves.size());
+    }
+
+    /**
+     * 复用走法相同的棋局的分析结果：按走法哈希和搜索限制查找已完成的棋局，逐步复制其结果
+     *
+     * @return 是否已复制并完成分析
+     */
+    private boolean copyFromIdenticalGame(GamePgn game, int totalMoves, SearchLimits limits, IntConsumer checkpoint) {
+        if (game.getMovesHash() == null || totalMoves == 0) {
+            return false;
+        }
+
+        Optional<GamePgn> source = gamePgnRepository.findFirstByMovesHashAndAnalysisKeyAndAnalysisStatusAndIdNot(
+                game.getMovesHash(), limits.toKey(), AnalysisStatus.COMPLETED, game.getId());
+        if (source.isEmpty()) {
+            return false;
+        }
+
+        List<AnalysisResult> sourceResults = analysisResultRepository.findByGameIdOrderByMoveNumberAsc(source.get().getId());
+        if (sourceResults.size() != totalMoves) {
+            return false;
+        }
+
+        List<AnalysisResult> copies = sourceResults.stream().map(result -> {
+            AnalysisResult copy = new AnalysisResult();
+            copy.setGameId(game.getId());
+            copy.setMoveNumber(result.getMoveNumber());
+            copy.setMoveSan(result.getMoveSan());
+            copy.setScore(result.getScore());
+            copy.setScoreCp(result.getScoreCp());
+            copy.setMateIn(result.getMateIn());
+            copy.setEvalCp(result.getEvalCp());
+            copy.setDepth(result.getDepth());
+            copy.setBestMove(result.getBestMove());
+            copy.setSecondBestMove(result.getSecondBestMove());
+            copy.setSecondBestCp(result.getSecondBestCp());
+            copy.setMoveClassification(result.getMoveClassification());
+            return copy;
+        }).toList();
+
+        analysisResultRepository.saveAll(copies);
+        checkpoint.accept(totalMoves);
+        copies.forEach(result -> analysisStreamService.publishPly(game.getId(), result));
+
+        completeAnalysis(game, limits);
+        log.info("棋局 {} 与棋局 {} 走法相同，已复用其分析结果（{} 步）", game.getId(), source.get().getId(), totalMoves);
+        return true;
+    }
+
+    /**
+     * 构建一步的分析结果并填入走子后局面的评分（没有评估时评分记为 "0"，评估值留空）
+     */
+    private AnalysisResult newResult(Long gameId, int moveNumber, String moveSan, StockfishAnalysisResult actualAnalysis) {
+        AnalysisResult result = new AnalysisResult();
+        result.setGameId(gameId);
+        result.setMoveNumber(moveNumber);
+        result.setMoveSan(moveSan);
+        result.setScore("0");
+        if (actualAnalysis == null) {
+            return result;
+        }
 
-            // 更新状态为"已完成"
-            game.setAnalysisStatus(AnalysisStatus.COMPLETED);
-            gamePgnRepository.save(game);
+        // 处理可能为 null 的值，提供默认值
+        String scoreValue = actualAnalysis.getScore();
+        result.setScore(scoreValue != null ? scoreValue : "0");
+        result.setScoreCp(actualAnalysis.getScoreCp());
+        result.setMateIn(actualAnalysis.getMateIn());
+        result.setEvalCp(ScoreUtil.toWhitePerspective(
+                classificationService.toCentipawns(actualAnalysis), moveNumber));
+        result.setDepth(actualAnalysis.getDepth());
+        return result;
+    }
 
-            log.info("棋局 {} 分析完成，共分析 {} 步", gameId, results.size());
+    /**
+     * 标记棋局分析完成：汇总已保存的逐步分析结果，把走法分类计数写入棋局（趋势统计按棋局聚合），
+     * 记录所用的搜索限制（供走法相同的棋局复用），并在棋局首次写入计数时累加到用户统计
+     */
+    private void completeAnalysis(GamePgn game, SearchLimits limits) {
+        boolean firstSummary = game.getAnalyzedMoves() == null;
+        List<AnalysisResultRepository.GameMoveStats> summaries =
+                analysisResultRepository.summarizeByGameIds(List.of(game.getId()));
+        summaries.forEach(summary -> summary.applyTo(game));
 
-        } catch (Exception e) {
-            log.error("分析棋局 {} 时发生错误", gameId, e);
+        game.setAnalysisStatus(AnalysisStatus.COMPLETED);
+        game.setAnalysisKey(limits.toKey());
+        gamePgnRepository.save(game);
+        analysisStreamService.publishStatus(game.getId(), AnalysisStatus.COMPLETED,
+                game.getAnalyzedMoves(), game.getAnalyzedMoves());
 
-            // 更新状态为"失败"
-            gamePgnRepository.findById(gameId).ifPresent(game -> {
-                game.setAnalysisStatus(AnalysisStatus.FAILED);
-                gamePgnRepository.save(game);
-            });
+        if (firstSummary && !summaries.isEmpty()) {
+            try {
+                userStatisticsService.recordGameAnalyzed(game.getUserId(), summaries.get(0));
+            } catch (Exception e) {
+                log.warn("棋局 {} 的用户统计增量更新失败，可通过刷新接口重建: {}", game.getId(), e.getMessage());
+            }
         }
     }
 
+    /**
+     * 评估局面：先查局面评估缓存，未命中时才调用引擎，并把结果写回缓存
+     *
+     * @param positionHash 局面 Zobrist 哈希
+     * @param moves 从初始局面开始的走法序列（UCI 格式）
+     * @param limits 搜索限制
+     */
+    private StockfishAnalysisResult evaluatePosition(long positionHash, String moves, SearchLimits limits) {
+        return positionCacheService.get(positionHash, limits)
+                .orElseGet(() -> {
+                    StockfishAnalysisResult result = stockfishService.analyzePosition(null, moves, limits);
+                    positionCacheService.put(positionHash, limits, result);
+                    return result;
+                });
+    }
+
     /**
      * 简化的走法分类逻辑
+     * 引擎评分以轮到走棋的一方为视角：走子前局面是走子方视角，走子后局面是对手视角，
+     * 因此实际走法的评分需要取反后才能与最佳走法比较；次佳评分来自走子前局面的第二条候选变化
      */
     private MoveClassification classifyMove(StockfishAnalysisResult actual, StockfishAnalysisResult best) {
-        // 将评分转换为厘兵
-        int actualScore = classificationService.parseScoreToCentipawns(actual.getScore());
-        int bestScore = classificationService.parseScoreToCentipawns(best.getScore());
+        // 将评分转换为厘兵（统一为走子方视角）
+        int actualScore = -classificationService.toCentipawns(actual);
+        int bestScore = classificationService.toCentipawns(best);
 
         // 调用分类服务
-        return classificationService.classifyMove(actualScore, bestScore, null);
+        return classificationService.classifyMove(actualScore, bestScore, secondBestScore(best));
+    }
+
+    private static Integer secondBestScore(StockfishAnalysisResult best) {
+        PvLine secondLine = best.getSecondLine();
+        return secondLine != null ? ScoreUtil.toCentipawns(secondLine.getScoreCp(), secondLine.getMateIn()) : null;
     }
 
     /**
@@ -149,4 +295,133 @@ public class GameAnalysisService {
         return analysisResultRepository.findByGameIdAndMoveNumber(gameId, moveNumber)
                 .orElse(null);
     }
+
+    /**
+     * 一局棋从断点开始的各个局面及其评估结果（下标 0 为断点处的局面，开局库内的局面不评估）
+     * 两阶段分析时记录每个局面的扫描结果；加深搜索只在用到时进行，并按局面缓存
+     */
+    private class GamePositions {
+        private final long[] hashes;
+        private final String[] prefixes;
+        private final String[] moveSans;
+        private final int firstEvaluated;
+        private final int[] pieceCounts;
+        private final SearchLimits limits;
+        private final SearchLimits tablebaseLimits;
+        private final int tablebasePieces;
+        private final StockfishAnalysisResult[] evaluations;
+
+        private StockfishAnalysisResult[] scans;
+        private boolean[] critical;
+
+        /**
+         * @param firstEvaluated 需要评估的第一个局面（之前的局面都在开局库内）
+         * @param tablebaseLimits 残局库局面的搜索限制，未配置残局库时为 null
+         * @param tablebasePieces 按残局库处理的局面的最大棋子数（引擎实际加载的残局库）
+         */
+        GamePositions(List<String> moves, int resumeFrom, int firstEvaluated, SearchLimits limits,
+                      SearchLimits tablebaseLimits, int tablebasePieces) {
+            int count = moves.size() - resumeFrom + 1;
+            this.firstEvaluated = firstEvaluated;
+            this.pieceCounts = new int[count];
+            this.tablebaseLimits = tablebaseLimits;
+            this.tablebasePieces = tablebasePieces;
+            this.hashes = new long[count];
+            this.prefixes = new String[count];
+            this.moveSans = new String[count - 1];
+            this.limits = limits;
+            this.evaluations = new StockfishAnalysisResult[count];
+
+            // 同步维护棋盘，用于计算每个局面的 Zobrist 哈希（局面评估缓存的键）
+            SimpleChessEngine board = new SimpleChessEngine();
+            StringBuilder currentMoves = new StringBuilder();
+            for (int i = 0; i < resumeFrom; i++) {
+                board.makeUciMove(moves.get(i));
+                currentMoves.append(moves.get(i)).append(" ");
+            }
+
+            for (int k = 0; k < count; k++) {
+                hashes[k] = board.getZobristKey();
+                prefixes[k] = currentMoves.toString().trim();
+                pieceCounts[k] = board.getPosition().pieceCount();
+                if (k < count - 1) {
+                    String move = moves.get(resumeFrom + k);
+                    moveSans[k] = board.uciToSan(move);
+                    board.makeUciMove(move);
+                    currentMoves.append(move).append(" ");
+                }
+            }
+        }
+
+        /**
+         * 用扫描限制分析全部局面并标记需要加深搜索的步
+         *
+         * @param progress 每扫描完一个局面后回调（用于续约任务租约）
+         * @return 需要加深搜索的步数
+         */
+        int scan(SearchLimits scanLimits, Runnable progress) {
+            scans = new StockfishAnalysisResult[hashes.length];
+            for (int k = firstEvaluated; k < hashes.length; k++) {
+                // 残局库局面的结果已是精确值，扫描和加深搜索共用同一次评估
+                scans[k] = isTablebase(k) ? evaluate(k) : evaluatePosition(hashes[k], prefixes[k], scanLimits);
+                progress.run();
+            }
+
+            int margin = properties.getAnalysis().getAdaptive().getMargin();
+            critical = new boolean[moveSans.length];
+            int count = 0;
+            for (int k = firstEvaluated; k < moveSans.length; k++) {
+                int actualScore = -classificationService.toCentipawns(scans[k + 1]);
+                int bestScore = classificationService.toCentipawns(scans[k]);
+                critical[k] = classificationService.needsDeepSearch(actualScore, bestScore, secondBestScore(scans[k]), margin);
+                if (critical[k]) count++;
+            }
+            return count;
+        }
+
+        /**
+         * 第 k 步是否用任务的搜索限制分类（未扫描时每一步都是）
+         */
+        boolean isCritical(int k) {
+            return critical == null || critical[k];
+        }
+
+        StockfishAnalysisResult scanned(int index) {
+            return scans[index];
+        }
+
+        /**
+         * 局面的最终评估：残局库局面用残局库的搜索限制；与需要加深搜索的步相邻的局面用任务的搜索限制，其余沿用扫描结果
+         */
+        StockfishAnalysisResult evaluate(int index) {
+            if (isTablebase(index)) {
+                if (evaluations[index] == null) {
+                    evaluations[index] = evaluatePosition(hashes[index], prefixes[index], tablebaseLimits);
+                }
+                return evaluations[index];
+            }
+
+            boolean deep = critical == null
+                    || (index > 0 && critical[index - 1])
+                    || (index < critical.length && critical[index]);
+            if (!deep) {
+                return scans[index];
+            }
+            if (evaluations[index] == null) {
+                evaluations[index] = evaluatePosition(hashes[index], prefixes[index], limits);
+            }
+            return evaluations[index];
+        }
+
+        /**
+         * 局面的棋子数在已加载残局库的探测范围内
+         */
+        boolean isTablebase(int index) {
+            return tablebaseLimits != null && pieceCounts[index] <= tablebasePieces;
+        }
+
+        String moveSan(int k) {
+            return moveSans[k];
+        }
+    }
 }
@@ -103,7 +103,7 @@ public class GameCompareService {
             if (classification != null) {
                 switch (classification) {
                     case BRILLIANT -> brilliant++;
-                    case GOOD -> good++;
+                    case GOOD, BOOK -> good++;
                     case INACCURACY -> inaccuracy++;
                     case MISTAKE -> mistake++;
                     case BLUNDER -> blunder++;
@@ -157,14 +157,14 @@ public class GameCompareService {
             
             // 游戏1的评分
             if (i < results1.size()) {
-                game1Scores.add(parseScore(results1.get(i).getScore()));
+                game1Scores.add(results1.get(i).getEvalCp());
             } else {
                 game1Scores.add(null);
             }
             
             // 游戏2的评分
             if (i < results2.size()) {
-                game2Scores.add(parseScore(results2.get(i).getScore()));
+                game2Scores.add(results2.get(i).getEvalCp());
             } else {
                 game2Scores.add(null);
             }
@@ -190,8 +190,8 @@ public class GameCompareService {
             AnalysisResult r1 = results1.get(i);
             AnalysisResult r2 = results2.get(i);
             
-            Integer score1 = parseScore(r1.getScore());
-            Integer score2 = parseScore(r2.getScore());
+            Integer score1 = r1.getEvalCp();
+            Integer score2 = r2.getEvalCp();
             
             if (score1 != null && score2 != null) {
                 int diff = Math.abs(score1 - score2);
@@ -217,25 +217,6 @@ public class GameCompareService {
                 .collect(Collectors.toList());
     }
     
-    /**
-     * 解析评分字符串为整数 (厘兵值)
-     */
-    private Integer parseScore(String scoreStr) {
-        if (scoreStr == null || scoreStr.isEmpty()) return null;
-        
-        try {
-            // 处理将军 (#) 和胜势 (M) 的情况
-            if (scoreStr.startsWith("#") || scoreStr.startsWith("M")) {
-                return scoreStr.charAt(0) == '#' ? 10000 : 5000;
-            }
-            // 去除 "+" 号并转换
-            return Integer.parseInt(scoreStr.replace("+", ""));
-        } catch (NumberFormatException e) {
-            log.warn("无法解析评分: {}", scoreStr);
-            return null;
-        }
-    }
-    
     /**
      * 生成差异原因描述
      */
@@ -255,6 +236,7 @@ public class GameCompareService {
      */
     private String getClassificationChinese(MoveClassification classification) {
         return switch (classification) {
+            case BOOK -> "开局库";
             case BRILLIANT -> "妙手";
             case GOOD -> "好棋";
             case BEST -> "最佳";
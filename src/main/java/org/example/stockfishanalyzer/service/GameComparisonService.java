@@ -21,6 +21,7 @@ public class GameComparisonService {
 
     private final GamePgnRepository gamePgnRepository;
     private final AnalysisResultRepository analysisResultRepository;
+    private final PgnStorageService pgnStorageService;
 
     /**
      * 对比两场棋局
@@ -65,7 +66,7 @@ public class GameComparisonService {
         info.setBlackPlayer(game.getBlackPlayer());
         info.setGameResult(game.getGameResult());
         info.setGameDate(game.getGameDate());
-        info.setPgnContent(game.getPgnContent());
+        info.setPgnContent(pgnStorageService.load(game.getId()));
 
         // 统计走法分类
         int totalMoves = results.size();
@@ -96,6 +97,7 @@ public class GameComparisonService {
                         best++;
                         break;
                     case GOOD:
+                    case BOOK:
                         good++;
                         break;
                 }
@@ -149,8 +151,7 @@ public class GameComparisonService {
     }
 
     /**
-     * 构建评分曲线
-     * 注意：由于当前 AnalysisResult 的 score 是字符串格式，这里简化处理
+     * 构建评分曲线（白方视角，单位：兵）
      */
     private List<GameComparisonDTO.ScorePoint> buildScoreCurve(List<AnalysisResult> results) {
         List<GameComparisonDTO.ScorePoint> curve = new ArrayList<>();
@@ -159,23 +160,8 @@ public class GameComparisonService {
             GameComparisonDTO.ScorePoint point = new GameComparisonDTO.ScorePoint();
             point.setMoveNumber(result.getMoveNumber());
             
-            // 尝试解析评分字符串
-            try {
-                String scoreStr = result.getScore();
-                if (scoreStr != null && !scoreStr.isEmpty()) {
-                    // 移除 "cp" 或 "mate" 前缀，提取数值
-                    scoreStr = scoreStr.replaceAll("[^-\\d.]", "");
-                    if (!scoreStr.isEmpty()) {
-                        point.setScore(Double.parseDouble(scoreStr) / 100.0); // 转换为兵值
-                    } else {
-                        point.setScore(0.0);
-                    }
-                } else {
-                    point.setScore(0.0);
-                }
-            } catch (Exception e) {
-                point.setScore(0.0);
-            }
+            Integer evalCp = result.getEvalCp();
+            point.setScore(evalCp != null ? evalCp / 100.0 : 0.0);
             
             curve.add(point);
         }
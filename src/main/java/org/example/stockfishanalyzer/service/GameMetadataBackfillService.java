@@ -0,0 +1,215 @@
+package org.example.stockfishanalyzer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.chess.PackedMoves;
+import org.example.stockfishanalyzer.entity.GamePgn;
+import org.example.stockfishanalyzer.repository.AnalysisResultRepository;
+import org.example.stockfishanalyzer.repository.GamePgnRepository;
+import org.example.stockfishanalyzer.util.GameFingerprint;
+import org.example.stockfishanalyzer.util.PgnParser;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 棋局元数据回填服务
+ * 职责：启动后为旧版本入库的棋局补齐对局日期、开局信息、走法分类计数、走法编码、走法哈希和棋局指纹，
+ * 趋势统计据此直接在数据库中按棋局聚合，不再逐局读取 PGN 原文和逐步分析结果；
+ * 重复上传检测和分析结果复用据此覆盖旧棋局
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GameMetadataBackfillService {
+
+    private final GamePgnRepository gamePgnRepository;
+    private final AnalysisResultRepository analysisResultRepository;
+    private final PgnStorageService pgnStorageService;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillLegacyGames() {
+        backfillMetadata();
+        backfillPackedMoves();
+        backfillFingerprints();
+    }
+
+    private void backfillMetadata() {
+        long lastId = 0L;
+        int updated = 0;
+
+        try {
+            List<GamePgn> batch;
+            while (!(batch = gamePgnRepository.findTop200ByPlayedOnIsNullAndIdGreaterThanOrderByIdAsc(lastId)).isEmpty()) {
+                Map<Long, String> contents = pgnStorageService.loadAll(batch.stream().map(GamePgn::getId).toList());
+                for (GamePgn game : batch) {
+                    LocalDate playedOn = PgnParser.parseDate(game.getGameDate());
+                    if (playedOn == null) {
+                        playedOn = game.getUploadedAt() != null ? game.getUploadedAt().toLocalDate() : LocalDate.now();
+                    }
+                    game.setPlayedOn(playedOn);
+
+                    try {
+                        PgnParser.PgnGame pgn = PgnParser.parse(contents.get(game.getId()));
+                        game.setOpeningName(pgn.getTag("Opening"));
+                        game.setEcoCode(pgn.getTag("ECO"));
+                    } catch (Exception e) {
+                        log.debug("棋局 {} 的 PGN 无法解析，跳过开局信息", game.getId());
+                    }
+                }
+                applyMoveSummaries(batch);
+                gamePgnRepository.saveAll(batch);
+
+                lastId = batch.get(batch.size() - 1).getId();
+                updated += batch.size();
+            }
+        } catch (Exception e) {
+            log.error("回填棋局元数据失败，已处理 {} 局", updated, e);
+            return;
+        }
+
+        if (updated > 0) {
+            log.info("已回填 {} 局棋局的对局日期、开局信息和走法分类计数", updated);
+        }
+    }
+
+    /**
+     * 为旧数据编码走法（PGN 走法非法的棋局保持为空，每次启动会重新尝试）
+     */
+    private void backfillPackedMoves() {
+        long lastId = 0L;
+        int encoded = 0;
+
+        try {
+            List<GamePgn> batch;
+            while (!(batch = gamePgnRepository.findTop200ByMovesIsNullAndIdGreaterThanOrderByIdAsc(lastId)).isEmpty()) {
+                Map<Long, String> contents = pgnStorageService.loadAll(batch.stream().map(GamePgn::getId).toList());
+                List<GamePgn> updated = new ArrayList<>();
+                for (GamePgn game : batch) {
+                    try {
+                        game.setMoves(PackedMoves.fromSan(PgnParser.parse(contents.get(game.getId())).getMoves()));
+                        updated.add(game);
+                    } catch (Exception e) {
+                        log.debug("棋局 {} 的走法无法编码: {}", game.getId(), e.getMessage());
+                    }
+                }
+                gamePgnRepository.saveAll(updated);
+
+                lastId = batch.get(batch.size() - 1).getId();
+                encoded += updated.size();
+            }
+        } catch (Exception e) {
+            log.error("回填走法编码失败，已处理 {} 局", encoded, e);
+            return;
+        }
+
+        if (encoded > 0) {
+            log.info("已为 {} 局旧棋局编码走法", encoded);
+        }
+    }
+
+    /**
+     * 为旧数据计算走法哈希和棋局指纹（在走法编码回填之后执行，与新入库的棋局按相同规则计算）
+     * 旧数据中同一用户重复上传的棋局只有最早的一局写入指纹，其余只写走法哈希，不违反 (user_id, fingerprint) 唯一约束；
+     * PGN 无法解析的棋局保持为空，每次启动会重新尝试
+     */
+    private void backfillFingerprints() {
+        long lastId = 0L;
+        int hashed = 0;
+        int duplicates = 0;
+
+        try {
+            List<GamePgn> batch;
+            while (!(batch = gamePgnRepository.findTop200ByMovesHashIsNullAndIdGreaterThanOrderByIdAsc(lastId)).isEmpty()) {
+                Map<Long, String> contents = pgnStorageService.loadAll(batch.stream().map(GamePgn::getId).toList());
+                List<GamePgn> updated = new ArrayList<>();
+                for (GamePgn game : batch) {
+                    try {
+                        PgnParser.PgnGame pgn = PgnParser.parse(contents.get(game.getId()));
+                        game.setMovesHash(game.getMoves() != null
+                                ? GameFingerprint.movesHash(game.getMoves())
+                                : GameFingerprint.sanMovesHash(pgn.getMoves()));
+                        game.setFingerprint(GameFingerprint.fingerprint(pgn.getTags(), game.getMovesHash()));
+                        updated.add(game);
+                    } catch (Exception e) {
+                        log.debug("棋局 {} 的 PGN 无法解析，跳过指纹: {}", game.getId(), e.getMessage());
+                    }
+                }
+                duplicates += releaseTakenFingerprints(updated);
+                saveFingerprints(updated);
+
+                lastId = batch.get(batch.size() - 1).getId();
+                hashed += updated.size();
+            }
+        } catch (Exception e) {
+            log.error("回填棋局指纹失败，已处理 {} 局", hashed, e);
+            return;
+        }
+
+        if (hashed > 0) {
+            log.info("已为 {} 局旧棋局计算走法哈希和指纹，其中 {} 局与同一用户的已有棋局重复，未写入指纹", hashed, duplicates);
+        }
+    }
+
+    /**
+     * 清除本批中已被同一用户的其他棋局（此前入库的或本批中更早的）占用的指纹，返回清除的局数
+     */
+    private int releaseTakenFingerprints(List<GamePgn> games) {
+        Map<Long, List<GamePgn>> byUser = games.stream().collect(Collectors.groupingBy(GamePgn::getUserId));
+        int released = 0;
+        for (Map.Entry<Long, List<GamePgn>> entry : byUser.entrySet()) {
+            Set<String> taken = new HashSet<>(gamePgnRepository.findExistingFingerprints(entry.getKey(),
+                    entry.getValue().stream().map(GamePgn::getFingerprint).toList()));
+            for (GamePgn game : entry.getValue()) {
+                if (!taken.add(game.getFingerprint())) {
+                    game.setFingerprint(null);
+                    released++;
+                }
+            }
+        }
+        return released;
+    }
+
+    /**
+     * 整批保存；与回填期间新入库的棋局指纹冲突时逐局保存，冲突的棋局不写指纹
+     */
+    private void saveFingerprints(List<GamePgn> games) {
+        try {
+            gamePgnRepository.saveAll(games);
+        } catch (DataIntegrityViolationException e) {
+            for (GamePgn game : games) {
+                try {
+                    gamePgnRepository.save(game);
+                } catch (DataIntegrityViolationException conflict) {
+                    game.setFingerprint(null);
+                    gamePgnRepository.save(game);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一条分组查询汇总本批棋局的走法分类计数
+     */
+    private void applyMoveSummaries(List<GamePgn> batch) {
+        Map<Long, GamePgn> gamesById = batch.stream()
+                .collect(Collectors.toMap(GamePgn::getId, Function.identity()));
+
+        for (AnalysisResultRepository.GameMoveStats summary :
+                analysisResultRepository.summarizeByGameIds(new ArrayList<>(gamesById.keySet()))) {
+            summary.applyTo(gamesById.get(summary.getGameId()));
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package org.example.stockfishanalyzer.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.dto.StockfishAnalysisResult;
 import org.example.stockfishanalyzer.enums.MoveClassification;
+import org.example.stockfishanalyzer.util.ScoreUtil;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -19,6 +21,9 @@ import org.springframework.stereotype.Service;
 @Service
 public class MoveClassificationService {
 
+    // 与最佳走法评分相差不超过该值即视为最佳走法（容忍引擎评分的微小波动）
+    private static final int BEST_MOVE_TOLERANCE = 10;
+
     // 可配置的分类阈值（单位：厘兵，centipawn）
     @Value("${chess.classification.blunder-threshold:300}")
     private int blunderThreshold;
@@ -48,7 +53,7 @@ public class MoveClassificationService {
                   actualMoveScore, bestMoveScore, secondBestScore, evaluationLoss);
 
         // 判断是否为最佳走法
-        boolean isBestMove = evaluationLoss < 10; // 容忍 10 厘兵的误差
+        boolean isBestMove = evaluationLoss < BEST_MOVE_TOLERANCE;
 
         // 妙手判定：必须是最佳走法，且远优于次佳
         if (isBestMove && secondBestScore != null) {
@@ -76,6 +81,22 @@ public class MoveClassificationService {
         }
     }
 
+    /**
+     * 判断快速扫描的评分是否需要更深的搜索复查（两阶段分析）
+     * 评估损失接近"不精确"阈值的走法可能被判为失误，最佳走法远优于次佳时可能是妙手；
+     * 其余走法即使加深搜索，分类也基本不会改变
+     *
+     * @param margin 扫描评分的误差余量（厘兵），阈值按余量放宽
+     */
+    public boolean needsDeepSearch(int actualMoveScore, int bestMoveScore, Integer secondBestScore, int margin) {
+        int evaluationLoss = Math.abs(bestMoveScore - actualMoveScore);
+        if (evaluationLoss >= inaccuracyThreshold - margin) {
+            return true;
+        }
+        return evaluationLoss < BEST_MOVE_TOLERANCE + margin && secondBestScore != null
+                && Math.abs(bestMoveScore - secondBestScore) >= brilliantThreshold - margin;
+    }
+
     /**
      * 将评分字符串转换为厘兵整数
      *
@@ -109,6 +130,20 @@ public class MoveClassificationService {
         }
     }
 
+    /**
+     * 将引擎分析结果转换为厘兵整数（轮到走棋一方的视角）
+     * 将死评分依据 mateIn 的符号区分胜负，mateIn 为 0 表示走棋方已被将死
+     */
+    public int toCentipawns(StockfishAnalysisResult result) {
+        if (result.isMate() && result.getMateIn() != null) {
+            return ScoreUtil.toCentipawns(null, result.getMateIn());
+        }
+        if (result.getScoreCp() != null) {
+            return result.getScoreCp();
+        }
+        return parseScoreToCentipawns(result.getScore());
+    }
+
     /**
      * 完整的走法分类流程（带评分解析）
      */
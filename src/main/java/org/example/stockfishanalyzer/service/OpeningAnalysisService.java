@@ -4,9 +4,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.stockfishanalyzer.dto.OpeningListResponse;
 import org.example.stockfishanalyzer.dto.OpeningStatsDto;
-// TODO: 未来版本可能需要
-// import org.example.stockfishanalyzer.repository.AnalysisResultRepository;
-// import org.example.stockfishanalyzer.repository.GamePgnRepository;
+import org.example.stockfishanalyzer.entity.OpeningBook;
+import org.example.stockfishanalyzer.repository.GamePgnRepository;
 import org.example.stockfishanalyzer.repository.OpeningBookRepository;
 import org.springframework.stereotype.Service;
 
@@ -15,6 +14,8 @@ import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -25,43 +26,50 @@ import java.util.stream.Collectors;
 @Slf4j
 public class OpeningAnalysisService {
 
-    // TODO: 未来版本可能需要直接查询GamePgn表进行开局关联
-    // private final GamePgnRepository gamePgnRepository;
+    private final GamePgnRepository gamePgnRepository;
     private final OpeningBookRepository openingBookRepository;
-    // TODO: 未来版本可能需要分析结果辅助开局统计
-    // private final AnalysisResultRepository analysisResultRepository;
 
     /**
      * 获取用户的开局统计
+     * 棋局的开局在导入时由开局库索引识别（GamePgn.openingId），按开局分组汇总胜负和走法分类计数
      */
     public OpeningListResponse getUserOpeningStats(Long userId) {
         log.info("开始分析用户 {} 的开局数据", userId);
 
-        // TODO: 这里需要在GamePgn表中添加opening_id字段来关联开局
-        // 目前返回模拟数据结构
+        List<GamePgnRepository.OpeningGameStats> rows = gamePgnRepository.summarizeByOpening(userId);
+        Map<Long, OpeningBook> openings = openingBookRepository.findAllById(
+                        rows.stream().map(GamePgnRepository.OpeningGameStats::getOpeningId).toList())
+                .stream()
+                .collect(Collectors.toMap(OpeningBook::getId, Function.identity()));
 
         List<OpeningStatsDto> allOpenings = new ArrayList<>();
+        for (GamePgnRepository.OpeningGameStats row : rows) {
+            OpeningBook opening = openings.get(row.getOpeningId());
+            if (opening == null) continue;  // 开局已从开局库删除
 
-        // 获取所有流行的开局
-        List<org.example.stockfishanalyzer.entity.OpeningBook> popularOpenings =
-                openingBookRepository.findTop10ByOrderByPopularityDesc();
+            int games = row.getGames().intValue();
+            int wins = row.getWins().intValue();
+            int draws = row.getDraws().intValue();
+            long analyzedGames = row.getAnalyzedGames();
 
-        for (org.example.stockfishanalyzer.entity.OpeningBook opening : popularOpenings) {
             OpeningStatsDto stats = OpeningStatsDto.builder()
                     .openingId(opening.getId())
                     .ecoCode(opening.getEcoCode())
                     .openingName(opening.getOpeningName())
                     .variationName(opening.getVariationName())
-                    .totalGames(0)  // TODO: 实际统计
-                    .winCount(0)
-                    .drawCount(0)
-                    .lossCount(0)
-                    .winRate(BigDecimal.ZERO)
-                    .performance(BigDecimal.ZERO)
-                    .avgAccuracy(BigDecimal.ZERO)
-                    .totalBrilliants(0)
-                    .totalMistakes(0)
-                    .totalBlunders(0)
+                    .totalGames(games)
+                    .winCount(wins)
+                    .drawCount(draws)
+                    .lossCount(row.getLosses().intValue())
+                    .winRate(calculateRate(wins, games))
+                    // 表现分：胜计 1 分、和计 0.5 分的得分率
+                    .performance(BigDecimal.valueOf((wins + draws * 0.5) * 100.0 / games).setScale(2, RoundingMode.HALF_UP))
+                    .avgAccuracy(analyzedGames > 0
+                            ? BigDecimal.valueOf(row.getAccuracySum() / analyzedGames).setScale(2, RoundingMode.HALF_UP)
+                            : BigDecimal.ZERO)
+                    .totalBrilliants(row.getBrilliant().intValue())
+                    .totalMistakes(row.getMistakes().intValue())
+                    .totalBlunders(row.getBlunders().intValue())
                     .build();
 
             allOpenings.add(stats);
@@ -94,9 +102,8 @@ public class OpeningAnalysisService {
     }
 
     /**
-     * 计算百分比 (保留,未来可能用于详细统计)
+     * 计算百分比
      */
-    @SuppressWarnings("unused")
     private BigDecimal calculateRate(int count, int total) {
         if (total == 0) return BigDecimal.ZERO;
         return BigDecimal.valueOf(count * 100.0 / total).setScale(2, RoundingMode.HALF_UP);
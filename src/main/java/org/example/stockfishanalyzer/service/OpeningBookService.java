@@ -0,0 +1,198 @@
+package org.example.stockfishanalyzer.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.entity.GamePgn;
+import org.example.stockfishanalyzer.entity.OpeningBook;
+import org.example.stockfishanalyzer.repository.OpeningBookRepository;
+import org.example.stockfishanalyzer.util.SimpleChessEngine;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 开局库索引服务
+ * 职责：启动时把 tbl_opening_book 中的开局走法展开为局面 Zobrist 哈希索引，
+ * 导入时识别棋局的开局，分析时找出开局库内的走法（这些步不送引擎分析）
+ *
+ * 按局面而不是按走法序列建索引，换序进入同一开局（如 1.Nf3 d5 2.d4 与 1.d4 d5 2.Nf3）也能识别。
+ * 匹配时沿棋局逐步查表，最多走到开局库最长走法序列的步数，耗时与棋局步数无关。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OpeningBookService {
+
+    private final OpeningBookRepository openingBookRepository;
+
+    private volatile BookIndex index = new BookIndex(Set.of(), Map.of(), 0);
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * 从开局库表重建索引（开局库更新后调用）
+     */
+    public void reload() {
+        Set<Long> positions = new HashSet<>();
+        Map<Long, OpeningBook> openings = new HashMap<>();
+        int maxDepth = 0;
+        int skipped = 0;
+
+        List<OpeningBook> lines = openingBookRepository.findAll();
+        for (OpeningBook line : lines) {
+            if (line.getMovesUci() == null || line.getMovesUci().isBlank()) continue;
+
+            String[] moves = line.getMovesUci().trim().split("\\s+");
+            SimpleChessEngine board = new SimpleChessEngine();
+            try {
+                for (String move : moves) {
+                    board.makeUciMove(move);
+                    positions.add(board.getZobristKey());
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("开局 {}（{}）的走法序列非法，已跳过: {}", line.getEcoCode(), line.getOpeningName(), e.getMessage());
+                skipped++;
+                continue;
+            }
+
+            maxDepth = Math.max(maxDepth, moves.length);
+
+            // 多个开局走到同一局面时，保留流行度更高的一个
+            openings.merge(board.getZobristKey(), line, (current, candidate) ->
+                    popularity(candidate) > popularity(current) ? candidate : current);
+        }
+
+        index = new BookIndex(positions, openings, maxDepth);
+        log.info("开局库索引已加载：{} 个开局，{} 个局面，跳过 {} 个", openings.size(), positions.size(), skipped);
+    }
+
+    /**
+     * 按 SAN 走法识别开局（导入时使用）
+     */
+    public OpeningMatch matchSan(List<String> sanMoves) {
+        BookIndex current = index;
+        SimpleChessEngine board = new SimpleChessEngine();
+        MatchBuilder match = new MatchBuilder();
+
+        for (int i = 0; i < Math.min(sanMoves.size(), current.maxDepth); i++) {
+            try {
+                board.makeSanMove(sanMoves.get(i));
+            } catch (IllegalArgumentException e) {
+                break;
+            }
+            match.advance(current, board.getZobristKey());
+        }
+        return match.build();
+    }
+
+    /**
+     * 按 UCI 走法识别开局（分析时使用）
+     */
+    public OpeningMatch matchUci(List<String> uciMoves) {
+        BookIndex current = index;
+        SimpleChessEngine board = new SimpleChessEngine();
+        MatchBuilder match = new MatchBuilder();
+
+        for (int i = 0; i < Math.min(uciMoves.size(), current.maxDepth); i++) {
+            try {
+                board.makeUciMove(uciMoves.get(i));
+            } catch (IllegalArgumentException e) {
+                break;
+            }
+            match.advance(current, board.getZobristKey());
+        }
+        return match.build();
+    }
+
+    private static int popularity(OpeningBook opening) {
+        return opening.getPopularity() != null ? opening.getPopularity() : 0;
+    }
+
+    /**
+     * 开局识别结果
+     */
+    @Getter
+    public static class OpeningMatch {
+        /**
+         * 棋局经过的最后一个开局局面对应的开局（未经过时为 null）
+         */
+        private final OpeningBook opening;
+
+        /**
+         * 从第 1 步起连续处于开局库内的步数（换序回到开局库的后续步不计入）
+         */
+        private final int bookPlies;
+
+        OpeningMatch(OpeningBook opening, int bookPlies) {
+            this.opening = opening;
+            this.bookPlies = bookPlies;
+        }
+
+        /**
+         * 把识别出的开局写入棋局；PGN 已带 Opening / ECO 标签时保留标签的值
+         */
+        public void applyTo(GamePgn game) {
+            if (opening == null) return;
+
+            game.setOpeningId(opening.getId());
+            if (game.getOpeningName() == null) {
+                game.setOpeningName(opening.getVariationName() != null
+                        ? opening.getOpeningName() + ": " + opening.getVariationName()
+                        : opening.getOpeningName());
+            }
+            if (game.getEcoCode() == null) {
+                game.setEcoCode(opening.getEcoCode());
+            }
+        }
+    }
+
+    private static class MatchBuilder {
+        private OpeningBook opening;
+        private int bookPlies;
+        private boolean leftBook;
+
+        /**
+         * 记录走子后的局面：开局库内的连续步数，以及经过的开局
+         */
+        void advance(BookIndex index, long key) {
+            OpeningBook named = index.openings.get(key);
+            if (named != null) {
+                opening = named;
+            }
+
+            if (!leftBook && index.positions.contains(key)) {
+                bookPlies++;
+            } else {
+                leftBook = true;
+            }
+        }
+
+        OpeningMatch build() {
+            return new OpeningMatch(opening, bookPlies);
+        }
+    }
+
+    /**
+     * 不可变的索引快照，重建时整体替换
+     */
+    private static class BookIndex {
+        private final Set<Long> positions;
+        private final Map<Long, OpeningBook> openings;
+        private final int maxDepth;  // 最长走法序列的步数，超过后不可能再进入开局库
+
+        BookIndex(Set<Long> positions, Map<Long, OpeningBook> openings, int maxDepth) {
+            this.positions = positions;
+            this.openings = openings;
+            this.maxDepth = maxDepth;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.example.stockfishanalyzer.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.util.PgnCompressor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSetMetaData;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * PGN 正文迁移服务
+ * 职责：把旧版本存放在 tbl_game_pgn.pgn_content 列中的 PGN 正文压缩复制到 tbl_game_pgn_body
+ *
+ * 迁移分三步，每步都可以在多个节点上重复执行：
+ * 1. 启动阶段（接收请求之前）把旧列改为可空，新版本写入棋局时该列为 NULL；
+ * 2. 启动完成后在后台按主键分批复制正文，已存在的正文跳过（多个节点同时复制时不冲突）；
+ *    复制完成前读取正文时只读地回退到旧列，滚动升级期间旧版本节点新写入的棋局也能读到正文；
+ * 3. 删除旧列不会自动执行：所有节点升级完成后，设置 pgn.storage.drop-legacy-column=true 重启一个节点，
+ *    或复制完成后手工执行 ALTER TABLE tbl_game_pgn DROP COLUMN pgn_content。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PgnBodyMigrationService {
+
+    private static final int BATCH_SIZE = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${pgn.storage.drop-legacy-column:false}")
+    private boolean dropLegacyColumn;
+
+    private volatile boolean legacyColumn;
+
+    /**
+     * 旧列改为可空（新棋局不再写入该列）
+     */
+    @PostConstruct
+    public void relaxLegacyColumn() {
+        Optional<Boolean> nullable = legacyColumnNullable();
+        legacyColumn = nullable.isPresent();
+        if (nullable.isEmpty() || nullable.get()) return;
+
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (product != null && (product.contains("MySQL") || product.contains("MariaDB"))) {
+            jdbcTemplate.execute("ALTER TABLE tbl_game_pgn MODIFY pgn_content TEXT NULL");
+        } else {
+            jdbcTemplate.execute("ALTER TABLE tbl_game_pgn ALTER COLUMN pgn_content DROP NOT NULL");
+        }
+        log.info("旧版 PGN 正文列 tbl_game_pgn.pgn_content 已改为可空，正文将在后台迁移到 tbl_game_pgn_body");
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyBodies() {
+        if (!legacyColumn) return;
+
+        long lastId = 0L;
+        int migrated = 0;
+        try {
+            List<Map<String, Object>> batch;
+            while (!(batch = findUnmigrated(lastId)).isEmpty()) {
+                for (Map<String, Object> row : batch) {
+                    if (copy(((Number) row.get("id")).longValue(), (String) row.get("pgn_content"))) {
+                        migrated++;
+                    }
+                }
+                lastId = ((Number) batch.get(batch.size() - 1).get("id")).longValue();
+            }
+        } catch (Exception e) {
+            log.error("迁移 PGN 正文失败，已迁移 {} 局，下次启动继续", migrated, e);
+            return;
+        }
+        log.info("PGN 正文迁移完成，本次迁移 {} 局", migrated);
+
+        if (dropLegacyColumn) {
+            dropLegacyColumn();
+        }
+    }
+
+    /**
+     * 读取尚未迁移的棋局的旧版正文
+     * 调用方多在只读事务中，这里只读不写，复制统一由后台迁移完成
+     */
+    public Optional<String> loadLegacy(Long gameId) {
+        if (!legacyColumn) return Optional.empty();
+
+        try {
+            List<String> contents = jdbcTemplate.queryForList(
+                    "SELECT pgn_content FROM tbl_game_pgn WHERE id = ? AND pgn_content IS NOT NULL", String.class, gameId);
+            return contents.stream().findFirst();
+        } catch (DataAccessException e) {
+            // 其他节点已删除旧列
+            log.debug("读取旧版 PGN 正文失败: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 删除旧列：仍有未迁移的正文时拒绝执行
+     */
+    private void dropLegacyColumn() {
+        Long remaining = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM tbl_game_pgn g WHERE g.pgn_content IS NOT NULL " +
+                "AND NOT EXISTS (SELECT 1 FROM tbl_game_pgn_body b WHERE b.game_id = g.id)", Long.class);
+        if (remaining != null && remaining > 0) {
+            log.warn("仍有 {} 局棋局的 PGN 正文未迁移，暂不删除旧列 tbl_game_pgn.pgn_content", remaining);
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute("ALTER TABLE tbl_game_pgn DROP COLUMN pgn_content");
+            legacyColumn = false;
+            log.info("已删除旧列 tbl_game_pgn.pgn_content");
+        } catch (DataAccessException e) {
+            // 其他节点已先删除
+            log.warn("删除旧列 tbl_game_pgn.pgn_content 失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 复制一局正文，已存在时跳过；返回是否写入
+     */
+    private boolean copy(long gameId, String pgn) {
+        try {
+            return jdbcTemplate.update(
+                    "INSERT INTO tbl_game_pgn_body (game_id, codec, raw_length, content) " +
+                    "SELECT ?, ?, ?, ? FROM tbl_game_pgn WHERE id = ? " +
+                    "AND NOT EXISTS (SELECT 1 FROM tbl_game_pgn_body b WHERE b.game_id = ?)",
+                    gameId, PgnCompressor.CODEC, pgn.getBytes(StandardCharsets.UTF_8).length,
+                    PgnCompressor.compress(pgn), gameId, gameId) > 0;
+        } catch (DuplicateKeyException e) {
+            // 其他节点同时写入了同一局
+            return false;
+        }
+    }
+
+    /**
+     * 按主键顺序读取下一批尚未迁移的棋局（只读取 ID 和正文）
+     */
+    private List<Map<String, Object>> findUnmigrated(long lastId) {
+        return jdbcTemplate.queryForList(
+                "SELECT g.id, g.pgn_content FROM tbl_game_pgn g " +
+                "WHERE g.id > ? AND g.pgn_content IS NOT NULL " +
+                "AND NOT EXISTS (SELECT 1 FROM tbl_game_pgn_body b WHERE b.game_id = g.id) " +
+                "ORDER BY g.id LIMIT " + BATCH_SIZE,
+                lastId);
+    }
+
+    /**
+     * 旧列是否存在及是否可空（不存在时为空）
+     */
+    private Optional<Boolean> legacyColumnNullable() {
+        try {
+            return Optional.of(jdbcTemplate.query("SELECT pgn_content FROM tbl_game_pgn WHERE 1 = 0",
+                    rs -> rs.getMetaData().isNullable(1) != ResultSetMetaData.columnNoNulls));
+        } catch (DataAccessException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package org.example.stockfishanalyzer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.chess.PackedMoves;
+import org.example.stockfishanalyzer.dto.PgnImportProgress;
+import org.example.stockfishanalyzer.entity.GamePgn;
+import org.example.stockfishanalyzer.enums.AnalysisProfile;
+import org.example.stockfishanalyzer.enums.AnalysisStatus;
+import org.example.stockfishanalyzer.enums.JobPriority;
+import org.example.stockfishanalyzer.enums.ImportStatus;
+import org.example.stockfishanalyzer.repository.GamePgnRepository;
+import org.example.stockfishanalyzer.util.GameFingerprint;
+import org.example.stockfishanalyzer.util.PgnParser;
+import org.example.stockfishanalyzer.util.PgnStreamReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PGN 批量导入服务
+ * 职责：流式读取多局 PGN 文件，逐局解析并分批入库，内存占用与文件大小无关
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PgnImportService {
+
+    // 单局 PGN 最大字符数（防止异常文件撑爆内存）
+    private static final int MAX_GAME_LENGTH = 1024 * 1024;
+
+    // 已结束的导入进度保留时长（分钟）
+    private static final long FINISHED_RETENTION_MINUTES = 60;
+
+    private final GamePgnRepository gamePgnRepository;
+    private final AnalysisJobService analysisJobService;
+    private final UserStatisticsService userStatisticsService;
+    private final OpeningBookService openingBookService;
+    private final PgnStorageService pgnStorageService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${pgn.import.batch-size:100}")
+    private int batchSize;
+
+    private final Map<String, PgnImportProgress> imports = new ConcurrentHashMap<>();
+
+    /**
+     * 登记一个新的导入任务
+     */
+    public PgnImportProgress createProgress(Long userId, String source, long totalBytes) {
+        purgeFinished();
+
+        PgnImportProgress progress = new PgnImportProgress();
+        progress.setImportId(UUID.randomUUID().toString());
+        progress.setUserId(userId);
+        progress.setSource(source);
+        progress.setTotalBytes(totalBytes);
+        progress.setStartedAt(LocalDateTime.now());
+
+        imports.put(progress.getImportId(), progress);
+        return progress;
+    }
+
+    /**
+     * 查询导入进度
+     */
+    public PgnImportProgress getProgress(String importId) {
+        PgnImportProgress progress = imports.get(importId);
+        if (progress == null) {
+            throw new RuntimeException("导入任务不存在: " + importId);
+        }
+        return progress;
+    }
+
+    /**
+     * 异步执行导入
+     *
+     * @param progress 导入进度（由 createProgress 创建）
+     * @param file PGN 文件
+     * @param analyze 入库后是否加入分析任务队列
+     * @param profile 分析使用的搜索档位，为 null 时按用户设置
+     * @param deleteWhenDone 导入结束后是否删除文件（上传文件的临时副本）
+     */
+    @Async
+    public void importAsync(PgnImportProgress progress, Path file, boolean analyze, AnalysisProfile profile,
+                            boolean deleteWhenDone) {
+        log.info("开始批量导入 PGN，导入 ID: {}，来源: {}", progress.getImportId(), progress.getSource());
+
+        try (CountingInputStream in = new CountingInputStream(Files.newInputStream(file));
+             PgnStreamReader reader = new PgnStreamReader(
+                     new InputStreamReader(in, StandardCharsets.UTF_8), MAX_GAME_LENGTH)) {
+
+            List<GamePgn> batch = new ArrayList<>(batchSize);
+            String pgn;
+
+            while ((pgn = reader.nextGame()) != null) {
+                progress.setGamesRead(progress.getGamesRead() + 1);
+
+                try {
+                    batch.add(buildGame(pgn, progress.getUserId()));
+                } catch (Exception e) {
+                    progress.setGamesFailed(progress.getGamesFailed() + 1);
+                    log.debug("第 {} 局解析失败: {}", progress.getGamesRead(), e.getMessage());
+                }
+
+                if (batch.size() >= batchSize) {
+                    flushBatch(batch, progress, analyze, profile);
+                }
+
+                progress.setBytesRead(in.getCount());
+                progress.setGamesSkipped((int) reader.getSkippedGames());
+            }
+
+            flushBatch(batch, progress, analyze, profile);
+            progress.setBytesRead(in.getCount());
+            progress.setGamesSkipped((int) reader.getSkippedGames());
+
+            progress.setStatus(ImportStatus.COMPLETED);
+            progress.setMessage("导入完成");
+            log.info("批量导入完成，导入 ID: {}，读取 {} 局，入库 {} 局，重复 {} 局，失败 {} 局",
+                     progress.getImportId(), progress.getGamesRead(),
+                     progress.getGamesImported(), progress.getGamesDuplicate(), progress.getGamesFailed());
+
+        } catch (Exception e) {
+            log.error("批量导入 PGN 失败，导入 ID: {}", progress.getImportId(), e);
+            progress.setStatus(ImportStatus.FAILED);
+            progress.setMessage("导入失败: " + e.getMessage());
+        } finally {
+            progress.setFinishedAt(LocalDateTime.now());
+            if (deleteWhenDone) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("删除临时文件失败: {}", file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 解析单局 PGN 并构建实体（只提取标签和开局，不持有走法列表）
+     */
+    private GamePgn buildGame(String pgn, Long userId) {
+        PgnParser.PgnGame game = PgnParser.parse(pgn);
+
+        GamePgn gamePgn = new GamePgn();
+        gamePgn.setUserId(userId);
+        gamePgn.setPgnContent(pgn);
+        try {
+            gamePgn.setMoves(PackedMoves.fromSan(game.getMoves()));
+        } catch (IllegalArgumentException e) {
+            // 走法非法的棋局照常导入（与原行为一致），分析时再报告错误
+            log.debug("棋局走法无法编码: {}", e.getMessage());
+        }
+        gamePgn.setWhitePlayer(game.getTagOrDefault("White", "Unknown"));
+        gamePgn.setBlackPlayer(game.getTagOrDefault("Black", "Unknown"));
+        gamePgn.setGameResult(game.getTagOrDefault("Result", "*"));
+        gamePgn.setGameDate(game.getTagOrDefault("Date", "????.??.??"));
+        gamePgn.setPlayedOn(PgnParser.parseDate(gamePgn.getGameDate()));
+        gamePgn.setOpeningName(game.getTag("Opening"));
+        gamePgn.setEcoCode(game.getTag("ECO"));
+        openingBookService.matchSan(game.getMoves()).applyTo(gamePgn);
+        gamePgn.setMovesHash(gamePgn.getMoves() != null
+                ? GameFingerprint.movesHash(gamePgn.getMoves())
+                : GameFingerprint.sanMovesHash(game.getMoves()));
+        gamePgn.setFingerprint(GameFingerprint.fingerprint(game.getTags(), gamePgn.getMovesHash()));
+        gamePgn.setAnalysisStatus(AnalysisStatus.PENDING);
+        return gamePgn;
+    }
+
+    /**
+     * 一批棋局在同一个事务中入库，入库后清空批次以保持内存平稳
+     */
+    private void flushBatch(List<GamePgn> batch, PgnImportProgress progress, boolean analyze, AnalysisProfile profile) {
+        if (batch.isEmpty()) return;
+
+        try {
+            // 跳过已导入过的棋局：本批内指纹重复的和此前已入库的（重复导入同一导出文件时整批跳过）
+            Set<String> seen = new HashSet<>(gamePgnRepository.findExistingFingerprints(progress.getUserId(),
+                    batch.stream().map(GamePgn::getFingerprint).toList()));
+            int before = batch.size();
+            batch.removeIf(game -> !seen.add(game.getFingerprint()));
+            progress.setGamesDuplicate(progress.getGamesDuplicate() + before - batch.size());
+            if (batch.isEmpty()) return;
+
+            // 棋局、PGN 正文和分析任务在同一事务中写入，不会留下缺少正文或没有分析任务的棋局
+            List<GamePgn> saved = transactionTemplate.execute(status -> {
+                List<GamePgn> games = gamePgnRepository.saveAll(batch);
+                pgnStorageService.saveAll(games);
+                if (analyze) {
+                    // 分析任务写入任务表，由分析任务工作线程按空闲引擎逐步消化
+                    analysisJobService.enqueueAll(games, JobPriority.BULK, profile);
+                }
+                return games;
+            });
+            progress.setGamesImported(progress.getGamesImported() + saved.size());
+            recordStatistics(progress.getUserId(), saved);
+        } catch (Exception e) {
+            log.error("批量入库失败，本批 {} 局", batch.size(), e);
+            progress.setGamesFailed(progress.getGamesFailed() + batch.size());
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * 累加用户统计；失败时不影响导入，可通过刷新接口重建
+     */
+    private void recordStatistics(Long userId, List<GamePgn> saved) {
+        try {
+            userStatisticsService.recordGamesAdded(userId, saved);
+        } catch (Exception e) {
+            log.warn("用户 {} 的统计增量更新失败: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 清理已结束且超过保留时长的导入进度
+     */
+    private void purgeFinished() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(FINISHED_RETENTION_MINUTES);
+        imports.values().removeIf(p -> p.getFinishedAt() != null && p.getFinishedAt().isBefore(threshold));
+    }
+
+    /**
+     * 统计已读取字节数的输入流（用于进度估算）
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -2,39 +2,70 @@ package org.example.stockfishanalyzer.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.chess.PackedMoves;
+import org.example.stockfishanalyzer.dto.GamePageResponse;
+import org.example.stockfishanalyzer.dto.GameSummaryDto;
+import org.example.stockfishanalyzer.dto.PgnImportProgress;
 import org.example.stockfishanalyzer.dto.PgnUploadResponse;
 import org.example.stockfishanalyzer.entity.GamePgn;
+import org.example.stockfishanalyzer.enums.AnalysisProfile;
 import org.example.stockfishanalyzer.enums.AnalysisStatus;
+import org.example.stockfishanalyzer.enums.GameListField;
+import org.example.stockfishanalyzer.enums.JobPriority;
 import org.example.stockfishanalyzer.repository.GamePgnRepository;
+import org.example.stockfishanalyzer.util.GameFingerprint;
 import org.example.stockfishanalyzer.util.PgnParser;
 import org.example.stockfishanalyzer.util.SimpleChessEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * PGN 服务
- * 职责：处理 PGN 文件的上传、解析和入库
+ * 职责：处理 PGN 文件的上传、解析和入库（单局上传与多局批量导入）
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PgnService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final GamePgnRepository gamePgnRepository;
-    private final GameAnalysisService analysisService;
+    private final AnalysisJobService analysisJobService;
+    private final PgnImportService pgnImportService;
+    private final UserStatisticsService userStatisticsService;
+    private final OpeningBookService openingBookService;
+    private final PgnStorageService pgnStorageService;
+
+    @Value("${pgn.import.local-dir:}")
+    private String localImportDir;
 
     /**
      * 上传并解析 PGN 文件
      *
      * @param pgnContent PGN 内容
      * @param userId 用户 ID
+     * @param profile 搜索档位，为 null 时按用户设置
      * @return 上传响应
      */
     @Transactional
-    public PgnUploadResponse uploadPgn(String pgnContent, Long userId) {
+    public PgnUploadResponse uploadPgn(String pgnContent, Long userId, AnalysisProfile profile) {
         try {
             log.info("开始处理 PGN 上传，用户 ID: {}", userId);
 
@@ -42,18 +73,27 @@ public class PgnService {
             PgnParser.PgnGame game = PgnParser.parse(pgnContent);
 
             // 提取棋局信息
-            String whitePlayer = game.getTag("White");
-            String blackPlayer = game.getTag("Black");
-            String result = game.getTag("Result");
-            String date = game.getTag("Date");
-
-            whitePlayer = whitePlayer != null ? whitePlayer : "Unknown";
-            blackPlayer = blackPlayer != null ? blackPlayer : "Unknown";
-            result = result != null ? result : "*";
-            date = date != null ? date : "????.??.??";
+            String whitePlayer = game.getTagOrDefault("White", "Unknown");
+            String blackPlayer = game.getTagOrDefault("Black", "Unknown");
+            String result = game.getTagOrDefault("Result", "*");
+            String date = game.getTagOrDefault("Date", "????.??.??");
 
             // 将 SAN 走法转换为 UCI 格式
-            List<String> uciMoves = convertSanToUci(game.getMoves());
+            List<String> uciMoves = SimpleChessEngine.toUciMoves(game.getMoves());
+            byte[] packedMoves = PackedMoves.fromUci(uciMoves);
+
+            // 同一棋局重复上传时直接返回已有的棋局，不再入库和分析（走法哈希按规范化的走法计算，与 SAN 写法无关）
+            String movesHash = GameFingerprint.movesHash(packedMoves);
+            String fingerprint = GameFingerprint.fingerprint(game.getTags(), movesHash);
+            Optional<GamePgn> existing = gamePgnRepository.findByUserIdAndFingerprint(userId, fingerprint);
+            if (existing.isPresent()) {
+                log.info("用户 {} 重复上传棋局，返回已有棋局 ID: {}", userId, existing.get().getId());
+                return new PgnUploadResponse(
+                        existing.get().getId(),
+                        "棋局已上传过，返回已有的棋局",
+                        uciMoves.size()
+                );
+            }
 
             log.info("解析 PGN 完成 - 白方: {}, 黑方: {}, 结果: {}, 走法数: {}",
                      whitePlayer, blackPlayer, result, uciMoves.size());
@@ -62,17 +102,26 @@ public class PgnService {
             GamePgn gamePgn = new GamePgn();
             gamePgn.setUserId(userId);
             gamePgn.setPgnContent(pgnContent);
+            gamePgn.setMoves(packedMoves);
             gamePgn.setWhitePlayer(whitePlayer);
             gamePgn.setBlackPlayer(blackPlayer);
             gamePgn.setGameResult(result);
             gamePgn.setGameDate(date);
+            gamePgn.setPlayedOn(PgnParser.parseDate(date));
+            gamePgn.setOpeningName(game.getTag("Opening"));
+            gamePgn.setEcoCode(game.getTag("ECO"));
+            openingBookService.matchSan(game.getMoves()).applyTo(gamePgn);
+            gamePgn.setMovesHash(movesHash);
+            gamePgn.setFingerprint(fingerprint);
             gamePgn.setAnalysisStatus(AnalysisStatus.PENDING);
 
             gamePgn = gamePgnRepository.save(gamePgn);
+            pgnStorageService.save(gamePgn.getId(), pgnContent);
             log.info("棋局已保存，ID: {}", gamePgn.getId());
+            userStatisticsService.recordGamesAdded(userId, List.of(gamePgn));
 
-            // 触发异步分析
-            analysisService.analyzeGameAsync(gamePgn.getId(), uciMoves);
+            // 分析任务与棋局在同一事务中入队，由分析任务工作线程执行
+            analysisJobService.enqueue(gamePgn, JobPriority.INTERACTIVE, profile);
 
             return new PgnUploadResponse(
                     gamePgn.getId(),
@@ -87,35 +136,144 @@ public class PgnService {
     }
 
     /**
-     * 将 SAN 走法列表转换为 UCI 格式
+     * 导入上传的多局 PGN 文件
+     * 上传文件先转存为临时文件，再由后台线程流式读取，请求立即返回导入进度
+     *
+     * @param file 上传的 PGN 文件
+     * @param userId 用户 ID
+     * @param analyze 入库后是否触发引擎分析
+     * @param profile 搜索档位，为 null 时按用户设置
+     */
+    public PgnImportProgress importUploadedFile(MultipartFile file, Long userId, boolean analyze, AnalysisProfile profile) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("上传文件不能为空");
+        }
+
+        try {
+            Path staged = Files.createTempFile("pgn-import-", ".pgn");
+            file.transferTo(staged);
+
+            PgnImportProgress progress = pgnImportService.createProgress(
+                    userId, file.getOriginalFilename(), Files.size(staged));
+            pgnImportService.importAsync(progress, staged, analyze, profile, true);
+            return progress;
+        } catch (IOException e) {
+            log.error("保存上传的 PGN 文件失败", e);
+            throw new RuntimeException("PGN 导入失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 导入服务器本地的多局 PGN 文件（仅允许 pgn.import.local-dir 目录下的文件）
+     *
+     * @param fileName 相对于导入目录的文件路径
+     * @param userId 用户 ID
+     * @param analyze 入库后是否触发引擎分析
+     * @param profile 搜索档位，为 null 时按用户设置
      */
-    private List<String> convertSanToUci(List<String> sanMoves) {
-        List<String> uciMoves = new ArrayList<>();
-        SimpleChessEngine engine = new SimpleChessEngine();
-
-        for (String san : sanMoves) {
-            String uci = engine.sanToUci(san);
-            uciMoves.add(uci);
-            engine.makeUciMove(uci);
+    public PgnImportProgress importLocalFile(String fileName, Long userId, boolean analyze, AnalysisProfile profile) {
+        if (localImportDir == null || localImportDir.isBlank()) {
+            throw new IllegalStateException("未配置服务器本地导入目录 (pgn.import.local-dir)");
+        }
+
+        Path baseDir = Path.of(localImportDir).toAbsolutePath().normalize();
+        Path file = baseDir.resolve(fileName).normalize();
+        if (!file.startsWith(baseDir)) {
+            throw new IllegalArgumentException("文件路径超出导入目录: " + fileName);
+        }
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("文件不存在: " + fileName);
+        }
+
+        try {
+            PgnImportProgress progress = pgnImportService.createProgress(userId, file.toString(), Files.size(file));
+            pgnImportService.importAsync(progress, file, analyze, profile, false);
+            return progress;
+        } catch (IOException e) {
+            throw new RuntimeException("PGN 导入失败: " + e.getMessage(), e);
         }
+    }
 
-        return uciMoves;
+    /**
+     * 查询批量导入进度
+     */
+    public PgnImportProgress getImportProgress(String importId) {
+        return pgnImportService.getProgress(importId);
     }
 
     /**
-     * 获取用户的所有棋局
+     * 分页获取用户的棋局列表（按上传时间倒序）
+     *
+     * @param userId 用户 ID
+     * @param cursor 上一页返回的 nextCursor，为空时从第一页开始
+     * @param size 每页棋局数（1 ~ 100）
+     * @param fields 需要额外返回的字段组
      */
     @Transactional(readOnly = true)
-    public List<GamePgn> getUserGames(Long userId) {
-        return gamePgnRepository.findByUserIdOrderByUploadedAtDesc(userId);
+    public GamePageResponse listGames(Long userId, String cursor, int size, Set<GameListField> fields) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // 多取一条判断是否还有下一页，不需要 COUNT 查询
+        Limit limit = Limit.of(pageSize + 1);
+
+        List<GameSummaryDto> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = gamePgnRepository.findGameSummaries(userId, limit);
+        } else {
+            rows = findGameSummariesAfter(userId, cursor, limit);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<GameSummaryDto> games = hasMore ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+
+        if (!fields.contains(GameListField.OPENING)) {
+            games.forEach(GameSummaryDto::clearOpening);
+        }
+        if (!fields.contains(GameListField.STATS)) {
+            games.forEach(GameSummaryDto::clearStats);
+        }
+        if (fields.contains(GameListField.PGN) && !games.isEmpty()) {
+            Map<Long, String> contents = pgnStorageService.loadAll(games.stream().map(GameSummaryDto::getId).toList());
+            games.forEach(game -> game.setPgnContent(contents.get(game.getId())));
+        }
+
+        GameSummaryDto last = hasMore ? games.get(games.size() - 1) : null;
+        return GamePageResponse.builder()
+                .games(games)
+                .nextCursor(last != null ? encodeCursor(last) : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * 游标为最后一行的 (uploadedAt, id)，Base64 编码后对客户端不透明
+     */
+    private static String encodeCursor(GameSummaryDto last) {
+        String position = last.getUploadedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<GameSummaryDto> findGameSummariesAfter(Long userId, String cursor, Limit limit) {
+        LocalDateTime uploadedAt;
+        long id;
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf('|');
+            uploadedAt = LocalDateTime.parse(position.substring(0, separator));
+            id = Long.parseLong(position.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+        }
+        return gamePgnRepository.findGameSummariesBefore(userId, uploadedAt, id, limit);
     }
 
     /**
-     * 获取棋局详情
+     * 获取棋局详情（含 PGN 正文）
      */
     @Transactional(readOnly = true)
     public GamePgn getGame(Long gameId) {
-        return gamePgnRepository.findById(gameId)
+        GamePgn game = gamePgnRepository.findById(gameId)
                 .orElseThrow(() -> new RuntimeException("棋局不存在: " + gameId));
+        game.setPgnContent(pgnStorageService.load(gameId));
+        return game;
     }
 }
@@ -0,0 +1,77 @@
+package org.example.stockfishanalyzer.service;
+
+import lombok.RequiredArgsConstructor;
+import org.example.stockfishanalyzer.entity.GamePgn;
+import org.example.stockfishanalyzer.entity.GamePgnBody;
+import org.example.stockfishanalyzer.repository.GamePgnBodyRepository;
+import org.example.stockfishanalyzer.util.PgnCompressor;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PGN 正文存储服务
+ * 职责：压缩写入和按需读取 tbl_game_pgn_body 中的 PGN 正文
+ */
+@Service
+@RequiredArgsConstructor
+public class PgnStorageService {
+
+    private final GamePgnBodyRepository gamePgnBodyRepository;
+    private final PgnBodyMigrationService pgnBodyMigrationService;
+
+    /**
+     * 保存棋局的 PGN 正文（棋局须已入库取得 ID）
+     */
+    public void save(Long gameId, String pgn) {
+        gamePgnBodyRepository.save(compress(gameId, pgn));
+    }
+
+    /**
+     * 批量保存一批已入库棋局的 PGN 正文（取自各棋局的 pgnContent）
+     */
+    public void saveAll(List<GamePgn> games) {
+        gamePgnBodyRepository.saveAll(games.stream()
+                .map(game -> compress(game.getId(), game.getPgnContent()))
+                .toList());
+    }
+
+    /**
+     * 读取棋局的 PGN 正文（尚未迁移的旧数据从旧列读取）
+     */
+    public String load(Long gameId) {
+        return gamePgnBodyRepository.findById(gameId)
+                .map(PgnStorageService::decompress)
+                .or(() -> pgnBodyMigrationService.loadLegacy(gameId))
+                .orElseThrow(() -> new IllegalStateException("棋局 " + gameId + " 的 PGN 正文不存在"));
+    }
+
+    /**
+     * 批量读取 PGN 正文，返回棋局 ID 到正文的映射（缺少正文的棋局不在结果中）
+     */
+    public Map<Long, String> loadAll(Collection<Long> gameIds) {
+        Map<Long, String> contents = new HashMap<>();
+        for (GamePgnBody body : gamePgnBodyRepository.findAllById(gameIds)) {
+            contents.put(body.getGameId(), decompress(body));
+        }
+        for (Long gameId : gameIds) {
+            if (!contents.containsKey(gameId)) {
+                pgnBodyMigrationService.loadLegacy(gameId).ifPresent(pgn -> contents.put(gameId, pgn));
+            }
+        }
+        return contents;
+    }
+
+    private static GamePgnBody compress(Long gameId, String pgn) {
+        return new GamePgnBody(gameId, PgnCompressor.CODEC,
+                pgn.getBytes(StandardCharsets.UTF_8).length, PgnCompressor.compress(pgn));
+    }
+
+    private static String decompress(GamePgnBody body) {
+        return PgnCompressor.decompress(body.getCodec(), body.getContent(), body.getRawLength());
+    }
+}
@@ -0,0 +1,249 @@
+package org.example.stockfishanalyzer.service;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.config.StockfishProperties;
+import org.example.stockfishanalyzer.dto.PositionCacheStatsDto;
+import org.example.stockfishanalyzer.dto.PvLine;
+import org.example.stockfishanalyzer.dto.StockfishAnalysisResult;
+import org.example.stockfishanalyzer.engine.SearchLimits;
+import org.example.stockfishanalyzer.entity.PositionEvaluation;
+import org.example.stockfishanalyzer.repository.PositionEvaluationRepository;
+import org.example.stockfishanalyzer.util.ScoreUtil;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 局面评估缓存服务
+ * 职责：两级缓存（内存 LRU + tbl_position_eval）引擎评估结果，在所有用户和棋局之间共享，
+ * 常见开局局面只需分析一次
+ */
+@Slf4j
+@Service
+public class PositionCacheService {
+
+    private final PositionEvaluationRepository positionEvaluationRepository;
+    private final StockfishProperties properties;
+
+    private final Map<CacheKey, StockfishAnalysisResult> memoryCache;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong databaseHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PositionCacheService(PositionEvaluationRepository positionEvaluationRepository,
+                                StockfishProperties properties) {
+        this.positionEvaluationRepository = positionEvaluationRepository;
+        this.properties = properties;
+
+        int maxEntries = properties.getCache().getMaxEntries();
+        // accessOrder=true：按访问顺序排列，超出容量时淘汰最久未访问的条目
+        this.memoryCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, StockfishAnalysisResult> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 查找缓存的局面评估
+     * 以深度、节点数、时间和候选数量区分搜索条件；线程数和置换表大小不参与区分
+     *
+     * @param positionHash 局面 Zobrist 哈希
+     * @param limits 搜索限制
+     */
+    public Optional<StockfishAnalysisResult> get(long positionHash, SearchLimits limits) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+
+        CacheKey key = CacheKey.of(positionHash, limits);
+
+        StockfishAnalysisResult cached;
+        synchronized (memoryCache) {
+            cached = memoryCache.get(key);
+        }
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            return Optional.of(copyOf(cached));
+        }
+
+        Optional<PositionEvaluation> stored = positionEvaluationRepository
+                .findByPositionHashAndDepthAndNodesAndMovetimeAndMultipv(
+                        positionHash, limits.getDepth(), limits.getNodes(), limits.getMovetime(), limits.getMultipv());
+        if (stored.isPresent()) {
+            databaseHits.incrementAndGet();
+            StockfishAnalysisResult result = toResult(stored.get());
+            synchronized (memoryCache) {
+                memoryCache.put(key, result);
+            }
+            return Optional.of(copyOf(result));
+        }
+
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * 写入局面评估（内存 + 数据库）
+     */
+    public void put(long positionHash, SearchLimits limits, StockfishAnalysisResult result) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        CacheKey key = CacheKey.of(positionHash, limits);
+        synchronized (memoryCache) {
+            memoryCache.put(key, copyOf(result));
+        }
+
+        PositionEvaluation evaluation = new PositionEvaluation();
+        evaluation.setPositionHash(positionHash);
+        evaluation.setDepth(limits.getDepth());
+        evaluation.setNodes(limits.getNodes());
+        evaluation.setMovetime(limits.getMovetime());
+        evaluation.setMultipv(limits.getMultipv());
+        evaluation.setScore(result.getScore());
+        evaluation.setScoreCp(result.getScoreCp());
+        evaluation.setReachedDepth(result.getDepth());
+        evaluation.setBestMove(result.getBestMove());
+        evaluation.setMate(result.isMate());
+        evaluation.setMateIn(result.getMateIn());
+        evaluation.setPvLines(encodeLines(result.getLines()));
+
+        try {
+            positionEvaluationRepository.save(evaluation);
+        } catch (DataIntegrityViolationException e) {
+            // 其他线程已写入同一局面，忽略
+            log.debug("局面 {} 的评估已存在，跳过写入", positionHash);
+        }
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public PositionCacheStatsDto getStats() {
+        long memory = memoryHits.get();
+        long database = databaseHits.get();
+        long miss = misses.get();
+        long total = memory + database + miss;
+
+        int entries;
+        synchronized (memoryCache) {
+            entries = memoryCache.size();
+        }
+
+        return PositionCacheStatsDto.builder()
+                .memoryEntries(entries)
+                .maxMemoryEntries(properties.getCache().getMaxEntries())
+                .memoryHits(memory)
+                .databaseHits(database)
+                .misses(miss)
+                .evictions(evictions.get())
+                .hitRate(total > 0 ? Math.round((memory + database) * 10000.0 / total) / 100.0 : 0.0)
+                .build();
+    }
+
+    private boolean isEnabled() {
+        return Boolean.TRUE.equals(properties.getCache().getEnabled());
+    }
+
+    private StockfishAnalysisResult toResult(PositionEvaluation evaluation) {
+        // 早期缓存行没有 score_cp，从评分字符串补出
+        Integer scoreCp = evaluation.getScoreCp() != null
+                ? evaluation.getScoreCp() : ScoreUtil.parseCentipawns(evaluation.getScore());
+        return new StockfishAnalysisResult(
+                evaluation.getScore(),
+                scoreCp,
+                evaluation.getBestMove(),
+                Boolean.TRUE.equals(evaluation.getMate()),
+                evaluation.getMateIn(),
+                evaluation.getReachedDepth(),
+                decodeLines(evaluation.getPvLines())
+        );
+    }
+
+    private StockfishAnalysisResult copyOf(StockfishAnalysisResult result) {
+        List<PvLine> lines = new ArrayList<>();
+        if (result.getLines() != null) {
+            for (PvLine line : result.getLines()) {
+                lines.add(new PvLine(line.getMultipv(), line.getScoreCp(), line.getMateIn(), line.getDepth(), line.getPv()));
+            }
+        }
+        return new StockfishAnalysisResult(result.getScore(), result.getScoreCp(), result.getBestMove(),
+                result.isMate(), result.getMateIn(), result.getDepth(), lines);
+    }
+
+    /**
+     * 候选变化编码为文本，每条一行："序号 深度 cp|mate 评分 主变"
+     */
+    private static String encodeLines(List<PvLine> lines) {
+        if (lines == null || lines.isEmpty()) return null;
+
+        StringBuilder sb = new StringBuilder();
+        for (PvLine line : lines) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(line.getMultipv()).append(' ')
+              .append(line.getDepth() != null ? line.getDepth() : 0).append(' ')
+              .append(line.getMateIn() != null ? "mate " + line.getMateIn()
+                      : "cp " + (line.getScoreCp() != null ? line.getScoreCp() : 0));
+            if (line.getPv() != null && !line.getPv().isEmpty()) {
+                sb.append(' ').append(line.getPv());
+            }
+        }
+        // 超出列宽时（候选数量很多）不缓存候选变化，最佳评分不受影响
+        return sb.length() > 2000 ? null : sb.toString();
+    }
+
+    private static List<PvLine> decodeLines(String text) {
+        List<PvLine> lines = new ArrayList<>();
+        if (text == null || text.isEmpty()) return lines;
+
+        for (String row : text.split("\n")) {
+            String[] parts = row.split(" ", 5);
+            if (parts.length < 4) continue;
+            try {
+                boolean mate = "mate".equals(parts[2]);
+                int score = Integer.parseInt(parts[3]);
+                lines.add(new PvLine(
+                        Integer.parseInt(parts[0]),
+                        mate ? null : score,
+                        mate ? score : null,
+                        Integer.parseInt(parts[1]),
+                        parts.length > 4 ? parts[4] : null));
+            } catch (NumberFormatException e) {
+                log.debug("无法解析缓存的候选变化: {}", row);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 缓存键：局面哈希 + 搜索参数
+     */
+    @Value
+    private static class CacheKey {
+        long positionHash;
+        int depth;
+        long nodes;
+        int movetime;
+        int multipv;
+
+        static CacheKey of(long positionHash, SearchLimits limits) {
+            return new CacheKey(positionHash, limits.getDepth(), limits.getNodes(), limits.getMovetime(), limits.getMultipv());
+        }
+    }
+}
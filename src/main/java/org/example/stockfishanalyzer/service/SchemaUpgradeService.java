@@ -0,0 +1,46 @@
+package org.example.stockfishanalyzer.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 表结构升级服务
+ * 职责：修正 ddl-auto=update 不会修改的已有列（在 Hibernate 建表之后、接收请求之前执行）
+ */
+@Slf4j
+@Service
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class SchemaUpgradeService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void upgrade() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (product == null || !(product.contains("MySQL") || product.contains("MariaDB"))) return;
+
+        widenMoveClassificationColumn();
+    }
+
+    /**
+     * 旧版本 Hibernate 在 MySQL 上把走法分类建成原生 ENUM 列，新增的分类（如 BOOK）写入时报 Data truncated；
+     * 实体改为按 VARCHAR 映射后，把已有的 ENUM 列改为 VARCHAR(20)
+     */
+    private void widenMoveClassificationColumn() {
+        List<String> types = jdbcTemplate.queryForList(
+                "SELECT DATA_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+                "AND TABLE_NAME = 'tbl_analysis_result' AND COLUMN_NAME = 'move_classification'", String.class);
+        if (types.isEmpty() || !"enum".equalsIgnoreCase(types.get(0))) return;
+
+        jdbcTemplate.execute("ALTER TABLE tbl_analysis_result MODIFY move_classification VARCHAR(20) NULL");
+        log.info("已将 tbl_analysis_result.move_classification 由 ENUM 改为 VARCHAR(20)");
+    }
+}
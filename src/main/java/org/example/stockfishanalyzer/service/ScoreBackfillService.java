@@ -0,0 +1,61 @@
+package org.example.stockfishanalyzer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.entity.AnalysisResult;
+import org.example.stockfishanalyzer.repository.AnalysisResultRepository;
+import org.example.stockfishanalyzer.util.ScoreUtil;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 评分数值列回填服务
+ * 职责：启动后把旧版本只写了评分字符串的分析结果解析一次，补齐 score_cp / mate_in / eval_cp，
+ * 此后所有读取方直接使用数值列；开局库走法没有评估，评估值保持为空，不回填为 0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ScoreBackfillService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final AnalysisResultRepository analysisResultRepository;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillLegacyScores() {
+        long lastId = 0L;
+        int updated = 0;
+
+        try {
+            List<AnalysisResult> batch;
+            while (!(batch = analysisResultRepository.findUnparsedScores(lastId, Limit.of(BATCH_SIZE))).isEmpty()) {
+                for (AnalysisResult result : batch) {
+                    Integer scoreCp = ScoreUtil.parseCentipawns(result.getScore());
+                    Integer mateIn = ScoreUtil.parseMateIn(result.getScore());
+                    result.setScoreCp(scoreCp);
+                    result.setMateIn(mateIn);
+                    result.setEvalCp(ScoreUtil.toWhitePerspective(
+                            ScoreUtil.toCentipawns(scoreCp, mateIn), result.getMoveNumber()));
+                }
+                analysisResultRepository.saveAll(batch);
+
+                lastId = batch.get(batch.size() - 1).getId();
+                updated += batch.size();
+            }
+        } catch (Exception e) {
+            log.error("回填评分数值列失败，已处理 {} 条", updated, e);
+            return;
+        }
+
+        if (updated > 0) {
+            log.info("已回填 {} 条分析结果的数值评分", updated);
+        }
+    }
+}
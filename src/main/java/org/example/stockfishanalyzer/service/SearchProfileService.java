@@ -0,0 +1,116 @@
+package org.example.stockfishanalyzer.service;
+
+import lombok.RequiredArgsConstructor;
+import org.example.stockfishanalyzer.config.StockfishProperties;
+import org.example.stockfishanalyzer.engine.SearchLimits;
+import org.example.stockfishanalyzer.engine.StockfishEnginePool;
+import org.example.stockfishanalyzer.entity.UserSettings;
+import org.example.stockfishanalyzer.enums.AnalysisProfile;
+import org.example.stockfishanalyzer.repository.UserSettingsRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * 搜索档位解析服务
+ * 职责：把请求指定的搜索档位或用户设置解析为具体的引擎搜索限制
+ *
+ * 解析顺序：请求指定的档位 → 用户设置中选择的档位 → 默认档位。
+ * 用户未选择档位时，默认档位的深度和线程数取自用户设置中的分析深度和引擎线程数（线程数不超过服务端上限）。
+ * 两阶段分析的扫描限制由扫描档位得出，残局库局面的限制由残局库配置得出，
+ * 线程数、置换表和 MultiPV 都沿用任务的搜索限制，切换时不需要重设引擎选项。
+ */
+@Service
+@RequiredArgsConstructor
+public class SearchProfileService {
+
+    private final StockfishProperties properties;
+    private final UserSettingsRepository userSettingsRepository;
+    private final StockfishEnginePool enginePool;
+
+    /**
+     * 解析搜索限制
+     *
+     * @param requested 请求指定的档位，可为 null
+     * @param userId 用户 ID，用于读取用户设置
+     */
+    public SearchLimits resolve(AnalysisProfile requested, Long userId) {
+        if (requested != null) {
+            return toLimits(properties.getAnalysis().getProfile(requested), null, null);
+        }
+
+        Optional<UserSettings> settings = userId != null
+                ? userSettingsRepository.findByUserId(userId) : Optional.empty();
+
+        AnalysisProfile chosen = settings.map(UserSettings::getAnalysisProfile).orElse(null);
+        if (chosen != null) {
+            return toLimits(properties.getAnalysis().getProfile(chosen), null, null);
+        }
+
+        StockfishProperties.Profile profile = properties.getAnalysis().getProfile(properties.getAnalysis().getDefaultProfile());
+        Integer depth = settings.map(UserSettings::getAnalysisDepth).orElse(null);
+        Integer threads = settings.map(UserSettings::getEngineThreads)
+                .map(t -> Math.max(1, Math.min(t, properties.getEngine().getMaxThreads())))
+                .orElse(null);
+        return toLimits(profile, depth, threads);
+    }
+
+    /**
+     * 两阶段分析第一阶段（快速扫描）的搜索限制
+     *
+     * @param limits 任务的搜索限制（第二阶段使用）
+     * @return 未启用两阶段分析，或扫描限制与任务限制相同时返回空
+     */
+    public Optional<SearchLimits> resolveScan(SearchLimits limits) {
+        StockfishProperties.Adaptive adaptive = properties.getAnalysis().getAdaptive();
+        if (!Boolean.TRUE.equals(adaptive.getEnabled()) || adaptive.getScanProfile() == null) {
+            return Optional.empty();
+        }
+
+        StockfishProperties.Profile profile = properties.getAnalysis().getProfile(adaptive.getScanProfile());
+        SearchLimits scan = new SearchLimits(valueOf(profile.getDepth()),
+                profile.getNodes() != null ? profile.getNodes() : 0L, valueOf(profile.getMovetime()),
+                limits.getMultipv(), limits.getThreads(), limits.getHash());
+        return scan.equals(limits) ? Optional.empty() : Optional.of(scan);
+    }
+
+    /**
+     * 棋子数不超过残局库探测上限的局面使用的搜索限制
+     *
+     * @param limits 任务的搜索限制
+     * @return 未配置残局库或引擎没有加载到残局库时返回空
+     */
+    public Optional<SearchLimits> resolveTablebase(SearchLimits limits) {
+        StockfishProperties.Tablebase tablebase = properties.getTablebase();
+        if (tablebase.getPath() == null || tablebase.getPath().isBlank() || tablebaseProbeLimit() == 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new SearchLimits(valueOf(tablebase.getDepth()), 0L, valueOf(tablebase.getMovetime()),
+                limits.getMultipv(), limits.getThreads(), limits.getHash()));
+    }
+
+    /**
+     * 按残局库处理的局面的最大棋子数：不超过配置的探测上限，也不超过引擎实际加载的残局库
+     */
+    public int tablebaseProbeLimit() {
+        return enginePool.getTablebaseProbeLimit();
+    }
+
+    private SearchLimits toLimits(StockfishProperties.Profile profile, Integer depthOverride, Integer threadsOverride) {
+        StockfishProperties.Engine engine = properties.getEngine();
+
+        int depth = depthOverride != null ? depthOverride : valueOf(profile.getDepth());
+        long nodes = profile.getNodes() != null ? profile.getNodes() : 0L;
+        int threads = threadsOverride != null ? threadsOverride
+                : profile.getThreads() != null ? profile.getThreads() : engine.getThreads();
+        int hash = profile.getHash() != null ? profile.getHash() : engine.getHash();
+
+        return new SearchLimits(depth, nodes, valueOf(profile.getMovetime()),
+                Math.max(1, properties.getAnalysis().getMultipv()), threads, hash);
+    }
+
+    private static int valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+}
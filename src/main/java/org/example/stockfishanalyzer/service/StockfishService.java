@@ -1,228 +1,100 @@
 package org.example.stockfishanalyzer.service;
 
-import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.config.StockfishProperties;
+import org.example.stockfishanalyzer.dto.EngineStatusDto;
 import org.example.stockfishanalyzer.dto.StockfishAnalysisResult;
-import org.springframework.beans.factory.annotation.Value;
+import org.example.stockfishanalyzer.engine.StockfishEngine;
+import org.example.stockfishanalyzer.engine.SearchLimits;
+import org.example.stockfishanalyzer.engine.StockfishEnginePool;
 import org.springframework.stereotype.Service;
 
-import java.io.*;
-import java.util.concurrent.*;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Stockfish 引擎 IPC 服务
  * 核心职责：通过进程间通信 (IPC) 调用外部 Stockfish 引擎，实现 UCI 协议交互
+ * 每次分析从引擎池借出一个独立进程，多个棋局的分析可以并行进行
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class StockfishService {
 
-    @Value("${stockfish.engine.path:/usr/local/bin/stockfish}")
-    private String enginePath;
-
-    @Value("${stockfish.analysis.movetime:1000}")
-    private int moveTime;
-
-    private Process stockfishProcess;
-    private BufferedReader reader;
-    private BufferedWriter writer;
-    private ExecutorService executorService;
-
-    @PostConstruct
-    public void init() {
-        try {
-            log.info("初始化 Stockfish 引擎，路径: {}", enginePath);
-
-            // 检查 Stockfish 引擎是否存在
-            java.io.File engineFile = new java.io.File(enginePath);
-            if (!engineFile.exists()) {
-                log.warn("Stockfish 引擎文件不存在: {}，跳过初始化（可能是测试环境）", enginePath);
-                return;
-            }
-
-            // 启动 Stockfish 进程
-            ProcessBuilder pb = new ProcessBuilder(enginePath);
-            stockfishProcess = pb.start();
-
-            // 获取输入输出流
-            reader = new BufferedReader(new InputStreamReader(stockfishProcess.getInputStream()));
-            writer = new BufferedWriter(new OutputStreamWriter(stockfishProcess.getOutputStream()));
-
-            // 创建线程池用于异步读取输出（避免阻塞）
-            executorService = Executors.newSingleThreadExecutor();
-
-            // 初始化 UCI 引擎
-            sendCommand("uci");
-            waitForResponse("uciok", 5000);
-
-            sendCommand("isready");
-            waitForResponse("readyok", 5000);
-
-            log.info("Stockfish 引擎初始化成功");
-        } catch (Exception e) {
-            log.warn("Stockfish 引擎初始化失败: {}，可能是测试环境或引擎未安装", e.getMessage());
-            // 不抛出异常，允许应用在没有 Stockfish 的情况下启动（用于测试）
-        }
-    }
+    private final StockfishEnginePool enginePool;
+    private final StockfishProperties properties;
 
     /**
-     * 分析棋局位置
+     * 分析棋局位置（同步）
+     * 引擎进程退出或挂起导致失败时换一个引擎重试（故障引擎归还时自动重启）；
+     * 等待期间线程被中断时向引擎发送 stop 并放弃本次结果
      * @param fen FEN 字符串表示的棋局位置（可选，如果为 null 则使用 moves）
      * @param moves 走法序列（UCI 格式，如 "e2e4 e7e5"）
-     * @return 分析结果
+     * @param limits 搜索限制（由 SearchProfileService 按搜索档位解析）
+     * @return 分析结果（包含前 multipv 条候选变化，一次搜索得出）
      */
-    public StockfishAnalysisResult analyzePosition(String fen, String moves) {
-        try {
-            // 设置棋局位置
-            if (fen != null && !fen.isEmpty()) {
-                sendCommand("position fen " + fen);
-            } else if (moves != null && !moves.isEmpty()) {
-                sendCommand("position startpos moves " + moves);
-            } else {
-                sendCommand("position startpos");
+    public StockfishAnalysisResult analyzePosition(String fen, String moves, SearchLimits limits) {
+        int maxRetries = Math.max(0, properties.getEngine().getMaxRetries());
+
+        for (int attempt = 0; ; attempt++) {
+            StockfishEngine engine = enginePool.acquire();
+            CompletableFuture<StockfishAnalysisResult> search = engine.search(fen, moves, limits);
+            boolean released = false;
+            try {
+                return search.get();
+            } catch (InterruptedException e) {
+                // 引擎在 stop 后返回 bestmove 时才归还，不会带着进行中的搜索被下一个调用方借走
+                engine.stopSearch();
+                releaseWhenDone(engine, search);
+                released = true;
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Stockfish 分析被中断", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (attempt < maxRetries && isEngineFault(cause)) {
+                    log.warn("引擎 #{} 故障（{}），换引擎重试该局面", engine.getId(), cause.getMessage());
+                    continue;
+                }
+                log.error("引擎 #{} 分析位置时发生错误", engine.getId(), cause);
+                throw new RuntimeException("Stockfish 分析失败", cause);
+            } finally {
+                if (!released) {
+                    enginePool.release(engine);
+                }
             }
-
-            // 开始分析（使用 movetime 控制分析时间，避免过长等待）
-            sendCommand("go movetime " + moveTime);
-
-            // 等待分析完成
-            return parseAnalysisResult();
-
-        } catch (Exception e) {
-            log.error("分析位置时发生错误", e);
-            throw new RuntimeException("Stockfish 分析失败", e);
         }
     }
 
     /**
-     * 发送命令到 Stockfish
+     * 分析棋局位置（异步），搜索结束（bestmove、截止时间或进程故障）后引擎自动归还引擎池
      */
-    private void sendCommand(String command) throws IOException {
-        log.debug("发送命令: {}", command);
-        writer.write(command + "\n");
-        writer.flush();
+    public CompletableFuture<StockfishAnalysisResult> analyzePositionAsync(String fen, String moves, SearchLimits limits) {
+        StockfishEngine engine = enginePool.acquire();
+        CompletableFuture<StockfishAnalysisResult> future = engine.search(fen, moves, limits);
+        releaseWhenDone(engine, future);
+        return future;
     }
 
     /**
-     * 等待特定响应（带超时）
+     * 搜索结束后归还引擎；归还可能触发重启，放到公共线程池执行，不占用引擎的读取线程
      */
-    private void waitForResponse(String expectedResponse, long timeoutMs) throws IOException, TimeoutException {
-        Future<String> future = executorService.submit(() -> {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                log.debug("收到响应: {}", line);
-                if (line.contains(expectedResponse)) {
-                    return line;
-                }
-            }
-            return null;
-        });
-
-        try {
-            future.get(timeoutMs, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            future.cancel(true);
-            throw new TimeoutException("等待响应超时: " + expectedResponse);
-        }
+    private void releaseWhenDone(StockfishEngine engine, CompletableFuture<?> future) {
+        future.whenCompleteAsync((result, error) -> enginePool.release(engine));
     }
 
-    /**
-     * 解析分析结果
-     */
-    private StockfishAnalysisResult parseAnalysisResult() throws IOException {
-        StockfishAnalysisResult result = new StockfishAnalysisResult();
-        String lastInfoLine = null;
-        String bestMove = null;
-
-        String line;
-        while ((line = reader.readLine()) != null) {
-            log.debug("收到: {}", line);
-
-            // 解析 info 行（包含评分信息）
-            if (line.startsWith("info") && line.contains("score")) {
-                lastInfoLine = line;
-            }
-
-            // 解析 bestmove 行（分析完成标志）
-            if (line.startsWith("bestmove")) {
-                String[] parts = line.split(" ");
-                if (parts.length >= 2) {
-                    bestMove = parts[1];
-                }
-                break;
-            }
-        }
-
-        // 解析评分
-        if (lastInfoLine != null) {
-            parseScore(lastInfoLine, result);
-        }
-
-        result.setBestMove(bestMove);
-        return result;
+    private static boolean isEngineFault(Throwable cause) {
+        return cause instanceof IOException || cause instanceof TimeoutException;
     }
 
     /**
-     * 解析评分信息
-     * 格式示例: info depth 20 score cp 120 ...
-     *          info depth 15 score mate 5 ...
+     * 获取引擎池状态
      */
-    private void parseScore(String infoLine, StockfishAnalysisResult result) {
-        String[] parts = infoLine.split(" ");
-
-        for (int i = 0; i < parts.length; i++) {
-            if ("score".equals(parts[i]) && i + 2 < parts.length) {
-                String scoreType = parts[i + 1];
-                String scoreValue = parts[i + 2];
-
-                if ("cp".equals(scoreType)) {
-                    // 厘兵 (centipawn) 评分，转换为标准格式
-                    int cp = Integer.parseInt(scoreValue);
-                    result.setScore(cp > 0 ? "+" + cp : scoreValue);
-                    result.setMate(false);
-                } else if ("mate".equals(scoreType)) {
-                    // 将死评分
-                    int mateIn = Integer.parseInt(scoreValue);
-                    result.setScore("M" + Math.abs(mateIn));
-                    result.setMate(true);
-                    result.setMateIn(mateIn);
-                }
-                break;
-            }
-        }
-    }
-
-    @PreDestroy
-    public void shutdown() {
-        try {
-            log.info("关闭 Stockfish 引擎");
-
-            if (writer != null) {
-                sendCommand("quit");
-                writer.close();
-            }
-
-            if (reader != null) {
-                reader.close();
-            }
-
-            if (stockfishProcess != null && stockfishProcess.isAlive()) {
-                stockfishProcess.destroy();
-                stockfishProcess.waitFor(5, TimeUnit.SECONDS);
-                if (stockfishProcess.isAlive()) {
-                    stockfishProcess.destroyForcibly();
-                }
-            }
-
-            if (executorService != null) {
-                executorService.shutdown();
-                executorService.awaitTermination(5, TimeUnit.SECONDS);
-            }
-
-            log.info("Stockfish 引擎已关闭");
-        } catch (Exception e) {
-            log.error("关闭 Stockfish 引擎时发生错误", e);
-        }
+    public List<EngineStatusDto> getEngineStatus() {
+        return enginePool.getStatus();
     }
 }
@@ -1,10 +1,6 @@
 package org.example.stockfishanalyzer.service;
 
 import org.example.stockfishanalyzer.dto.TrendsDTO;
-import org.example.stockfishanalyzer.entity.AnalysisResult;
-import org.example.stockfishanalyzer.entity.GamePgn;
-import org.example.stockfishanalyzer.enums.MoveClassification;
-import org.example.stockfishanalyzer.repository.AnalysisResultRepository;
 import org.example.stockfishanalyzer.repository.GamePgnRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -23,238 +19,110 @@ public class TrendsService {
     @Autowired
     private GamePgnRepository gamePgnRepository;
     
-    @Autowired
-    private AnalysisResultRepository analysisResultRepository;
-    
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     
     /**
      * 获取趋势分析数据
+     * 按日期和开局的统计均在数据库中对棋局表分组聚合（走法分类计数在分析完成时写入棋局），
+     * 每次请求固定 2 条查询，不读取 PGN 原文和逐步分析结果
      */
     public TrendsDTO getTrends(Long userId, LocalDate startDate, LocalDate endDate) {
-        // 获取用户所有棋局并按日期过滤
-        List<GamePgn> allGames = gamePgnRepository.findByUserIdOrderByUploadedAtDesc(userId);
-        
-        List<GamePgn> games = allGames.stream()
-            .filter(game -> {
-                try {
-                    LocalDate gameDate = parseGameDate(game.getGameDate());
-                    return !gameDate.isBefore(startDate) && !gameDate.isAfter(endDate);
-                } catch (Exception e) {
-                    return false;
-                }
-            })
-            .collect(Collectors.toList());
-        
-        if (games.isEmpty()) {
+        List<GamePgnRepository.DailyGameStats> dailyStats =
+            gamePgnRepository.aggregateByDay(userId, startDate, endDate);
+
+        if (dailyStats.isEmpty()) {
             return createEmptyTrends();
         }
-        
+
         // 按日期分组统计
-        List<TrendsDTO.DataPoint> timeline = buildTimeline(games);
-        
+        List<TrendsDTO.DataPoint> timeline = buildTimeline(dailyStats);
+
         // 开局统计
-        List<TrendsDTO.OpeningStats> openings = buildOpeningStats(games);
-        
+        List<TrendsDTO.OpeningStats> openings = buildOpeningStats(userId, startDate, endDate);
+
         // 总体统计
-        TrendsDTO.OverallStats overall = buildOverallStats(games);
-        
+        TrendsDTO.OverallStats overall = buildOverallStats(dailyStats);
+
         return new TrendsDTO(timeline, openings, overall);
     }
     
-    /**
-     * 解析游戏日期字符串为LocalDate
-     */
-    private LocalDate parseGameDate(String dateStr) {
-        if (dateStr == null || dateStr.contains("?")) {
-            return LocalDate.now();
-        }
-        // 日期格式: yyyy.MM.dd
-        String normalized = dateStr.replace(".", "-");
-        return LocalDate.parse(normalized, DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-    }
-    
     /**
      * 构建时间序列
      */
-    private List<TrendsDTO.DataPoint> buildTimeline(List<GamePgn> games) {
-        Map<String, List<GamePgn>> gamesByDate = games.stream()
-            .collect(Collectors.groupingBy(game -> {
-                try {
-                    LocalDate date = parseGameDate(game.getGameDate());
-                    return date.format(DATE_FORMATTER);
-                } catch (Exception e) {
-                    return LocalDate.now().format(DATE_FORMATTER);
-                }
-            }));
-        
-        return gamesByDate.entrySet().stream()
-            .map(entry -> {
-                String date = entry.getKey();
-                List<GamePgn> dayGames = entry.getValue();
-                
-                // 计算当天的统计数据
-                double avgAccuracy = calculateAvgAccuracy(dayGames);
-                int totalGames = dayGames.size();
-                double winRate = calculateWinRate(dayGames);
-                
-                // 计算失误统计
-                Map<String, Integer> errorStats = calculateErrorStats(dayGames);
-                
-                return new TrendsDTO.DataPoint(
-                    date,
-                    avgAccuracy,
-                    totalGames,
-                    winRate,
-                    errorStats.getOrDefault("blunders", 0),
-                    errorStats.getOrDefault("mistakes", 0),
-                    errorStats.getOrDefault("inaccuracies", 0),
-                    errorStats.getOrDefault("brilliant", 0)
-                );
-            })
-            .sorted(Comparator.comparing(TrendsDTO.DataPoint::getDate))
+    private List<TrendsDTO.DataPoint> buildTimeline(List<GamePgnRepository.DailyGameStats> dailyStats) {
+        return dailyStats.stream()
+            .sorted(Comparator.comparing(GamePgnRepository.DailyGameStats::getDay))
+            .map(day -> new TrendsDTO.DataPoint(
+                day.getDay().format(DATE_FORMATTER),
+                avgAccuracy(day.getAccuracySum(), day.getAnalyzedGames()),
+                day.getGames().intValue(),
+                winRate(day.getDecisive(), day.getGames()),
+                day.getBlunders().intValue(),
+                day.getMistakes().intValue(),
+                day.getInaccuracies().intValue(),
+                day.getBrilliant().intValue()
+            ))
             .collect(Collectors.toList());
     }
     
     /**
-     * 构建开局统计（从PGN内容中提取开局名称）
+     * 构建开局统计（开局名称在入库时从 Opening 标签提取）
      */
-    private List<TrendsDTO.OpeningStats> buildOpeningStats(List<GamePgn> games) {
-        Map<String, List<GamePgn>> gamesByOpening = games.stream()
-            .collect(Collectors.groupingBy(game -> {
-                String opening = extractOpeningFromPgn(game.getPgnContent());
-                return opening != null ? opening : "Unknown Opening";
-            }));
-        
-        return gamesByOpening.entrySet().stream()
-            .map(entry -> {
-                String opening = entry.getKey();
-                List<GamePgn> openingGames = entry.getValue();
-                int count = openingGames.size();
-                double winRate = calculateWinRate(openingGames);
-                
-                return new TrendsDTO.OpeningStats(opening, count, winRate);
-            })
-            .sorted(Comparator.comparing(TrendsDTO.OpeningStats::getCount).reversed())
+    private List<TrendsDTO.OpeningStats> buildOpeningStats(Long userId, LocalDate startDate, LocalDate endDate) {
+        return gamePgnRepository.countGamesByOpening(userId, startDate, endDate).stream()
             .limit(10)  // 只返回前10个开局
+            .map(opening -> new TrendsDTO.OpeningStats(
+                opening.getOpening() != null ? opening.getOpening() : "Unknown Opening",
+                opening.getGames().intValue(),
+                winRate(opening.getDecisive(), opening.getGames())))
             .collect(Collectors.toList());
     }
     
     /**
-     * 从PGN内容中提取开局名称
+     * 构建总体统计（由每日统计累加）
      */
-    private String extractOpeningFromPgn(String pgnContent) {
-        if (pgnContent == null) return null;
-        
-        String[] lines = pgnContent.split("\n");
-        for (String line : lines) {
-            if (line.startsWith("[Opening ")) {
-                int start = line.indexOf("\"");
-                int end = line.lastIndexOf("\"");
-                if (start != -1 && end != -1 && start < end) {
-                    return line.substring(start + 1, end);
-                }
-            }
-        }
-        return null;
-    }
-    
-    /**
-     * 构建总体统计
-     */
-    private TrendsDTO.OverallStats buildOverallStats(List<GamePgn> games) {
-        TrendsDTO.OverallStats stats = new TrendsDTO.OverallStats();
-        
-        stats.setTotalGames(games.size());
-        stats.setAvgAccuracy(calculateAvgAccuracy(games));
-        stats.setOverallWinRate(calculateWinRate(games));
-        
-        Map<String, Integer> errorStats = calculateErrorStats(games);
-        stats.setTotalBlunders(errorStats.getOrDefault("blunders", 0));
-        stats.setTotalMistakes(errorStats.getOrDefault("mistakes", 0));
-        stats.setTotalInaccuracies(errorStats.getOrDefault("inaccuracies", 0));
-        stats.setTotalBrilliantMoves(errorStats.getOrDefault("brilliant", 0));
-        
-        return stats;
-    }
-    
-    /**
-     * 计算平均精准度
-     */
-    private double calculateAvgAccuracy(List<GamePgn> games) {
-        if (games.isEmpty()) return 0.0;
-        
-        double totalAccuracy = 0.0;
-        int count = 0;
-        
-        for (GamePgn game : games) {
-            List<AnalysisResult> results = analysisResultRepository
-                .findByGameIdOrderByMoveNumberAsc(game.getId());
-            
-            if (!results.isEmpty()) {
-                long goodMoves = results.stream()
-                    .filter(r -> r.getMoveClassification() == MoveClassification.BEST ||
-                               r.getMoveClassification() == MoveClassification.BRILLIANT ||
-                               r.getMoveClassification() == MoveClassification.GOOD)
-                    .count();
-                
-                double accuracy = (double) goodMoves / results.size() * 100.0;
-                totalAccuracy += accuracy;
-                count++;
-            }
+    private TrendsDTO.OverallStats buildOverallStats(List<GamePgnRepository.DailyGameStats> dailyStats) {
+        long games = 0, decisive = 0, analyzedGames = 0;
+        long blunders = 0, mistakes = 0, inaccuracies = 0, brilliant = 0;
+        double accuracySum = 0.0;
+
+        for (GamePgnRepository.DailyGameStats day : dailyStats) {
+            games += day.getGames();
+            decisive += day.getDecisive();
+            analyzedGames += day.getAnalyzedGames();
+            accuracySum += day.getAccuracySum();
+            blunders += day.getBlunders();
+            mistakes += day.getMistakes();
+            inaccuracies += day.getInaccuracies();
+            brilliant += day.getBrilliant();
         }
-        
-        return count > 0 ? totalAccuracy / count : 0.0;
+
+        TrendsDTO.OverallStats overall = new TrendsDTO.OverallStats();
+        overall.setTotalGames((int) games);
+        overall.setAvgAccuracy(avgAccuracy(accuracySum, analyzedGames));
+        overall.setOverallWinRate(winRate(decisive, games));
+        overall.setTotalBlunders((int) blunders);
+        overall.setTotalMistakes((int) mistakes);
+        overall.setTotalInaccuracies((int) inaccuracies);
+        overall.setTotalBrilliantMoves((int) brilliant);
+        
+        return overall;
     }
     
     /**
-     * 计算胜率
+     * 计算平均精准度（已分析棋局精准度的平均值）
      */
-    private double calculateWinRate(List<GamePgn> games) {
-        if (games.isEmpty()) return 0.0;
-        
-        long wins = games.stream()
-            .filter(game -> "1-0".equals(game.getGameResult()) || "0-1".equals(game.getGameResult()))
-            .count();
-        
-        return (double) wins / games.size() * 100.0;
+    private double avgAccuracy(Double accuracySum, Long analyzedGames) {
+        if (accuracySum == null || analyzedGames == null || analyzedGames == 0) return 0.0;
+        return accuracySum / analyzedGames;
     }
     
     /**
-     * 计算失误统计
+     * 计算胜率（分出胜负的棋局占比）
      */
-    private Map<String, Integer> calculateErrorStats(List<GamePgn> games) {
-        Map<String, Integer> stats = new HashMap<>();
-        stats.put("blunders", 0);
-        stats.put("mistakes", 0);
-        stats.put("inaccuracies", 0);
-        stats.put("brilliant", 0);
-        
-        for (GamePgn game : games) {
-            List<AnalysisResult> results = analysisResultRepository
-                .findByGameIdOrderByMoveNumberAsc(game.getId());
-            
-            for (AnalysisResult result : results) {
-                switch (result.getMoveClassification()) {
-                    case BLUNDER:
-                        stats.put("blunders", stats.get("blunders") + 1);
-                        break;
-                    case MISTAKE:
-                        stats.put("mistakes", stats.get("mistakes") + 1);
-                        break;
-                    case INACCURACY:
-                        stats.put("inaccuracies", stats.get("inaccuracies") + 1);
-                        break;
-                    case BRILLIANT:
-                        stats.put("brilliant", stats.get("brilliant") + 1);
-                        break;
-                    default:
-                        break;
-                }
-            }
-        }
-        
-        return stats;
+    private double winRate(Long decisive, Long games) {
+        if (games == null || games == 0) return 0.0;
+        return (decisive != null ? decisive : 0L) * 100.0 / games;
     }
     
     /**
@@ -57,6 +57,9 @@ public class UserSettingsService {
             int threads = Math.max(1, Math.min(8, request.getEngineThreads()));
             settings.setEngineThreads(threads);
         }
+        if (request.getAnalysisProfile() != null) {
+            settings.setAnalysisProfile(request.getAnalysisProfile());
+        }
         if (request.getNotificationsEnabled() != null) {
             settings.setNotificationsEnabled(request.getNotificationsEnabled());
         }
@@ -85,6 +88,7 @@ public class UserSettingsService {
         settings.setPieceSet("default");
         settings.setAnalysisDepth(20);
         settings.setEngineThreads(4);
+        settings.setAnalysisProfile(null);
         settings.setNotificationsEnabled(true);
         settings.setAutoAnalyze(false);
         settings.setUpdatedAt(LocalDateTime.now());
@@ -130,6 +134,7 @@ public class UserSettingsService {
         dto.setPieceSet(settings.getPieceSet());
         dto.setAnalysisDepth(settings.getAnalysisDepth());
         dto.setEngineThreads(settings.getEngineThreads());
+        dto.setAnalysisProfile(settings.getAnalysisProfile());
         dto.setNotificationsEnabled(settings.getNotificationsEnabled());
         dto.setAutoAnalyze(settings.getAutoAnalyze());
         
@@ -3,7 +3,9 @@ package org.example.stockfishanalyzer.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.stockfishanalyzer.dto.UserStatisticsDto;
+import org.example.stockfishanalyzer.entity.GamePgn;
 import org.example.stockfishanalyzer.entity.UserStatistics;
+import org.example.stockfishanalyzer.enums.MoveClassification;
 import org.example.stockfishanalyzer.repository.AnalysisResultRepository;
 import org.example.stockfishanalyzer.repository.GamePgnRepository;
 import org.example.stockfishanalyzer.repository.OpeningBookRepository;
@@ -14,10 +16,15 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * 用户统计服务
+ * 统计行随棋局入库和分析完成增量更新（行锁串行化同一用户的更新），
+ * 读取只查一行；整体重建仅作为修复手段保留
  */
 @Service
 @RequiredArgsConstructor
@@ -30,111 +37,116 @@ public class UserStatisticsService {
     private final OpeningBookRepository openingBookRepository;
 
     /**
-     * 获取或创建用户统计
+     * 获取用户统计（按 user_id 唯一索引单行读取）
+     * 统计行由棋局入库和分析完成时的增量维护；用户尚无统计行时先整体重建一次
      */
+    @Transactional
     public UserStatisticsDto getUserStatistics(Long userId) {
-        Optional<UserStatistics> statsOpt = userStatisticsRepository.findByUserId(userId);
+        UserStatistics stats = userStatisticsRepository.findByUserId(userId)
+                .orElseGet(() -> rebuild(userId));
+        return convertToDto(stats);
+    }
 
-        if (statsOpt.isEmpty()) {
-            // 首次访问，创建初始统计
-            return createInitialStatistics(userId);
-        }
+    /**
+     * 新棋局入库：累加对局数和胜负平局数
+     * 用户尚无统计行时不创建，首次读取时会整体重建（已包含这些棋局）
+     */
+    @Transactional
+    public void recordGamesAdded(Long userId, List<GamePgn> games) {
+        if (games.isEmpty()) return;
+
+        userStatisticsRepository.findByUserIdForUpdate(userId).ifPresent(stats -> {
+            int wins = 0, losses = 0, draws = 0;
+            for (GamePgn game : games) {
+                String result = game.getGameResult();
+                if ("1-0".equals(result)) wins++;
+                else if ("0-1".equals(result)) losses++;
+                else if ("1/2-1/2".equals(result)) draws++;
+            }
+
+            stats.setTotalGames(stats.getTotalGames() + games.size());
+            stats.setWinCount(stats.getWinCount() + wins);
+            stats.setLossCount(stats.getLossCount() + losses);
+            stats.setDrawCount(stats.getDrawCount() + draws);
+            userStatisticsRepository.save(stats);
+        });
+    }
 
-        UserStatistics stats = statsOpt.get();
-        return convertToDto(stats);
+    /**
+     * 棋局分析完成：累加该局的走法分类计数
+     * 每局只应调用一次（以棋局首次写入走法分类计数为准）
+     */
+    @Transactional
+    public void recordGameAnalyzed(Long userId, AnalysisResultRepository.GameMoveStats summary) {
+        userStatisticsRepository.findByUserIdForUpdate(userId).ifPresent(stats -> {
+            stats.setTotalBrilliants(stats.getTotalBrilliants() + summary.getBrilliant().intValue());
+            stats.setTotalGoods(stats.getTotalGoods() + summary.getGoods().intValue());
+            stats.setTotalMistakes(stats.getTotalMistakes() + summary.getMistakes().intValue());
+            stats.setTotalBlunders(stats.getTotalBlunders() + summary.getBlunders().intValue());
+            updateAccuracy(stats);
+            userStatisticsRepository.save(stats);
+        });
     }
 
     /**
-     * 刷新用户统计数据（重新计算）
+     * 重建用户统计数据（修复用）
+     * 两条分组查询重新汇总该用户的全部棋局和已分析完成的棋局的逐步结果，覆盖增量维护的计数；
+     * 持有统计行的行锁，期间完成的增量更新会排队等待
      */
     @Transactional
     public UserStatisticsDto refreshStatistics(Long userId) {
-        log.info("开始刷新用户 {} 的统计数据", userId);
+        return convertToDto(rebuild(userId));
+    }
 
-        UserStatistics stats = userStatisticsRepository.findByUserId(userId)
-                .orElse(new UserStatistics());
+    private UserStatistics rebuild(Long userId) {
+        log.info("开始重建用户 {} 的统计数据", userId);
 
+        UserStatistics stats = userStatisticsRepository.findByUserIdForUpdate(userId)
+                .orElseGet(UserStatistics::new);
         stats.setUserId(userId);
 
-        // 1. 统计总对局数
-        Long totalGames = gamePgnRepository.countByUserId(userId);
-        stats.setTotalGames(totalGames.intValue());
-
-        // 2. 统计胜负平（从PGN的gameResult字段）
-        Integer winCount = gamePgnRepository.countByUserIdAndGameResultContaining(userId, "1-0");
-        Integer lossCount = gamePgnRepository.countByUserIdAndGameResultContaining(userId, "0-1");
-        Integer drawCount = gamePgnRepository.countByUserIdAndGameResultContaining(userId, "1/2-1/2");
-
-        stats.setWinCount(winCount);
-        stats.setLossCount(lossCount);
-        stats.setDrawCount(drawCount);
-
-        // 3. 统计走法分类
-        Integer brilliants = analysisResultRepository.countByGameIdInAndMoveClassification(
-                gamePgnRepository.findIdsByUserId(userId),
-                org.example.stockfishanalyzer.enums.MoveClassification.BRILLIANT
-        );
-        Integer goods = analysisResultRepository.countByGameIdInAndMoveClassification(
-                gamePgnRepository.findIdsByUserId(userId),
-                org.example.stockfishanalyzer.enums.MoveClassification.GOOD
-        );
-        Integer mistakes = analysisResultRepository.countByGameIdInAndMoveClassification(
-                gamePgnRepository.findIdsByUserId(userId),
-                org.example.stockfishanalyzer.enums.MoveClassification.MISTAKE
-        );
-        Integer blunders = analysisResultRepository.countByGameIdInAndMoveClassification(
-                gamePgnRepository.findIdsByUserId(userId),
-                org.example.stockfishanalyzer.enums.MoveClassification.BLUNDER
-        );
-
-        stats.setTotalBrilliants(brilliants);
-        stats.setTotalGoods(goods);
-        stats.setTotalMistakes(mistakes);
-        stats.setTotalBlunders(blunders);
-
-        // 4. 计算平均准确度（简化版：基于走法质量）
-        int totalMoves = brilliants + goods + mistakes + blunders;
-        if (totalMoves > 0) {
-            double accuracy = ((brilliants * 1.0 + goods * 0.8) / totalMoves) * 100;
-            stats.setAvgAccuracy(BigDecimal.valueOf(accuracy).setScale(2, RoundingMode.HALF_UP));
-        } else {
-            stats.setAvgAccuracy(BigDecimal.ZERO);
+        // 1. 对局数和胜负平
+        GamePgnRepository.UserGameTotals totals = gamePgnRepository.sumResultsByUserId(userId);
+        stats.setTotalGames(totals.getGames().intValue());
+        stats.setWinCount(totals.getWins().intValue());
+        stats.setLossCount(totals.getLosses().intValue());
+        stats.setDrawCount(totals.getDraws().intValue());
+
+        // 2. 走法分类计数（只计已分析完成的棋局，分析中的棋局完成时再增量累加）
+        Map<MoveClassification, Integer> counts = new EnumMap<>(MoveClassification.class);
+        for (AnalysisResultRepository.ClassificationCount count :
+                analysisResultRepository.countClassificationsByUserId(userId)) {
+            if (count.getClassification() != null) {
+                counts.put(count.getClassification(), count.getMoves().intValue());
+            }
         }
+        stats.setTotalBrilliants(counts.getOrDefault(MoveClassification.BRILLIANT, 0));
+        stats.setTotalGoods(counts.getOrDefault(MoveClassification.GOOD, 0));
+        stats.setTotalMistakes(counts.getOrDefault(MoveClassification.MISTAKE, 0));
+        stats.setTotalBlunders(counts.getOrDefault(MoveClassification.BLUNDER, 0));
 
-        // 5. 更新时间
+        // 3. 平均准确度
+        updateAccuracy(stats);
         stats.setLastUpdated(LocalDateTime.now());
 
         UserStatistics saved = userStatisticsRepository.save(stats);
-        log.info("用户 {} 统计数据刷新完成", userId);
-
-        return convertToDto(saved);
+        log.info("用户 {} 统计数据重建完成", userId);
+        return saved;
     }
 
     /**
-     * 创建初始统计
+     * 计算平均准确度（简化版：基于走法质量）
      */
-    private UserStatisticsDto createInitialStatistics(Long userId) {
-        return UserStatisticsDto.builder()
-                .userId(userId)
-                .totalGames(0)
-                .winCount(0)
-                .drawCount(0)
-                .lossCount(0)
-                .winRate(0.0)
-                .drawRate(0.0)
-                .lossRate(0.0)
-                .avgAccuracy(BigDecimal.ZERO)
-                .totalBrilliants(0)
-                .totalGoods(0)
-                .totalMistakes(0)
-                .totalBlunders(0)
-                .totalMoves(0)
-                .brilliantRate(0.0)
-                .goodRate(0.0)
-                .mistakeRate(0.0)
-                .blunderRate(0.0)
-                .lastUpdated(LocalDateTime.now())
-                .build();
+    private void updateAccuracy(UserStatistics stats) {
+        int brilliants = stats.getTotalBrilliants();
+        int goods = stats.getTotalGoods();
+        int totalMoves = brilliants + goods + stats.getTotalMistakes() + stats.getTotalBlunders();
+        if (totalMoves > 0) {
+            double accuracy = ((brilliants * 1.0 + goods * 0.8) / totalMoves) * 100;
+            stats.setAvgAccuracy(BigDecimal.valueOf(accuracy).setScale(2, RoundingMode.HALF_UP));
+        } else {
+            stats.setAvgAccuracy(BigDecimal.ZERO);
+        }
     }
 
     /**
@@ -0,0 +1,86 @@
+package org.example.stockfishanalyzer.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 棋局指纹工具类
+ * 职责：计算规范化的棋局内容哈希（SHA-256），用于识别重复上传和在相同走法的棋局之间复用分析结果
+ *
+ * 走法哈希只覆盖主线走法，按紧凑编码（PackedMoves，每步的起点、终点和升变棋子）计算，
+ * 与 SAN 写法（标注、0-0 / O-O、消歧义方式）、注释、变着和排版都无关；
+ * 走法无法编码的棋局（含非法走法）退回按规范化的 SAN 文本计算，两种输入分别加前缀，不会相互冲突。
+ * 棋局指纹在走法哈希之外加上七项必备标签（Event / Site / Date / Round / White / Black / Result），
+ * 同一走法序列出现在不同对局中时指纹不同。
+ */
+public final class GameFingerprint {
+
+    private static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+
+    // 走法哈希输入的前缀：紧凑编码 / SAN 文本
+    private static final byte PACKED = 'P';
+    private static final byte SAN = 'S';
+
+    private GameFingerprint() {
+    }
+
+    /**
+     * 主线走法的哈希（64 位十六进制）
+     *
+     * @param packedMoves PackedMoves 编码的走法
+     */
+    public static String movesHash(byte[] packedMoves) {
+        MessageDigest digest = sha256();
+        digest.update(PACKED);
+        digest.update(packedMoves);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 无法编码的走法的哈希：去掉 +#!? 标注、0-0 统一写作 O-O 后按 UTF-8 计算
+     */
+    public static String sanMovesHash(List<String> sanMoves) {
+        StringBuilder normalized = new StringBuilder();
+        for (String san : sanMoves) {
+            for (int i = 0; i < san.length(); i++) {
+                char c = san.charAt(i);
+                if (c == '+' || c == '#' || c == '!' || c == '?') continue;
+                normalized.append(c == '0' ? 'O' : c);
+            }
+            normalized.append(' ');
+        }
+
+        MessageDigest digest = sha256();
+        digest.update(SAN);
+        digest.update(normalized.toString().getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 棋局指纹：七项必备标签 + 走法哈希（64 位十六进制）
+     */
+    public static String fingerprint(Map<String, String> tags, String movesHash) {
+        MessageDigest digest = sha256();
+        for (String name : SEVEN_TAG_ROSTER) {
+            String value = tags.get(name);
+            if (value != null) {
+                digest.update(value.trim().getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+        }
+        digest.update(movesHash.getBytes(StandardCharsets.US_ASCII));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM 不支持 SHA-256", e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.stockfishanalyzer.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * PGN 正文压缩工具类
+ * 职责：用带预置字典的 Deflate 压缩 PGN 正文，供 tbl_game_pgn_body 存储
+ *
+ * 单局 PGN 只有 1 ~ 3 KB，普通 Deflate 在这个长度上几乎找不到可复用的重复片段；
+ * 预置字典（pgn/deflate-dictionary-v1.txt）收录了 Lichess / Chess.com 导出文件的标签行、
+ * 常见开局走法、时钟注释和回合编号，压缩一开始就能引用这些片段。
+ * 字典内容一经发布不能修改（已有数据依赖它解压），调整字典时新增一个编码版本。
+ */
+public final class PgnCompressor {
+
+    /**
+     * 当前写入使用的编码
+     */
+    public static final String CODEC = "deflate-v1";
+
+    private static final byte[] DICTIONARY_V1 = loadDictionary("/pgn/deflate-dictionary-v1.txt");
+
+    private PgnCompressor() {
+    }
+
+    /**
+     * 按当前编码压缩 PGN 正文
+     */
+    public static byte[] compress(String pgn) {
+        byte[] input = pgn.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(DICTIONARY_V1);
+            deflater.setInput(input);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 3 + 64);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 解压 PGN 正文
+     *
+     * @param codec 写入时的编码
+     * @param data 压缩数据
+     * @param rawLength 原文的 UTF-8 字节数
+     */
+    public static String decompress(String codec, byte[] data, int rawLength) {
+        if (!CODEC.equals(codec)) {
+            throw new IllegalStateException("不支持的 PGN 编码: " + codec);
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            // 多留 1 字节：解压结果超出原文长度时能发现数据不一致
+            byte[] output = new byte[rawLength + 1];
+            int length = 0;
+            while (!inflater.finished() && length < output.length) {
+                int n = inflater.inflate(output, length, output.length - length);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY_V1);
+                    } else if (inflater.needsInput()) {
+                        break;
+                    }
+                }
+                length += n;
+            }
+            if (length != rawLength || !inflater.finished()) {
+                throw new IllegalStateException("PGN 正文已损坏：解压得到 " + length + " 字节，应为 " + rawLength + " 字节");
+            }
+            return new String(output, 0, rawLength, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("PGN 正文已损坏: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] loadDictionary(String resource) {
+        try (InputStream in = PgnCompressor.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("缺少 PGN 压缩字典: " + resource);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException("读取 PGN 压缩字典失败: " + resource, e);
+        }
+    }
+}
@@ -2,24 +2,23 @@ package org.example.stockfishanalyzer.util;
 
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.example.stockfishanalyzer.chess.Move;
+import org.example.stockfishanalyzer.chess.Position;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * PGN 解析工具类
  * 职责：解析 PGN (Portable Game Notation) 棋谱文件
+ *
+ * 单遍字符级扫描：标签、走法序号、NAG（$n）、{...} 和 ; 注释、% 转义行、嵌套变着 (...) 都在同一遍扫描中识别，
+ * 只有主线走法交给访问者；走法以原文中的下标区间给出，访问者可以不截取子串直接解析。
  */
 @Slf4j
 public class PgnParser {
 
-    // PGN 标签正则表达式：[Event "xxx"]
-    private static final Pattern TAG_PATTERN = Pattern.compile("\\[(\\w+)\\s+\"([^\"]*)\"]");
-
-    // 走法正则表达式（简化版）
-    private static final Pattern MOVE_PATTERN = Pattern.compile("([NBRQK]?[a-h]?[1-8]?x?[a-h][1-8](?:=[NBRQ])?[+#]?|O-O(?:-O)?)");
-
     @Data
     public static class PgnGame {
         private Map<String, String> tags = new HashMap<>();
@@ -29,66 +28,261 @@ public class PgnParser {
         public String getTag(String key) {
             return tags.get(key);
         }
+
+        public String getTagOrDefault(String key, String defaultValue) {
+            String value = tags.get(key);
+            return value != null ? value : defaultValue;
+        }
     }
 
     /**
-     * 解析 PGN 字符串
+     * PGN 扫描回调
      */
-    public static PgnGame parse(String pgnContent) {
-        if (pgnContent == null || pgnContent.trim().isEmpty()) {
-            throw new IllegalArgumentException("PGN 内容不能为空");
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * 标签对，如 [Event "xxx"]
+         */
+        default void tag(String name, String value) {
+        }
+
+        /**
+         * 主线走法（SAN，可能带 +#!? 标注），位于 pgn 的 [start, end) 区间；变着中的走法不回调
+         */
+        void move(String pgn, int start, int end);
+
+        /**
+         * 棋局结果标记（1-0、0-1、1/2-1/2、*）
+         */
+        default void result(String result) {
         }
+    }
 
+    /**
+     * 解析 PGN 字符串
+     */
+    public static PgnGame parse(String pgnContent) {
         PgnGame game = new PgnGame();
         game.setRawPgn(pgnContent);
 
-        String[] lines = pgnContent.split("\n");
-        StringBuilder moveText = new StringBuilder();
+        parse(pgnContent, new Visitor() {
+            @Override
+            public void tag(String name, String value) {
+                game.getTags().put(name, value);
+            }
+
+            @Override
+            public void move(String pgn, int start, int end) {
+                game.getMoves().add(pgn.substring(start, end));
+            }
+        });
+
+        log.debug("解析 PGN 完成 - 标签数: {}, 走法数: {}", game.getTags().size(), game.getMoves().size());
+
+        return game;
+    }
+
+    /**
+     * 解析 PGN 主线并直接转换为 UCI 走法（从标准开局位置开始），不生成中间的 SAN 列表
+     *
+     * @throws IllegalArgumentException 任一走法非法
+     */
+    public static List<String> parseUciMoves(String pgnContent) {
+        List<String> uciMoves = new ArrayList<>();
+        Position position = new Position();
+
+        parse(pgnContent, (pgn, start, end) -> {
+            int move = position.parseSan(pgn, start, end);
+            if (move == Move.NONE) {
+                throw new IllegalArgumentException("第 " + (uciMoves.size() + 1) + " 步走法非法: " + pgn.substring(start, end));
+            }
+            uciMoves.add(Move.toUci(move));
+            position.makeMove(move);
+        });
+
+        return uciMoves;
+    }
+
+    /**
+     * 单遍扫描 PGN，按出现顺序回调标签、主线走法和结果
+     */
+    public static void parse(String pgn, Visitor visitor) {
+        if (pgn == null || pgn.isBlank()) {
+            throw new IllegalArgumentException("PGN 内容不能为空");
+        }
+
+        int length = pgn.length();
+        int depth = 0;            // 变着嵌套层数，大于 0 时的走法不回调
+        boolean lineStart = true; // % 转义只在行首生效
+        int i = 0;
 
-        // 第一步：解析标签
-        for (String line : lines) {
-            line = line.trim();
+        while (i < length) {
+            char c = pgn.charAt(i);
 
-            if (line.isEmpty() || line.startsWith("%")) {
-                // 忽略空行和注释
+            if (c == '\n') {
+                lineStart = true;
+                i++;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (lineStart && c == '%') {
+                i = skipLine(pgn, i);
                 continue;
             }
+            lineStart = false;
 
-            if (line.startsWith("[")) {
-                // 解析标签
-                Matcher matcher = TAG_PATTERN.matcher(line);
-                if (matcher.find()) {
-                    String key = matcher.group(1);
-                    String value = matcher.group(2);
-                    game.getTags().put(key, value);
+            switch (c) {
+                case '[' -> i = readTag(pgn, i + 1, visitor);
+                case '{' -> {
+                    // 注释不嵌套，直到第一个 }
+                    int close = pgn.indexOf('}', i + 1);
+                    i = close < 0 ? length : close + 1;
+                }
+                case ';' -> i = skipLine(pgn, i);
+                case '(' -> {
+                    depth++;
+                    i++;
+                }
+                case ')' -> {
+                    if (depth > 0) depth--;
+                    i++;
+                }
+                case '$' -> {
+                    // NAG，如 $1
+                    i++;
+                    while (i < length && isDigit(pgn.charAt(i))) i++;
+                }
+                case '*' -> {
+                    if (depth == 0) visitor.result("*");
+                    i++;
+                }
+                case '!', '?', '.' -> i++;
+                default -> {
+                    if (isDigit(c)) {
+                        int j = i;
+                        while (j < length && isDigit(pgn.charAt(j))) j++;
+                        if (j < length && pgn.charAt(j) == '.') {
+                            // 走法序号（12. 或 12...），后面可能紧跟走法
+                            while (j < length && pgn.charAt(j) == '.') j++;
+                            i = j;
+                            continue;
+                        }
+                    }
+
+                    int end = tokenEnd(pgn, i);
+                    if (depth == 0) {
+                        String result = resultOf(pgn, i, end);
+                        if (result != null) {
+                            visitor.result(result);
+                        } else if (isMoveStart(c)) {
+                            visitor.move(pgn, i, end);
+                        }
+                    }
+                    i = end;
                 }
-            } else {
-                // 走法文本
-                moveText.append(line).append(" ");
             }
         }
+    }
+
+    /**
+     * 读取标签对，start 位于 [ 之后；返回 ] 之后的位置。值中的 \" 和 \\ 按转义处理
+     */
+    private static int readTag(String pgn, int start, Visitor visitor) {
+        int length = pgn.length();
+        int i = start;
+        while (i < length && Character.isWhitespace(pgn.charAt(i))) i++;
 
-        // 第二步：解析走法
-        String movesString = moveText.toString();
-        // 移除走法序号（如 "1.", "2.", 等）
-        movesString = movesString.replaceAll("\\d+\\.", "");
-        // 移除结果标记（如 "1-0", "0-1", "1/2-1/2", "*"）
-        movesString = movesString.replaceAll("(1-0|0-1|1/2-1/2|\\*)", "");
-        // 移除注释 {...}
-        movesString = movesString.replaceAll("\\{[^}]*\\}", "");
-        // 移除变着 (...)
-        movesString = movesString.replaceAll("\\([^)]*\\)", "");
-
-        // 提取走法
-        Matcher moveMatcher = MOVE_PATTERN.matcher(movesString);
-        while (moveMatcher.find()) {
-            String move = moveMatcher.group(1);
-            game.getMoves().add(move);
+        int nameStart = i;
+        while (i < length && (Character.isLetterOrDigit(pgn.charAt(i)) || pgn.charAt(i) == '_')) i++;
+        String name = pgn.substring(nameStart, i);
+
+        while (i < length && Character.isWhitespace(pgn.charAt(i))) i++;
+
+        String value = null;
+        if (i < length && pgn.charAt(i) == '"') {
+            int valueStart = ++i;
+            StringBuilder escaped = null;
+            while (i < length && pgn.charAt(i) != '"' && pgn.charAt(i) != '\n') {
+                char c = pgn.charAt(i);
+                if (c == '\\' && i + 1 < length) {
+                    if (escaped == null) {
+                        escaped = new StringBuilder(pgn.substring(valueStart, i));
+                    }
+                    escaped.append(pgn.charAt(i + 1));
+                    i += 2;
+                    continue;
+                }
+                if (escaped != null) escaped.append(c);
+                i++;
+            }
+            value = escaped != null ? escaped.toString() : pgn.substring(valueStart, i);
+            if (i < length && pgn.charAt(i) == '"') i++;
         }
 
-        log.debug("解析 PGN 完成 - 标签数: {}, 走法数: {}", game.getTags().size(), game.getMoves().size());
+        while (i < length && pgn.charAt(i) != ']' && pgn.charAt(i) != '\n') i++;
+        if (i < length && pgn.charAt(i) == ']') i++;
 
-        return game;
+        if (!name.isEmpty() && value != null) {
+            visitor.tag(name, value);
+        }
+        return i;
+    }
+
+    private static int skipLine(String pgn, int i) {
+        int newline = pgn.indexOf('\n', i);
+        return newline < 0 ? pgn.length() : newline;
+    }
+
+    /**
+     * 走法或结果记号的结束位置：空白、分隔符或 !? 标注处
+     */
+    private static int tokenEnd(String pgn, int i) {
+        int length = pgn.length();
+        while (i < length) {
+            char c = pgn.charAt(i);
+            if (Character.isWhitespace(c) || c == '{' || c == '}' || c == '(' || c == ')' || c == '['
+                    || c == ']' || c == ';' || c == '$' || c == '!' || c == '?' || c == '*') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static String resultOf(String pgn, int start, int end) {
+        int length = end - start;
+        if (length == 3 && pgn.startsWith("1-0", start)) return "1-0";
+        if (length == 3 && pgn.startsWith("0-1", start)) return "0-1";
+        if (length == 7 && pgn.startsWith("1/2-1/2", start)) return "1/2-1/2";
+        return null;
+    }
+
+    /**
+     * SAN 走法的首字符：兵所在列、棋子字母或易位（O-O / 0-0）
+     */
+    private static boolean isMoveStart(char c) {
+        return (c >= 'a' && c <= 'h') || c == 'N' || c == 'B' || c == 'R' || c == 'Q' || c == 'K' || c == 'O' || c == '0';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * 解析 PGN Date 标签（yyyy.MM.dd），日期不完整（含 ?）或格式错误时返回 null
+     */
+    public static LocalDate parseDate(String date) {
+        if (date == null || date.indexOf('?') >= 0) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date.trim().replace('.', '-'));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
     }
 
     /**
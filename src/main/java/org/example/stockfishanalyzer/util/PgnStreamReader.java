@@ -0,0 +1,143 @@
+package org.example.stockfishanalyzer.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 多局 PGN 流式读取器
+ * 职责：从字符流中逐局切分 PGN 文本，一次只在内存中保留一局棋，适合导入数千局的导出文件
+ *
+ * 切分规则：走法区之后再次出现以 "[" 开头的标签行即视为下一局开始；
+ * 跨行的 {...} 注释中出现的 "[" （如 [%clk 0:03:00]）不会被误判为标签。
+ */
+public class PgnStreamReader implements Closeable {
+
+    private final BufferedReader reader;
+    private final int maxGameLength;
+    private final StringBuilder buffer = new StringBuilder(4096);
+
+    private String pendingLine;
+    private boolean firstLine = true;
+    private long skippedGames;
+
+    /**
+     * @param reader 字符输入流
+     * @param maxGameLength 单局 PGN 最大字符数，超出的棋局会被跳过
+     */
+    public PgnStreamReader(Reader reader, int maxGameLength) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.maxGameLength = maxGameLength;
+    }
+
+    /**
+     * 读取下一局 PGN
+     *
+     * @return 单局 PGN 文本，流结束时返回 null
+     */
+    public String nextGame() throws IOException {
+        while (true) {
+            buffer.setLength(0);
+            boolean inMoves = false;
+            boolean oversized = false;
+            int braceDepth = 0;
+
+            String line = pendingLine != null ? pendingLine : readLine();
+            pendingLine = null;
+
+            while (line != null) {
+                String trimmed = line.trim();
+
+                if (inMoves && braceDepth == 0 && trimmed.startsWith("[")) {
+                    // 下一局的标签区开始
+                    pendingLine = line;
+                    break;
+                }
+
+                if (!trimmed.isEmpty() && !trimmed.startsWith("%") && (inMoves || !trimmed.startsWith("["))) {
+                    inMoves = true;
+                    braceDepth = updateBraceDepth(trimmed, braceDepth);
+                }
+
+                if (!oversized) {
+                    if (buffer.length() + line.length() + 1 > maxGameLength) {
+                        oversized = true;
+                        buffer.setLength(0);
+                    } else {
+                        buffer.append(line).append('\n');
+                    }
+                }
+
+                line = readLine();
+            }
+
+            if (oversized) {
+                skippedGames++;
+                if (line == null && pendingLine == null) {
+                    return null;
+                }
+                continue;
+            }
+
+            if (isBlank(buffer)) {
+                if (line == null && pendingLine == null) {
+                    return null;
+                }
+                continue;
+            }
+
+            return buffer.toString();
+        }
+    }
+
+    /**
+     * 因超过长度限制而跳过的棋局数
+     */
+    public long getSkippedGames() {
+        return skippedGames;
+    }
+
+    private String readLine() throws IOException {
+        String line = reader.readLine();
+        if (firstLine && line != null) {
+            firstLine = false;
+            // 去除 UTF-8 BOM
+            if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                line = line.substring(1);
+            }
+        }
+        return line;
+    }
+
+    /**
+     * 统计走法行中未闭合的 {...} 注释层数（; 之后为行尾注释，忽略）
+     */
+    private int updateBraceDepth(String line, int depth) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && depth > 0) {
+                depth--;
+            } else if (c == ';' && depth == 0) {
+                break;
+            }
+        }
+        return depth;
+    }
+
+    private boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.stockfishanalyzer.util;
+
+/**
+ * 评分工具类
+ * 职责：统一厘兵/将死评分的折算、视角转换、显示格式和旧评分字符串的解析
+ *
+ * 引擎评分均为"走棋方视角"；第 N 步（半回合，从 1 开始）走完后，N 为奇数时轮到黑方走棋。
+ */
+public final class ScoreUtil {
+
+    /**
+     * 将死折算的厘兵值
+     */
+    public static final int MATE_SCORE = 10000;
+
+    private ScoreUtil() {
+    }
+
+    /**
+     * 折算为厘兵（与输入同一视角），将死按 mateIn 的符号折算为 ±MATE_SCORE，
+     * mateIn 为 0 表示走棋方已被将死
+     */
+    public static int toCentipawns(Integer scoreCp, Integer mateIn) {
+        if (mateIn != null) {
+            return mateIn > 0 ? MATE_SCORE : -MATE_SCORE;
+        }
+        return scoreCp != null ? scoreCp : 0;
+    }
+
+    /**
+     * 将第 moveNumber 步走完后的走棋方视角评分换算为白方视角
+     */
+    public static int toWhitePerspective(int sideToMoveScore, int moveNumber) {
+        return moveNumber % 2 == 1 ? -sideToMoveScore : sideToMoveScore;
+    }
+
+    /**
+     * 白方视角评分换算为第 moveNumber 步走子方的视角（正值表示走子方占优）
+     */
+    public static int toMoverPerspective(int whiteScore, int moveNumber) {
+        return moveNumber % 2 == 1 ? whiteScore : -whiteScore;
+    }
+
+    /**
+     * 显示格式：+35、-12、0、M3、M-3
+     */
+    public static String format(Integer scoreCp, Integer mateIn) {
+        if (mateIn != null) {
+            return "M" + mateIn;
+        }
+        int cp = scoreCp != null ? scoreCp : 0;
+        return cp > 0 ? "+" + cp : String.valueOf(cp);
+    }
+
+    /**
+     * 解析旧版评分字符串中的厘兵值（+35、-12、0），将死或无法解析时返回 null
+     */
+    public static Integer parseCentipawns(String score) {
+        if (score == null || score.isEmpty() || isMate(score)) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(score.charAt(0) == '+' ? score.substring(1) : score);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解析旧版评分字符串中的将死步数（M3、M-3、#3），非将死或无法解析时返回 null
+     *
+     * 注意：早期版本写入的 "M3" 未保留符号，按走棋方将死对方处理
+     */
+    public static Integer parseMateIn(String score) {
+        if (score == null || !isMate(score)) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(score.substring(1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isMate(String score) {
+        return !score.isEmpty() && (score.charAt(0) == 'M' || score.charAt(0) == '#');
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.stockfishanalyzer.util;
+
+/**
+ * Zobrist 哈希随机数表
+ * 职责：为局面计算 64 位哈希键（棋子×格子、走棋方、易位权、吃过路兵列）
+ *
+ * 注意：随机数由固定种子生成，哈希值会持久化到 tbl_position_eval，
+ * 修改种子或生成算法会使已缓存的局面评估全部失效。
+ */
+public final class Zobrist {
+
+    /**
+     * 棋子顺序：白方 PNBRQK，黑方 pnbrqk
+     */
+    public static final String PIECES = "PNBRQKpnbrqk";
+
+    /**
+     * [棋子][格子]，格子编号 a1=0, b1=1, ..., h8=63
+     */
+    public static final long[][] PIECE_SQUARE = new long[12][64];
+
+    /**
+     * 黑方走棋
+     */
+    public static final long BLACK_TO_MOVE;
+
+    /**
+     * 易位权组合（4 位：K=1, Q=2, k=4, q=8）
+     */
+    public static final long[] CASTLING = new long[16];
+
+    /**
+     * 吃过路兵所在列
+     */
+    public static final long[] EN_PASSANT_FILE = new long[8];
+
+    private static long seed = 0x5DEECE66DL;
+
+    static {
+        for (int piece = 0; piece < 12; piece++) {
+            for (int square = 0; square < 64; square++) {
+                PIECE_SQUARE[piece][square] = nextRandom();
+            }
+        }
+        BLACK_TO_MOVE = nextRandom();
+        for (int i = 0; i < 16; i++) {
+            CASTLING[i] = nextRandom();
+        }
+        for (int i = 0; i < 8; i++) {
+            EN_PASSANT_FILE[i] = nextRandom();
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * SplitMix64 伪随机数（固定种子，保证跨进程结果一致）
+     */
+    private static long nextRandom() {
+        long z = (seed += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 棋子字符对应的表索引，空格返回 -1
+     */
+    public static int pieceIndex(char piece) {
+        return PIECES.indexOf(piece);
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.stockfishanalyzer.chess;
+
+import org.example.stockfishanalyzer.util.SimpleChessEngine;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedMovesTest {
+
+    // 王车易位（双方）、吃过路兵、升变为后和马
+    private static final List<String> SPECIAL_MOVES = List.of(
+            "e4", "d5", "e5", "f5", "exf6", "Nxf6", "Nf3", "e6", "Bc4", "Bd6", "O-O", "O-O",
+            "h4", "g5", "hxg5", "h6", "gxh6", "Kh8", "h7", "Rg8", "hxg8=Q+", "Kxg8",
+            "a4", "b5", "axb5", "a5", "bxa6", "Nc6", "a7", "Rb8", "a8=N");
+
+    @Test
+    void sanRoundTripMatchesUci() {
+        List<String> uci = SimpleChessEngine.toUciMoves(SPECIAL_MOVES);
+        byte[] packed = PackedMoves.fromSan(SPECIAL_MOVES);
+
+        assertEquals(SPECIAL_MOVES.size() * 2, packed.length);
+        assertEquals(SPECIAL_MOVES.size(), PackedMoves.count(packed));
+        assertEquals(uci, PackedMoves.toUci(packed));
+        assertArrayEquals(packed, PackedMoves.fromUci(uci));
+
+        assertTrue(uci.containsAll(List.of("e5f6", "b5a6", "e1g1", "e8g8", "h7g8q", "a7a8n")));
+    }
+
+    @Test
+    void packedMoveKeepsSquaresAndPromotion() {
+        byte[] packed = PackedMoves.fromUci(List.of("e1g1", "e7e8q", "a2a1n", "h7h8r", "b2b1b"));
+
+        assertEquals(Move.of(4, 6, 0, Move.FLAG_NORMAL), PackedMoves.get(packed, 0));
+        int promotion = PackedMoves.get(packed, 1);
+        assertEquals(52, Move.from(promotion));
+        assertEquals(60, Move.to(promotion));
+        assertEquals(Position.QUEEN, Move.promotion(promotion));
+        assertEquals(List.of("e1g1", "e7e8q", "a2a1n", "h7h8r", "b2b1b"), PackedMoves.toUci(packed));
+    }
+
+    @Test
+    void emptyGame() {
+        assertEquals(0, PackedMoves.fromSan(List.of()).length);
+        assertEquals(0, PackedMoves.fromUci(List.of()).length);
+        assertEquals(List.of(), PackedMoves.toUci(new byte[0]));
+        assertEquals(0, PackedMoves.count(new byte[0]));
+    }
+
+    @Test
+    void rejectsBadInput() {
+        IllegalArgumentException illegal = assertThrows(IllegalArgumentException.class,
+                () -> PackedMoves.fromSan(List.of("e4", "e5", "Ke3")));
+        assertEquals("第 3 步走法非法: Ke3", illegal.getMessage());
+
+        for (String uci : List.of("e2", "e2e4qq", "i2i4", "e9e4", "e2e0", "e7e8k", "e7e8x", "")) {
+            assertThrows(IllegalArgumentException.class, () -> PackedMoves.fromUci(List.of("e2e4", uci)), uci);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.stockfishanalyzer.chess;
+
+import org.example.stockfishanalyzer.util.SimpleChessEngine;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionTest {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    private static final String POSITION_3 = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+    private static final String POSITION_4 = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+    private static final String POSITION_5 = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+
+    @Test
+    void perftMatchesReferenceCounts() {
+        assertEquals(197281, new Position().perft(4));
+        assertEquals(97862, Position.fromFen(KIWIPETE).perft(3));
+        assertEquals(43238, Position.fromFen(POSITION_3).perft(4));
+        assertEquals(9467, Position.fromFen(POSITION_4).perft(3));
+        assertEquals(62379, Position.fromFen(POSITION_5).perft(3));
+    }
+
+    @Test
+    void makeUnmakeRestoresFenAndKey() {
+        Position position = Position.fromFen(KIWIPETE);
+        String fen = position.toFen();
+        long key = position.getKey();
+
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.generateLegalMoves(moves);
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            assertEquals(Position.fromFen(position.toFen()).getKey(), position.getKey(), Move.toUci(moves[i]));
+            position.unmakeMove(moves[i]);
+            assertEquals(fen, position.toFen());
+            assertEquals(key, position.getKey());
+        }
+    }
+
+    @Test
+    void transpositionsShareZobristKey() {
+        SimpleChessEngine a = new SimpleChessEngine();
+        for (String san : List.of("Nf3", "Nf6", "d4", "d5")) a.makeSanMove(san);
+        SimpleChessEngine b = new SimpleChessEngine();
+        for (String san : List.of("d4", "d5", "Nf3", "Nf6")) b.makeSanMove(san);
+
+        assertEquals(a.getZobristKey(), b.getZobristKey());
+    }
+
+    @Test
+    void sanRoundTrip() {
+        List<String> sanMoves = List.of("e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Ba4", "Nf6", "O-O", "Be7",
+                "Re1", "b5", "Bb3", "d6", "c3", "O-O", "h3", "Nb8", "d4", "Nbd7");
+
+        List<String> uciMoves = SimpleChessEngine.toUciMoves(sanMoves);
+        assertEquals("e1g1", uciMoves.get(8));
+        assertEquals("b8d7", uciMoves.get(19));
+
+        Position position = new Position();
+        for (String san : sanMoves) {
+            int move = position.parseSan(san);
+            assertEquals(san, position.toSan(move));
+            position.makeMove(move);
+        }
+    }
+
+    @Test
+    void enPassantPromotionAndMate() {
+        SimpleChessEngine engine = new SimpleChessEngine("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1");
+        assertEquals("e5d6", engine.sanToUci("exd6"));
+
+        Position promotion = Position.fromFen("8/P6k/8/8/8/8/8/K7 w - - 0 1");
+        assertEquals("a7a8q", Move.toUci(promotion.parseSan("a8=Q")));
+        assertEquals("a7a8n", Move.toUci(promotion.parseSan("a8N")));
+
+        Position mate = Position.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        int move = mate.parseSan("Ra8");
+        assertEquals("Ra8#", mate.toSan(move));
+        mate.makeMove(move);
+        assertTrue(mate.isCheckmate());
+    }
+
+    @Test
+    void illegalSanIsRejected() {
+        Position position = new Position();
+        assertEquals(Move.NONE, position.parseSan("e5"));
+        assertEquals(Move.NONE, position.parseSan("O-O"));
+        assertThrows(IllegalArgumentException.class, () -> new SimpleChessEngine().sanToUci("Ke2"));
+    }
+}
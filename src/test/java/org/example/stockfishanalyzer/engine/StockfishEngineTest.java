@@ -0,0 +1,32 @@
+package org.example.stockfishanalyzer.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockfishEngineTest {
+
+    @Test
+    void readsMaxPiecesFromNewTablebaseReport() {
+        assertEquals(5, StockfishEngine.parseTablebasePieces(
+                "info string Found 145 WDL and 145 DTZ tablebase files (up to 5-man)."));
+        assertEquals(7, StockfishEngine.parseTablebasePieces(
+                "info string Found 1511 WDL and 1511 DTZ tablebase files (up to 7-man)."));
+    }
+
+    @Test
+    void infersMaxPiecesFromLegacyFileCount() {
+        assertEquals(0, StockfishEngine.parseTablebasePieces("info string Found 0 tablebases"));
+        assertEquals(3, StockfishEngine.parseTablebasePieces("info string Found 5 tablebases"));
+        assertEquals(4, StockfishEngine.parseTablebasePieces("info string Found 35 tablebases"));
+        assertEquals(5, StockfishEngine.parseTablebasePieces("info string Found 145 tablebases"));
+        assertEquals(5, StockfishEngine.parseTablebasePieces("info string Found 300 tablebases"));
+        assertEquals(6, StockfishEngine.parseTablebasePieces("info string Found 510 tablebases"));
+        assertEquals(7, StockfishEngine.parseTablebasePieces("info string Found 1511 tablebases"));
+    }
+
+    @Test
+    void unreadableReportLoadsNothing() {
+        assertEquals(0, StockfishEngine.parseTablebasePieces("info string Found some tablebases"));
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.stockfishanalyzer.engine;
+
+import org.example.stockfishanalyzer.dto.PvLine;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UciInfoParserTest {
+
+    @Test
+    void parsesCentipawnLine() {
+        PvLine line = UciInfoParser.parse(
+                "info depth 20 seldepth 28 multipv 1 score cp 35 nodes 123456 nps 1000000 hashfull 12 tbhits 0 time 123 pv e2e4 e7e5 g1f3");
+
+        assertEquals(1, line.getMultipv());
+        assertEquals(20, line.getDepth());
+        assertEquals(35, line.getScoreCp());
+        assertNull(line.getMateIn());
+        assertEquals("e2e4 e7e5 g1f3", line.getPv());
+        assertEquals("e2e4", line.getMove());
+    }
+
+    @Test
+    void readsMultipvWhereverItAppears() {
+        assertEquals(1, UciInfoParser.parse("info depth 5 score cp 10 pv d2d4").getMultipv());
+        assertEquals(2, UciInfoParser.parse("info depth 5 seldepth 7 multipv 2 score cp -20 pv c2c4").getMultipv());
+        assertEquals(3, UciInfoParser.parse("info multipv 3 depth 5 score cp -40 pv g1f3").getMultipv());
+        assertEquals(12, UciInfoParser.parse("info depth 5 score cp -40 multipv 12 pv g1f3").getMultipv());
+    }
+
+    @Test
+    void parsesMateScores() {
+        PvLine mated = UciInfoParser.parse("info depth 12 multipv 2 score mate -3 nodes 999 pv e1e2 d8h4");
+        assertEquals(-3, mated.getMateIn());
+        assertNull(mated.getScoreCp());
+
+        PvLine mate = UciInfoParser.parse("info depth 9 score mate 5 pv d1h5");
+        assertEquals(5, mate.getMateIn());
+
+        // 已被将死的局面：Stockfish 报告 mate 0 且没有主变
+        PvLine checkmated = UciInfoParser.parse("info depth 0 score mate 0");
+        assertEquals(0, checkmated.getMateIn());
+        assertNull(checkmated.getPv());
+        assertNull(checkmated.getMove());
+    }
+
+    @Test
+    void keepsScoreOfBoundLines() {
+        PvLine lower = UciInfoParser.parse("info depth 18 seldepth 22 multipv 1 score cp 48 lowerbound nodes 5000 pv e2e4");
+        assertEquals(48, lower.getScoreCp());
+        assertEquals("e2e4", lower.getPv());
+
+        PvLine upper = UciInfoParser.parse("info depth 18 score cp -12 upperbound nodes 5000 pv d2d4");
+        assertEquals(-12, upper.getScoreCp());
+        assertEquals(18, upper.getDepth());
+    }
+
+    @Test
+    void parsesLineWithoutPv() {
+        PvLine line = UciInfoParser.parse("info depth 1 seldepth 1 multipv 1 score cp 17 nodes 20 nps 20000 time 1");
+
+        assertEquals(17, line.getScoreCp());
+        assertNull(line.getPv());
+        assertNull(line.getMove());
+    }
+
+    @Test
+    void ignoresLinesWithoutScore() {
+        assertNull(UciInfoParser.parse("info string NNUE evaluation using nn-1111cefa1111.nnue enabled"));
+        assertNull(UciInfoParser.parse("info string score cp 100 pv e2e4"));
+        assertNull(UciInfoParser.parse("info depth 20 currmove e2e4 currmovenumber 1"));
+        assertNull(UciInfoParser.parse("info"));
+        assertNull(UciInfoParser.parse(""));
+    }
+
+    @Test
+    void returnsNullForMalformedNumbers() {
+        assertNull(UciInfoParser.parse("info depth x score cp 10 pv e2e4"));
+        assertNull(UciInfoParser.parse("info depth 10 score cp 1.5 pv e2e4"));
+        assertNull(UciInfoParser.parse("info depth 10 multipv two score cp 10 pv e2e4"));
+        assertNull(UciInfoParser.parse("info depth 10 score mate pv e2e4"));
+        assertNull(UciInfoParser.parse("info depth 10 score cp"));
+        assertNull(UciInfoParser.parse("info depth"));
+    }
+}
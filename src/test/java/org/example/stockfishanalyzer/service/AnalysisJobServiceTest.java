@@ -0,0 +1,159 @@
+package org.example.stockfishanalyzer.service;
+
+import org.example.stockfishanalyzer.config.StockfishProperties;
+import org.example.stockfishanalyzer.entity.AnalysisJob;
+import org.example.stockfishanalyzer.entity.GamePgn;
+import org.example.stockfishanalyzer.enums.AnalysisStatus;
+import org.example.stockfishanalyzer.enums.JobPriority;
+import org.example.stockfishanalyzer.enums.JobStatus;
+import org.example.stockfishanalyzer.repository.AnalysisJobRepository;
+import org.example.stockfishanalyzer.repository.GamePgnRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 任务领取的公平轮转与类别隔离
+ * 不包在测试事务里：claim 使用条件更新，需要与真实运行时一样逐个事务提交
+ */
+@DataJpaTest
+@Import({AnalysisJobService.class, StockfishProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AnalysisJobServiceTest {
+
+    private static final AtomicLong GAME_IDS = new AtomicLong(1000);
+
+    @Autowired
+    private AnalysisJobService analysisJobService;
+
+    @Autowired
+    private AnalysisJobRepository analysisJobRepository;
+
+    @Autowired
+    private GamePgnRepository gamePgnRepository;
+
+    @MockitoBean
+    private AnalysisStreamService analysisStreamService;
+
+    @BeforeEach
+    void clearJobs() {
+        analysisJobRepository.deleteAll();
+        gamePgnRepository.deleteAll();
+    }
+
+    @Test
+    void interleavesUsersInsteadOfDrainingTheFirstBacklog() {
+        enqueue(1L, 5, JobPriority.BULK);
+        enqueue(2L, 2, JobPriority.BULK);
+
+        List<AnalysisJob> first = analysisJobService.claim(JobPriority.BULK, 4);
+        assertEquals(List.of(1L, 2L, 1L, 2L), users(first));
+        assertTrue(first.stream().allMatch(job -> job.getStatus() == JobStatus.RUNNING));
+
+        // 用户 2 的任务已领完，剩余名额全部给用户 1，且按入队顺序
+        List<AnalysisJob> rest = analysisJobService.claim(JobPriority.BULK, 10);
+        assertEquals(List.of(1L, 1L, 1L), users(rest));
+        assertTrue(rest.get(0).getId() < rest.get(1).getId() && rest.get(1).getId() < rest.get(2).getId());
+
+        assertTrue(analysisJobService.claim(JobPriority.BULK, 10).isEmpty());
+    }
+
+    @Test
+    void prefersUsersWithFewerRunningJobs() {
+        enqueue(3L, 4, JobPriority.BULK);
+        assertEquals(List.of(3L, 3L), users(analysisJobService.claim(JobPriority.BULK, 2)));
+
+        // 用户 4 入队更晚，但运行中的任务更少，连续两次先于已有 2 个任务在运行的用户 3
+        enqueue(4L, 3, JobPriority.BULK);
+        assertEquals(List.of(4L), users(analysisJobService.claim(JobPriority.BULK, 1)));
+        assertEquals(List.of(4L), users(analysisJobService.claim(JobPriority.BULK, 1)));
+
+        // 运行数持平后按最近领取时间轮转，用户 4 刚领取过，排在用户 3 之后
+        assertEquals(List.of(3L, 4L), users(analysisJobService.claim(JobPriority.BULK, 2)));
+    }
+
+    @Test
+    void rotatesUsersWithEqualRunningCountByLastServed() {
+        enqueue(5L, 3, JobPriority.BULK);
+        enqueue(6L, 3, JobPriority.BULK);
+        enqueue(7L, 3, JobPriority.BULK);
+
+        List<Long> order = users(analysisJobService.claim(JobPriority.BULK, 9));
+        assertEquals(List.of(5L, 6L, 7L, 5L, 6L, 7L, 5L, 6L, 7L), order);
+    }
+
+    @Test
+    void claimsOnlyTheRequestedClassAndRespectsItsLimit() {
+        enqueue(8L, 3, JobPriority.INTERACTIVE);
+        enqueue(9L, 3, JobPriority.BULK);
+        enqueue(10L, 3, JobPriority.REANALYSIS);
+
+        assertTrue(analysisJobService.claim(JobPriority.INTERACTIVE, 0).isEmpty());
+
+        List<AnalysisJob> interactive = analysisJobService.claim(JobPriority.INTERACTIVE, 2);
+        assertEquals(2, interactive.size());
+        assertTrue(interactive.stream().allMatch(job -> job.getPriority() == JobPriority.INTERACTIVE));
+
+        List<AnalysisJob> bulk = analysisJobService.claim(JobPriority.BULK, 1);
+        assertEquals(1, bulk.size());
+        assertEquals(JobPriority.BULK, bulk.get(0).getPriority());
+
+        assertEquals(3, analysisJobRepository.findAll().stream()
+                .filter(job -> job.getStatus() == JobStatus.RUNNING).count());
+        assertEquals(3, analysisJobRepository.findAll().stream()
+                .filter(job -> job.getPriority() == JobPriority.REANALYSIS && job.getStatus() == JobStatus.QUEUED).count());
+    }
+
+    @Test
+    void recoversGamesLeftByTheInMemoryExecutorOnlyOnFirstStart() {
+        GamePgn processing = saveGame(AnalysisStatus.PROCESSING);
+        GamePgn pending = saveGame(AnalysisStatus.PENDING);
+        saveGame(AnalysisStatus.COMPLETED);
+
+        analysisJobService.recoverStuckGames();
+
+        List<AnalysisJob> jobs = analysisJobRepository.findAll();
+        assertEquals(2, jobs.size());
+        assertEquals(JobPriority.REANALYSIS, jobOf(jobs, processing).getPriority());
+        assertEquals(JobPriority.BULK, jobOf(jobs, pending).getPriority());
+
+        // 升级之后没有任务的待分析棋局是有意不分析的批量导入，重启时不补建
+        saveGame(AnalysisStatus.PENDING);
+        analysisJobService.recoverStuckGames();
+        assertEquals(2, analysisJobRepository.count());
+    }
+
+    private GamePgn saveGame(AnalysisStatus status) {
+        GamePgn game = new GamePgn();
+        game.setUserId(11L);
+        game.setAnalysisStatus(status);
+        return gamePgnRepository.save(game);
+    }
+
+    private static AnalysisJob jobOf(List<AnalysisJob> jobs, GamePgn game) {
+        return jobs.stream().filter(job -> job.getGameId().equals(game.getId())).findFirst().orElseThrow();
+    }
+
+    private void enqueue(Long userId, int games, JobPriority priority) {
+        for (int i = 0; i < games; i++) {
+            GamePgn game = new GamePgn();
+            game.setId(GAME_IDS.incrementAndGet());
+            game.setUserId(userId);
+            analysisJobService.enqueue(game, priority, null);
+        }
+    }
+
+    private static List<Long> users(List<AnalysisJob> jobs) {
+        return jobs.stream().map(AnalysisJob::getUserId).toList();
+    }
+}
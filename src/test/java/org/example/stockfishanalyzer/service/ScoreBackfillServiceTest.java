@@ -0,0 +1,51 @@
+package org.example.stockfishanalyzer.service;
+
+import org.example.stockfishanalyzer.entity.AnalysisResult;
+import org.example.stockfishanalyzer.enums.MoveClassification;
+import org.example.stockfishanalyzer.repository.AnalysisResultRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 旧数据评分回填：只解析旧版评分字符串，开局库走法的空评估保持为空
+ */
+@DataJpaTest
+@Import(ScoreBackfillService.class)
+class ScoreBackfillServiceTest {
+
+    @Autowired
+    private ScoreBackfillService scoreBackfillService;
+
+    @Autowired
+    private AnalysisResultRepository analysisResultRepository;
+
+    @Test
+    void backfillsLegacyScoresButLeavesBookMovesUnevaluated() {
+        AnalysisResult legacy = result(1, "+35", null);
+        AnalysisResult good = result(2, "-20", MoveClassification.GOOD);
+        AnalysisResult book = result(3, "0", MoveClassification.BOOK);
+
+        scoreBackfillService.backfillLegacyScores();
+
+        // 评分是走子后局面的走子方视角：第 1 步后轮到黑方，第 2 步后轮到白方
+        assertEquals(-35, analysisResultRepository.findById(legacy.getId()).orElseThrow().getEvalCp());
+        assertEquals(-20, analysisResultRepository.findById(good.getId()).orElseThrow().getEvalCp());
+        assertNull(analysisResultRepository.findById(book.getId()).orElseThrow().getEvalCp());
+        assertNull(analysisResultRepository.findById(book.getId()).orElseThrow().getScoreCp());
+    }
+
+    private AnalysisResult result(int moveNumber, String score, MoveClassification classification) {
+        AnalysisResult result = new AnalysisResult();
+        result.setGameId(1L);
+        result.setMoveNumber(moveNumber);
+        result.setMoveSan("e4");
+        result.setScore(score);
+        result.setBestMove("e2e4");
+        result.setMoveClassification(classification);
+        return analysisResultRepository.save(result);
+    }
+}
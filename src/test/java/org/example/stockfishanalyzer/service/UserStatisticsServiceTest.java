@@ -0,0 +1,98 @@
+package org.example.stockfishanalyzer.service;
+
+import org.example.stockfishanalyzer.dto.UserStatisticsDto;
+import org.example.stockfishanalyzer.entity.AnalysisResult;
+import org.example.stockfishanalyzer.entity.GamePgn;
+import org.example.stockfishanalyzer.enums.AnalysisStatus;
+import org.example.stockfishanalyzer.enums.MoveClassification;
+import org.example.stockfishanalyzer.repository.AnalysisResultRepository;
+import org.example.stockfishanalyzer.repository.GamePgnRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 统计重建与分析完成时的增量更新不重复计数
+ */
+@DataJpaTest
+@Import(UserStatisticsService.class)
+class UserStatisticsServiceTest {
+
+    private static final long USER = 7L;
+
+    @Autowired
+    private UserStatisticsService userStatisticsService;
+
+    @Autowired
+    private GamePgnRepository gamePgnRepository;
+
+    @Autowired
+    private AnalysisResultRepository analysisResultRepository;
+
+    @Test
+    void rebuildSkipsGamesStillBeingAnalyzed() {
+        GamePgn completed = game(AnalysisStatus.COMPLETED, "1-0");
+        results(completed, MoveClassification.GOOD, MoveClassification.BLUNDER, MoveClassification.BRILLIANT);
+        GamePgn processing = game(AnalysisStatus.PROCESSING, "0-1");
+        results(processing, MoveClassification.GOOD, MoveClassification.MISTAKE);
+
+        UserStatisticsDto stats = userStatisticsService.refreshStatistics(USER);
+
+        assertEquals(2, stats.getTotalGames());
+        assertEquals(1, stats.getWinCount());
+        assertEquals(1, stats.getLossCount());
+        assertEquals(1, stats.getTotalGoods());
+        assertEquals(1, stats.getTotalBlunders());
+        assertEquals(1, stats.getTotalBrilliants());
+        assertEquals(0, stats.getTotalMistakes());
+    }
+
+    @Test
+    void gameFinishedAfterRebuildIsCountedOnce() {
+        GamePgn processing = game(AnalysisStatus.PROCESSING, "*");
+        results(processing, MoveClassification.GOOD, MoveClassification.MISTAKE);
+        userStatisticsService.refreshStatistics(USER);
+
+        // 分析完成：写入计数后由增量更新累加整局
+        processing.setAnalysisStatus(AnalysisStatus.COMPLETED);
+        List<AnalysisResultRepository.GameMoveStats> summaries =
+                analysisResultRepository.summarizeByGameIds(List.of(processing.getId()));
+        summaries.get(0).applyTo(processing);
+        gamePgnRepository.save(processing);
+        userStatisticsService.recordGameAnalyzed(USER, summaries.get(0));
+
+        UserStatisticsDto incremental = userStatisticsService.getUserStatistics(USER);
+        assertEquals(1, incremental.getTotalGoods());
+        assertEquals(1, incremental.getTotalMistakes());
+
+        UserStatisticsDto rebuilt = userStatisticsService.refreshStatistics(USER);
+        assertEquals(incremental.getTotalGoods(), rebuilt.getTotalGoods());
+        assertEquals(incremental.getTotalMistakes(), rebuilt.getTotalMistakes());
+    }
+
+    private GamePgn game(AnalysisStatus status, String result) {
+        GamePgn game = new GamePgn();
+        game.setUserId(USER);
+        game.setGameResult(result);
+        game.setAnalysisStatus(status);
+        return gamePgnRepository.save(game);
+    }
+
+    private void results(GamePgn game, MoveClassification... classifications) {
+        for (int i = 0; i < classifications.length; i++) {
+            AnalysisResult result = new AnalysisResult();
+            result.setGameId(game.getId());
+            result.setMoveNumber(i + 1);
+            result.setMoveSan("e4");
+            result.setScore("0");
+            result.setBestMove("e2e4");
+            result.setMoveClassification(classifications[i]);
+            analysisResultRepository.save(result);
+        }
+    }
+}
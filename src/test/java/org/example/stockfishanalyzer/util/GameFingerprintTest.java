@@ -0,0 +1,60 @@
+package org.example.stockfishanalyzer.util;
+
+import org.example.stockfishanalyzer.chess.PackedMoves;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameFingerprintTest {
+
+    private static final List<String> GAME = List.of("e4", "e5", "Nf3", "Nc6", "Bc4", "Nf6", "O-O", "Nxe4");
+
+    @Test
+    void uploadAndImportEncodingsHashTheSame() {
+        String upload = GameFingerprint.movesHash(PackedMoves.fromUci(SimpleChessEngine.toUciMoves(GAME)));
+        String imported = GameFingerprint.movesHash(PackedMoves.fromSan(GAME));
+
+        assertEquals(upload, imported);
+    }
+
+    @Test
+    void hashIgnoresSanSpelling() {
+        List<String> annotated = List.of("e4!", "e5", "Ngf3", "Nc6?!", "Bc4", "Nf6", "0-0", "Nxe4!?");
+
+        assertEquals(GameFingerprint.movesHash(PackedMoves.fromSan(GAME)),
+                GameFingerprint.movesHash(PackedMoves.fromSan(annotated)));
+    }
+
+    @Test
+    void differentMovesHashDifferently() {
+        List<String> other = List.of("e4", "e5", "Nf3", "Nc6", "Bc4", "Nf6", "d3", "Be7");
+
+        assertNotEquals(GameFingerprint.movesHash(PackedMoves.fromSan(GAME)),
+                GameFingerprint.movesHash(PackedMoves.fromSan(other)));
+    }
+
+    @Test
+    void sanFallbackKeepsNonAsciiCharacters() {
+        // Ж（U+0416）和 Ԗ（U+0516）的低字节相同，逐字符截断为字节时会得到相同的哈希
+        assertNotEquals(GameFingerprint.sanMovesHash(List.of("e4", "Ж5")),
+                GameFingerprint.sanMovesHash(List.of("e4", "Ԗ5")));
+        assertEquals(GameFingerprint.sanMovesHash(List.of("e4+", "0-0")),
+                GameFingerprint.sanMovesHash(List.of("e4", "O-O")));
+    }
+
+    @Test
+    void sanFallbackNeverMatchesPackedHash() {
+        assertNotEquals(GameFingerprint.movesHash(new byte[0]), GameFingerprint.sanMovesHash(List.of()));
+    }
+
+    @Test
+    void fingerprintSeparatesGamesWithSameMoves() {
+        String movesHash = GameFingerprint.movesHash(PackedMoves.fromSan(GAME));
+
+        assertNotEquals(GameFingerprint.fingerprint(Map.of("White", "a", "Black", "b"), movesHash),
+                GameFingerprint.fingerprint(Map.of("White", "b", "Black", "a"), movesHash));
+    }
+}
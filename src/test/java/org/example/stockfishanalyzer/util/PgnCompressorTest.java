@@ -0,0 +1,70 @@
+package org.example.stockfishanalyzer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgnCompressorTest {
+
+    private static final String LICHESS_GAME = "[Event \"Rated Blitz game\"]\n"
+            + "[Site \"https://lichess.org/abcdefgh\"]\n"
+            + "[Date \"2025.10.10\"]\n"
+            + "[White \"张三\"]\n"
+            + "[Black \"Müller\"]\n"
+            + "[Result \"1-0\"]\n"
+            + "[TimeControl \"180+2\"]\n"
+            + "[Opening \"Ruy López: Morphy Defense\"]\n"
+            + "\n"
+            + "1. e4 { [%clk 0:03:00] } 1... e5 { [%clk 0:03:00] } 2. Nf3 { [%clk 0:02:59] } 2... Nc6 "
+            + "{ [%clk 0:02:58] } 3. Bb5 { 西班牙开局 } 3... a6 4. Ba4 Nf6 5. O-O Be7 1-0\n";
+
+    @Test
+    void roundTrips() {
+        byte[] compressed = PgnCompressor.compress(LICHESS_GAME);
+        int rawLength = LICHESS_GAME.getBytes(StandardCharsets.UTF_8).length;
+
+        assertTrue(compressed.length < rawLength / 2, "字典应覆盖常见的标签和注释");
+        assertEquals(LICHESS_GAME, PgnCompressor.decompress(PgnCompressor.CODEC, compressed, rawLength));
+    }
+
+    @Test
+    void roundTripsEmptyAndLongBodies() {
+        assertEquals("", PgnCompressor.decompress(PgnCompressor.CODEC, PgnCompressor.compress(""), 0));
+
+        String longGame = LICHESS_GAME.repeat(200);
+        byte[] compressed = PgnCompressor.compress(longGame);
+        assertEquals(longGame, PgnCompressor.decompress(PgnCompressor.CODEC, compressed,
+                longGame.getBytes(StandardCharsets.UTF_8).length));
+    }
+
+    @Test
+    void rejectsUnknownCodec() {
+        byte[] compressed = PgnCompressor.compress(LICHESS_GAME);
+
+        assertThrows(IllegalStateException.class,
+                () -> PgnCompressor.decompress("zstd-v1", compressed, LICHESS_GAME.length()));
+    }
+
+    @Test
+    void rejectsCorruptData() {
+        byte[] compressed = PgnCompressor.compress(LICHESS_GAME);
+        int rawLength = LICHESS_GAME.getBytes(StandardCharsets.UTF_8).length;
+
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        assertThrows(IllegalStateException.class,
+                () -> PgnCompressor.decompress(PgnCompressor.CODEC, truncated, rawLength));
+
+        assertThrows(IllegalStateException.class,
+                () -> PgnCompressor.decompress(PgnCompressor.CODEC, compressed, rawLength - 1));
+        assertThrows(IllegalStateException.class,
+                () -> PgnCompressor.decompress(PgnCompressor.CODEC, compressed, rawLength + 1));
+
+        byte[] garbage = compressed.clone();
+        garbage[0] ^= 0x55;
+        assertThrows(IllegalStateException.class,
+                () -> PgnCompressor.decompress(PgnCompressor.CODEC, garbage, rawLength));
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.stockfishanalyzer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgnParserTest {
+
+    @Test
+    void skipsNestedVariationsAndComments() {
+        String pgn = "1. e4 {开局 (不是变着)} e5 (1... c5 2. Nf3 (2. c3 {c3 变着 } d5) d6) 2. Nf3 {主线} Nc6 *";
+
+        assertEquals(List.of("e4", "e5", "Nf3", "Nc6"), PgnParser.parse(pgn).getMoves());
+    }
+
+    @Test
+    void skipsNagsAndAnnotations() {
+        PgnParser.PgnGame game = PgnParser.parse("1. e4! $1 e5 $2 2. Nf3?! $6 Nc6 $10 *");
+
+        assertEquals(List.of("e4", "e5", "Nf3", "Nc6"), game.getMoves());
+    }
+
+    @Test
+    void skipsLineCommentsAndEscapeLines() {
+        String pgn = "%escaped line 1. d4\n"
+                + "[Event \"Test\"]\n"
+                + "\n"
+                + "1. e4 ; rest of line 1. d4 d5\n"
+                + "e5 2. Nf3\n"
+                + "%another 2... d5\n"
+                + "Nc6 *";
+
+        PgnParser.PgnGame game = PgnParser.parse(pgn);
+
+        assertEquals("Test", game.getTag("Event"));
+        assertEquals(List.of("e4", "e5", "Nf3", "Nc6"), game.getMoves());
+    }
+
+    @Test
+    void unescapesTagValues() {
+        PgnParser.PgnGame game = PgnParser.parse(
+                "[Event \"He said \\\"hi\\\" \\\\ bye\"]\n[White \"张三\"]\n[Site \"a ] b\"]\n\n1. e4 *");
+
+        assertEquals("He said \"hi\" \\ bye", game.getTag("Event"));
+        assertEquals("张三", game.getTag("White"));
+        assertEquals("a ] b", game.getTag("Site"));
+        assertEquals(List.of("e4"), game.getMoves());
+    }
+
+    @Test
+    void distinguishesCastlingWithZerosFromResults() {
+        for (String result : List.of("1-0", "0-1", "1/2-1/2", "*")) {
+            String pgn = "1. e4 e5 2. Nf3 Nc6 3. Bc4 Bc5 4. 0-0 Nf6 5. d3 0-0 " + result;
+            List<String> results = new ArrayList<>();
+            List<String> moves = new ArrayList<>();
+            PgnParser.parse(pgn, new PgnParser.Visitor() {
+                @Override
+                public void move(String text, int start, int end) {
+                    moves.add(text.substring(start, end));
+                }
+
+                @Override
+                public void result(String value) {
+                    results.add(value);
+                }
+            });
+
+            assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bc4", "Bc5", "0-0", "Nf6", "d3", "0-0"), moves, result);
+            assertEquals(List.of(result), results);
+            assertEquals("e1g1", PgnParser.parseUciMoves(pgn).get(6));
+            assertEquals("e8g8", PgnParser.parseUciMoves(pgn).get(9));
+        }
+
+        assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bc4", "Bc5", "O-O", "O-O"),
+                PgnParser.parse("1.e4 e5 2.Nf3 Nc6 3.Bc4 Bc5 4.O-O O-O 1-0").getMoves());
+    }
+
+    @Test
+    void readsMoveNumbersWithoutSpaces() {
+        String pgn = "1.e4 e5 2.Nf3 Nc6 3.Bb5 a6 4.Ba4 Nf6 5.O-O Be7 6.Re1 b5 7.Bb3 d6 8.c3 O-O 9.h3 Nb8 "
+                + "10.d4 Nbd7 11.c4 c6 12.Nc3 (12.cxb5 axb5) 12...Nb6 13.a3 *";
+
+        List<String> moves = PgnParser.parse(pgn).getMoves();
+
+        assertEquals(25, moves.size());
+        assertEquals("Nc3", moves.get(22));
+        assertEquals("Nb6", moves.get(23));
+        assertEquals(25, PgnParser.parseUciMoves(pgn).size());
+    }
+
+    @Test
+    void parseUciMovesReportsFailingPly() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> PgnParser.parseUciMoves("1. e4 e5 2. Nf3 Nc6 3. Ke3 *"));
+
+        assertEquals("第 5 步走法非法: Ke3", e.getMessage());
+        assertEquals(List.of("e2e4", "e7e5", "g1f3", "b8c6", "f1b5"),
+                PgnParser.parseUciMoves("1. e4 e5 2. Nf3 Nc6 3. Bb5+ *"));
+    }
+}